@@ -1,13 +1,17 @@
 package com.googlecode.mavennatives.m2eclipse.natives;
 
+import java.io.File;
 import java.util.List;
 
 import org.apache.maven.plugin.MojoExecution;
 import org.apache.maven.project.MavenProject;
+import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.QualifiedName;
 import org.eclipse.jdt.core.IClasspathAttribute;
 import org.eclipse.jdt.launching.JavaRuntime;
 import org.eclipse.m2e.core.project.configurator.ProjectConfigurationRequest;
@@ -22,6 +26,16 @@ public class NativesConfigurator extends AbstractJavaProjectConfigurator {
 
 	static Logger logger = LoggerFactory.getLogger(NativesConfigurator.class);
 
+	/**
+	 * The {@link NativesSignature} of the last successful copy, persisted with the project.
+	 */
+	static final QualifiedName SIGNATURE = new QualifiedName(Activator.PLUGIN_ID, "nativesSignature");
+
+	/**
+	 * Above this number of changed files the natives folder is refreshed as a whole.
+	 */
+	static final int MAX_SINGLE_REFRESHES = 100;
+
 	@Override
 	public void configure(ProjectConfigurationRequest request, IProgressMonitor progressMonitor) throws CoreException {
 		
@@ -37,9 +51,20 @@ public class NativesConfigurator extends AbstractJavaProjectConfigurator {
 
 			logger.info("MavenNatives - Setting nativesPath: " + nativesPath.toString());
 
+			IProject project = request.getProject();
+			IFolder nativesFolder = project.getFolder(relativeNativesPath);
+			File nativesDir = nativesFolder.getLocation() != null ? nativesFolder.getLocation().toFile() : null;
+			String signature = NativesSignature.of(mavenProject);
+			if (nativesDir != null && nativesDir.isDirectory() && signature.equals(project.getPersistentProperty(SIGNATURE))) {
+				logger.info("MavenNatives - Natives did not change, skipping copy");
+				return;
+			}
+
+			NativesSnapshot before = nativesDir != null ? NativesSnapshot.of(nativesDir) : null;
 			executeNativeDependenciesCopy(request, progressMonitor);
+			project.setPersistentProperty(SIGNATURE, signature);
 
-			request.getProject().getFolder(relativeNativesPath).refreshLocal(IResource.DEPTH_INFINITE, progressMonitor);
+			refreshChanged(nativesFolder, nativesDir, before);
 
 			logger.info("MavenNatives - Done");
 
@@ -49,6 +74,31 @@ public class NativesConfigurator extends AbstractJavaProjectConfigurator {
 
 	}
 
+	/**
+	 * Queues the refresh of the files the copy added, changed or removed, or of the whole folder when it was not there
+	 * before or too many files changed.
+	 */
+	private void refreshChanged(IFolder nativesFolder, File nativesDir, NativesSnapshot before) {
+		if (nativesDir == null || before == null || !nativesFolder.exists()) {
+			NativesRefreshJob.refresh(nativesFolder, IResource.DEPTH_INFINITE);
+			return;
+		}
+		List<String> changed = NativesSnapshot.of(nativesDir).changedSince(before);
+		logger.info("MavenNatives - " + changed.size() + " natives changed");
+		if (changed.size() > MAX_SINGLE_REFRESHES) {
+			NativesRefreshJob.refresh(nativesFolder, IResource.DEPTH_INFINITE);
+			return;
+		}
+		for (String path : changed) {
+			IResource file = nativesFolder.getFile(path);
+			// new files may sit in new dirs, which are discovered by refreshing the outermost one
+			while (!file.getParent().exists() && !file.getParent().equals(nativesFolder)) {
+				file = file.getParent();
+			}
+			NativesRefreshJob.refresh(file, IResource.DEPTH_INFINITE);
+		}
+	}
+
 	private void executeNativeDependenciesCopy(ProjectConfigurationRequest request, IProgressMonitor progressMonitor) throws CoreException {
 		List<MojoExecution> executions = getMojoExecutions(request, progressMonitor);
 
@@ -0,0 +1,88 @@
+package com.googlecode.mavennatives.m2eclipse.natives;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.resources.WorkspaceJob;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.MultiStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.SubMonitor;
+
+/**
+ * Refreshes the natives resources of all configured projects in a single workspace job, so importing or updating many
+ * projects sends one batch of resource change notifications instead of one per project.
+ * <p>
+ * Resources queued while the job waits for its delay are refreshed by the same run.
+ */
+public class NativesRefreshJob extends WorkspaceJob
+{
+	private static final long DELAY = 200;
+
+	private static final NativesRefreshJob INSTANCE = new NativesRefreshJob();
+
+	/**
+	 * Resources to refresh, with the depth to refresh them with.
+	 */
+	private final Map<IResource, Integer> pending = new LinkedHashMap<IResource, Integer>();
+
+	private NativesRefreshJob()
+	{
+		super("Refreshing native dependencies");
+		setRule(ResourcesPlugin.getWorkspace().getRoot());
+		setSystem(true);
+	}
+
+	public static void refresh(IResource resource, int depth)
+	{
+		synchronized (INSTANCE.pending)
+		{
+			Integer queued = INSTANCE.pending.get(resource);
+			if (queued == null || queued.intValue() < depth)
+			{
+				INSTANCE.pending.put(resource, Integer.valueOf(depth));
+			}
+		}
+		INSTANCE.schedule(DELAY);
+	}
+
+	@Override
+	public IStatus runInWorkspace(IProgressMonitor monitor) throws CoreException
+	{
+		Map<IResource, Integer> resources;
+		synchronized (pending)
+		{
+			resources = new LinkedHashMap<IResource, Integer>(pending);
+			pending.clear();
+		}
+		SubMonitor progress = SubMonitor.convert(monitor, resources.size());
+		List<IStatus> failures = new ArrayList<IStatus>();
+		for (Map.Entry<IResource, Integer> resource : resources.entrySet())
+		{
+			if (progress.isCanceled())
+			{
+				return Status.CANCEL_STATUS;
+			}
+			try
+			{
+				resource.getKey().refreshLocal(resource.getValue().intValue(), progress.newChild(1));
+			}
+			catch (CoreException e)
+			{
+				failures.add(e.getStatus());
+			}
+		}
+		if (failures.isEmpty())
+		{
+			return Status.OK_STATUS;
+		}
+		return new MultiStatus(Activator.PLUGIN_ID, IStatus.ERROR, failures.toArray(new IStatus[failures.size()]),
+				"Unable to refresh native dependencies", null);
+	}
+}
@@ -0,0 +1,82 @@
+package com.googlecode.mavennatives.m2eclipse.natives;
+
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginExecution;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Digest of everything the copy goal depends on: the resolved natives artifacts (coordinates, file, size and
+ * modification time) and the configuration of the plugin and of its executions of the copy goal. When it did not change
+ * since the previous configure, the natives dir already holds what the goal would produce.
+ */
+public class NativesSignature
+{
+	private NativesSignature()
+	{
+	}
+
+	public static String of(MavenProject mavenProject)
+	{
+		List<String> lines = new ArrayList<String>();
+		@SuppressWarnings("unchecked")
+		Set<Artifact> artifacts = mavenProject.getArtifacts();
+		for (Artifact artifact : artifacts)
+		{
+			String classifier = artifact.getClassifier();
+			if (classifier != null && classifier.startsWith("natives-"))
+			{
+				File file = artifact.getFile();
+				lines.add(artifact.getId() + "|" + file + "|" + (file != null ? file.length() + "|" + file.lastModified() : ""));
+			}
+		}
+		Collections.sort(lines);
+		Plugin plugin = mavenProject.getPlugin(NativesConfigExtractor.groupId + ":" + NativesConfigExtractor.artifactId);
+		if (plugin != null)
+		{
+			lines.add("configuration|" + plugin.getConfiguration());
+			lines.add("version|" + plugin.getVersion());
+			// execution-level configuration is merged over the plugin-level one for the copy goal
+			for (PluginExecution execution : plugin.getExecutions())
+			{
+				if (execution.getGoals().contains(NativesConfigExtractor.nativeDependenciesGoal))
+				{
+					lines.add("execution|" + execution.getId() + "|" + execution.getGoals() + "|" + execution.getConfiguration());
+				}
+			}
+		}
+
+		try
+		{
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			for (String line : lines)
+			{
+				digest.update(line.getBytes("UTF-8"));
+				digest.update((byte) '\n');
+			}
+			StringBuilder hex = new StringBuilder();
+			for (byte b : digest.digest())
+			{
+				hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+			}
+			return hex.toString();
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new IllegalStateException(e);
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+}
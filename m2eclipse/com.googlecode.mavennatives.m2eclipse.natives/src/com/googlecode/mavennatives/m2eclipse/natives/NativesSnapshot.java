@@ -0,0 +1,70 @@
+package com.googlecode.mavennatives.m2eclipse.natives;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Size and modification time of every file below a dir, to tell which files an execution of the copy goal touched.
+ */
+public class NativesSnapshot
+{
+	private final Map<String, String> files = new HashMap<String, String>();
+
+	private NativesSnapshot()
+	{
+	}
+
+	public static NativesSnapshot of(File dir)
+	{
+		NativesSnapshot snapshot = new NativesSnapshot();
+		snapshot.scan(dir, "");
+		return snapshot;
+	}
+
+	private void scan(File dir, String prefix)
+	{
+		File[] children = dir.listFiles();
+		if (children == null)
+		{
+			return;
+		}
+		for (File child : children)
+		{
+			String path = prefix + child.getName();
+			if (child.isDirectory())
+			{
+				scan(child, path + "/");
+			}
+			else
+			{
+				files.put(path, child.length() + "|" + child.lastModified());
+			}
+		}
+	}
+
+	/**
+	 * @return the paths, relative to the dir, of the files added, changed or removed since the given snapshot
+	 */
+	public List<String> changedSince(NativesSnapshot previous)
+	{
+		List<String> changed = new ArrayList<String>();
+		for (Map.Entry<String, String> file : files.entrySet())
+		{
+			if (!file.getValue().equals(previous.files.get(file.getKey())))
+			{
+				changed.add(file.getKey());
+			}
+		}
+		for (String path : previous.files.keySet())
+		{
+			if (!files.containsKey(path))
+			{
+				changed.add(path);
+			}
+		}
+		return changed;
+	}
+}
@@ -0,0 +1,129 @@
+package com.googlecode.mavennatives.nativedependencies.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.googlecode.mavennatives.core.JarUnpacker;
+import com.googlecode.mavennatives.core.UnpackOptions;
+import com.googlecode.mavennatives.core.UnpackResult;
+
+/**
+ * Measures {@link JarUnpacker#copyJarContent} end to end on synthetic natives jars:
+ * <ul>
+ * <li>cold: unpacking into an empty dir, as after a clean</li>
+ * <li>warm: unpacking over the files of a previous run, rewriting every one of them</li>
+ * <li>noop: unpacking over the files of a previous run that are all up to date</li>
+ * </ul>
+ * Each invocation is a single unpack, so the results are times per jar. Run with e.g.
+ * {@code java -jar target/benchmarks.jar JarUnpackerBenchmark -p shape=FEW_HUGE}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class JarUnpackerBenchmark {
+
+    @Param({"MANY_SMALL", "MIXED", "FEW_HUGE"})
+    public NativesJarGenerator.Shape shape;
+
+    @Param({"false", "true"})
+    public boolean stored;
+
+    @Param({"STREAM", "CHANNEL"})
+    public UnpackOptions.CopyStrategy copyStrategy;
+
+    private final JarUnpacker jarUnpacker = new JarUnpacker();
+    private Path workDir;
+    private File jar;
+    private File coldDir;
+    private File warmDir;
+    private File noopDir;
+
+    @Setup(Level.Trial)
+    public void createJar() throws IOException {
+        workDir = Files.createTempDirectory("natives-benchmark");
+        jar = workDir.resolve("natives-" + shape + ".jar").toFile();
+        NativesJarGenerator.generate(jar, shape, stored, 42);
+        coldDir = workDir.resolve("cold").toFile();
+        warmDir = workDir.resolve("warm").toFile();
+        noopDir = workDir.resolve("noop").toFile();
+        jarUnpacker.copyJarContent(jar, warmDir, options(false));
+        jarUnpacker.copyJarContent(jar, noopDir, options(false));
+    }
+
+    @Setup(Level.Invocation)
+    public void emptyColdDir() throws IOException {
+        deleteRecursively(coldDir.toPath());
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteWorkDir() throws IOException {
+        deleteRecursively(workDir);
+    }
+
+    @Benchmark
+    public UnpackResult cold() throws IOException {
+        return jarUnpacker.copyJarContent(jar, coldDir, options(false));
+    }
+
+    @Benchmark
+    public UnpackResult warm() throws IOException {
+        return jarUnpacker.copyJarContent(jar, warmDir, options(false));
+    }
+
+    @Benchmark
+    public UnpackResult noop() throws IOException {
+        return jarUnpacker.copyJarContent(jar, noopDir, options(true));
+    }
+
+    private UnpackOptions options(boolean skipIdentical) {
+        return new UnpackOptions()
+                .setCopyStrategy(copyStrategy)
+                .setSkipIdentical(skipIdentical)
+                .setAtomicWrites(false);
+    }
+
+    private static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                if (exc != null) {
+                    throw exc;
+                }
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
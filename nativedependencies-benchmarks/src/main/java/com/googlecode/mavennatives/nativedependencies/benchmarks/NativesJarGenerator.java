@@ -0,0 +1,99 @@
+package com.googlecode.mavennatives.nativedependencies.benchmarks;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+/**
+ * Writes synthetic natives jars. Their entries are made of alternating random and repetitive blocks, so they deflate
+ * to about half their size like real shared libraries do.
+ */
+public final class NativesJarGenerator {
+
+    private static final int BLOCK_SIZE = 4096;
+
+    /**
+     * The number and size of the natives a jar holds.
+     */
+    public enum Shape {
+        /**
+         * Many small libraries and resources, e.g. a natives jar bundling plugins.
+         */
+        MANY_SMALL(2000, 8 * 1024),
+        /**
+         * A few hundred mid sized libraries.
+         */
+        MIXED(200, 256 * 1024),
+        /**
+         * A handful of huge binaries, e.g. GPU compute libraries.
+         */
+        FEW_HUGE(4, 32 * 1024 * 1024);
+
+        private final int files;
+        private final int fileSize;
+
+        Shape(int files, int fileSize) {
+            this.files = files;
+            this.fileSize = fileSize;
+        }
+
+        public int getFiles() {
+            return files;
+        }
+
+        public int getFileSize() {
+            return fileSize;
+        }
+    }
+
+    private NativesJarGenerator() {
+    }
+
+    /**
+     * @param stored whether entries are stored instead of deflated
+     * @param seed   the seed of the content, the same seed always produces the same jar
+     */
+    public static void generate(File jar, Shape shape, boolean stored, long seed) throws IOException {
+        final Random random = new Random(seed);
+        final byte[] content = new byte[shape.getFileSize()];
+        try (JarOutputStream jos = new JarOutputStream(new BufferedOutputStream(new FileOutputStream(jar), 1 << 16))) {
+            jos.putNextEntry(new JarEntry("META-INF/MANIFEST.MF"));
+            jos.write("Manifest-Version: 1.0\n".getBytes("UTF-8"));
+            for (int i = 0; i < shape.getFiles(); i++) {
+                fill(content, random);
+                final JarEntry entry = new JarEntry(String.format("lib/%02d/libnative%04d.so", i % 16, i));
+                if (stored) {
+                    final CRC32 crc = new CRC32();
+                    crc.update(content);
+                    entry.setMethod(ZipEntry.STORED);
+                    entry.setSize(content.length);
+                    entry.setCompressedSize(content.length);
+                    entry.setCrc(crc.getValue());
+                }
+                jos.putNextEntry(entry);
+                jos.write(content);
+            }
+        }
+    }
+
+    private static void fill(byte[] content, Random random) {
+        final byte[] block = new byte[BLOCK_SIZE];
+        for (int offset = 0, n = 0; offset < content.length; offset += BLOCK_SIZE, n++) {
+            final int length = Math.min(BLOCK_SIZE, content.length - offset);
+            if (n % 2 == 0) {
+                random.nextBytes(block);
+            } else {
+                for (int i = 0; i < length; i++) {
+                    block[i] = (byte) (i % 61);
+                }
+            }
+            System.arraycopy(block, 0, content, offset, length);
+        }
+    }
+}
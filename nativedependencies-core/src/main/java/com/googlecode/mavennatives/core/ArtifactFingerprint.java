@@ -0,0 +1,99 @@
+package com.googlecode.mavennatives.core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Size, modification time and content hash of an artifact file.
+ */
+final class ArtifactFingerprint {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Fingerprints computed by this JVM, so the same artifact is hashed only once even when several steps or reactor
+     * modules need its hash. Entries are only trusted while the file keeps its size and modification time.
+     */
+    private static final ConcurrentMap<File, ArtifactFingerprint> KNOWN = new ConcurrentHashMap<>();
+
+    private final long size;
+    private final long lastModified;
+    private final String sha1;
+
+    ArtifactFingerprint(long size, long lastModified, String sha1) {
+        this.size = size;
+        this.lastModified = lastModified;
+        this.sha1 = sha1;
+    }
+
+    static ArtifactFingerprint of(File file) throws IOException {
+        final File absoluteFile = file.getAbsoluteFile();
+        final ArtifactFingerprint known = KNOWN.get(absoluteFile);
+        if (known != null && known.sameMetadata(absoluteFile)) {
+            return known;
+        }
+        final long size = absoluteFile.length();
+        final long lastModified = absoluteFile.lastModified();
+        final ArtifactFingerprint fingerprint = new ArtifactFingerprint(size, lastModified, sha1(absoluteFile));
+        KNOWN.put(absoluteFile, fingerprint);
+        return fingerprint;
+    }
+
+    long getSize() {
+        return size;
+    }
+
+    long getLastModified() {
+        return lastModified;
+    }
+
+    String getSha1() {
+        return sha1;
+    }
+
+    /**
+     * Cheap check that only looks at the file metadata.
+     */
+    boolean sameMetadata(File file) {
+        return file.length() == size && file.lastModified() == lastModified;
+    }
+
+    static String sha1(File file) throws IOException {
+        return hash(file, "SHA-1");
+    }
+
+    static String hash(File file, String algorithm) throws IOException {
+        final MessageDigest digest = messageDigest(algorithm);
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream is = new FileInputStream(file)) {
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    static MessageDigest messageDigest(String algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(algorithm + " is not available", e);
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        final StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+            sb.append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+}
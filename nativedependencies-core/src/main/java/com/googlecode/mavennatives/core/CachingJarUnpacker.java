@@ -0,0 +1,150 @@
+package com.googlecode.mavennatives.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Unpacks every jar once per machine into a cache dir named after the jar's SHA-1, then fills target dirs with hard
+ * links to the cached files (copies when the file system can not link them). Extractions running concurrently in the
+ * same JVM are deduplicated by an {@link UnpackCoordinator}.
+ * <p>
+ * Cached files are shared by every target dir linking them, so targets are always replaced through an atomic move and
+ * never written in place. Linking reads no content, so the SHA-256 of every file is computed while the jar is cached and
+ * stored next to the cache dir of the jar as {@code <SHA-1>.sha256}, in the format of {@link NativesLock}.
+ */
+final class CachingJarUnpacker implements JarUnpackable {
+
+    private final JarUnpackable delegate;
+    private final File cacheDir;
+    private final UnpackCoordinator coordinator;
+
+    CachingJarUnpacker(JarUnpackable delegate, File cacheDir, UnpackCoordinator coordinator) {
+        this.delegate = delegate;
+        this.cacheDir = cacheDir;
+        this.coordinator = coordinator;
+    }
+
+    @Override
+    public UnpackResult copyJarContent(File jarPath, File targetDir, UnpackOptions options) throws IOException {
+        final long start = System.nanoTime();
+        final UnpackResult result = new UnpackResult();
+        final Path cached = cachedContent(jarPath, options, result);
+        final Map<String, String> digests = options.isComputeDigests() ? cachedDigests(cached) : null;
+        for (String entry : listFiles(cached)) {
+            final String file = options.targetName(entry);
+            if (file == null) {
+                continue;
+            }
+            final Path source = cached.resolve(entry);
+            final Path target = targetDir.toPath().resolve(file);
+            if (digests != null) {
+                final String digest = digests.get(entry);
+                // jars cached by an older version have no digests
+                result.addDigest(file, digest != null ? digest : ArtifactFingerprint.hash(source.toFile(), NativesLock.ALGORITHM));
+            }
+            if (Files.exists(target) && Files.isSameFile(source, target)) {
+                result.addSkippedFile(file);
+                continue;
+            }
+            Files.createDirectories(target.getParent());
+            NativeFiles.replaceWithLink(source, target);
+            result.addWrittenFile(file);
+        }
+        result.setElapsedNanos(System.nanoTime() - start);
+        return result;
+    }
+
+    @Override
+    public List<String> listEntries(File jarPath, UnpackOptions options) throws IOException {
+        return delegate.listEntries(jarPath, options);
+    }
+
+    /**
+     * @return the dir holding the unpacked content of the jar, unpacking it first when no previous build did
+     */
+    private Path cachedContent(final File jarPath, final UnpackOptions options, final UnpackResult result) throws IOException {
+        final Path cached = cacheDir.toPath().resolve(ArtifactFingerprint.of(jarPath).getSha1());
+        final UnpackLog log = options.getLog();
+        if (Files.isDirectory(cached)) {
+            log.info("Using cached natives of " + jarPath.getName());
+            return cached;
+        }
+        return coordinator.extractOnce(cached, new Callable<Path>() {
+            @Override
+            public Path call() throws IOException {
+                if (Files.isDirectory(cached)) {
+                    log.info("Using natives of " + jarPath.getName() + " cached by another module");
+                    return cached;
+                }
+                return extract(jarPath, cached, options, result);
+            }
+        });
+    }
+
+    private Path extract(File jarPath, Path cached, UnpackOptions options, UnpackResult result) throws IOException {
+        Files.createDirectories(cacheDir.toPath());
+        final Path temp = NativeFiles.createSiblingTemp(cached);
+        Files.delete(temp);
+        try {
+            Files.createDirectory(temp);
+            // the cache holds every entry, the filters and routes of each build are applied when linking
+            final UnpackResult extracted = delegate.copyJarContent(jarPath, temp.toFile(), new UnpackOptions()
+                    .setCopyStrategy(options.getCopyStrategy())
+                    .setBufferSize(options.getBufferSize())
+                    .setSkipIdentical(false)
+                    .setAtomicWrites(false)
+                    .setComputeDigests(true)
+                    .setBudget(options.getBudget())
+                    .setLog(options.getLog()));
+            result.addMetricsOf(extracted);
+            // written first, so the digests of every cached dir are known unless it was cached by an older version
+            NativesLock.write(digestsFile(cached).toFile(), extracted.getDigests());
+            try {
+                Files.move(temp, cached);
+            } catch (IOException e) {
+                if (!Files.isDirectory(cached)) {
+                    throw e;
+                }
+                // another build cached the same jar meanwhile, its copy is as good as ours
+            }
+        } finally {
+            NativeFiles.deleteRecursively(temp);
+        }
+        return cached;
+    }
+
+    /**
+     * @return the SHA-256 of the cached files by entry name, empty when they were not stored
+     */
+    private static Map<String, String> cachedDigests(Path cached) throws IOException {
+        final Path digests = digestsFile(cached);
+        return Files.isRegularFile(digests) ? NativesLock.read(digests.toFile()) : Collections.<String, String>emptyMap();
+    }
+
+    private static Path digestsFile(Path cached) {
+        return cached.resolveSibling(cached.getFileName() + ".sha256");
+    }
+
+    private static List<String> listFiles(final Path dir) throws IOException {
+        final List<String> files = new ArrayList<>();
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                files.add(dir.relativize(file).toString().replace(File.separatorChar, '/'));
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        Collections.sort(files);
+        return files;
+    }
+}
@@ -0,0 +1,243 @@
+package com.googlecode.mavennatives.core;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the libraries a shared library depends on from its dynamic linking tables, without any external toolchain:
+ * the DT_NEEDED entries of ELF files, the import directory of PE (Windows) files and the dylib load commands of Mach-O
+ * files, including the first architecture of universal binaries. Delay loaded PE imports are left out, as Windows only
+ * loads them on first use.
+ * <p>
+ * Only the headers and the tables are read, through a memory map of the file.
+ */
+final class DependencyReader {
+
+    private static final int PT_LOAD = 1;
+    private static final int PT_DYNAMIC = 2;
+    private static final long DT_NULL = 0;
+    private static final long DT_NEEDED = 1;
+    private static final long DT_STRTAB = 5;
+    private static final long DT_SONAME = 14;
+
+    private static final int IMAGE_DIRECTORY_ENTRY_IMPORT = 1;
+
+    private static final int FAT_MAGIC = 0xcafebabe;
+    private static final int FAT_MAGIC_64 = 0xcafebabf;
+    private static final int MH_MAGIC = 0xfeedface;
+    private static final int MH_MAGIC_64 = 0xfeedfacf;
+    private static final int LC_LOAD_DYLIB = 0xc;
+    private static final int LC_ID_DYLIB = 0xd;
+    private static final int LC_LOAD_WEAK_DYLIB = 0x80000018;
+    private static final int LC_REEXPORT_DYLIB = 0x8000001f;
+    private static final int LC_LOAD_UPWARD_DYLIB = 0x80000023;
+
+    private DependencyReader() {
+    }
+
+    /**
+     * @param path the path of the file relative to the natives dir, '/' separated
+     * @return null when the file is not an ELF, PE or Mach-O file, or is too damaged to tell its dependencies
+     */
+    static NativeLibrary read(Path file, String path) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < 64 || channel.size() > Integer.MAX_VALUE) {
+                return null;
+            }
+            final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            try {
+                final int magic = buffer.getInt(0);
+                if (magic == 0x7f454c46) {
+                    return elf(buffer, path);
+                }
+                if ((magic >>> 16) == 0x4d5a) {
+                    return pe(buffer.order(ByteOrder.LITTLE_ENDIAN), path);
+                }
+                if (magic == FAT_MAGIC || magic == FAT_MAGIC_64) {
+                    return universal(buffer, path, magic == FAT_MAGIC_64);
+                }
+                return machO(buffer, 0, path);
+            } catch (IndexOutOfBoundsException | BufferUnderflowException | IllegalArgumentException e) {
+                return null;
+            }
+        }
+    }
+
+    private static NativeLibrary elf(ByteBuffer elf, String path) {
+        final boolean is64 = elf.get(4) == 2;
+        elf.order(elf.get(5) == 2 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+        final long phoff = is64 ? elf.getLong(32) : elf.getInt(28) & 0xffffffffL;
+        final int phentsize = elf.getShort(is64 ? 54 : 42) & 0xffff;
+        final int phnum = elf.getShort(is64 ? 56 : 44) & 0xffff;
+        final List<long[]> loads = new ArrayList<>();
+        long dynamicOffset = -1;
+        long dynamicSize = 0;
+        for (int i = 0; i < phnum; i++) {
+            final int ph = (int) (phoff + (long) i * phentsize);
+            final int type = elf.getInt(ph);
+            final long offset = is64 ? elf.getLong(ph + 8) : elf.getInt(ph + 4) & 0xffffffffL;
+            final long vaddr = is64 ? elf.getLong(ph + 16) : elf.getInt(ph + 8) & 0xffffffffL;
+            final long filesz = is64 ? elf.getLong(ph + 32) : elf.getInt(ph + 16) & 0xffffffffL;
+            if (type == PT_LOAD) {
+                loads.add(new long[]{offset, vaddr, filesz});
+            } else if (type == PT_DYNAMIC) {
+                dynamicOffset = offset;
+                dynamicSize = filesz;
+            }
+        }
+        final String fileName = path.substring(path.lastIndexOf('/') + 1);
+        final List<String> needed = new ArrayList<>();
+        if (dynamicOffset < 0) {
+            // statically linked
+            return new NativeLibrary(path, NativeLibrary.Format.ELF, fileName, needed);
+        }
+        final int entrySize = is64 ? 16 : 8;
+        final List<Long> neededOffsets = new ArrayList<>();
+        long strtab = -1;
+        long soname = -1;
+        for (long entry = dynamicOffset; entry + entrySize <= dynamicOffset + dynamicSize; entry += entrySize) {
+            final long tag = is64 ? elf.getLong((int) entry) : elf.getInt((int) entry);
+            final long value = is64 ? elf.getLong((int) entry + 8) : elf.getInt((int) entry + 4) & 0xffffffffL;
+            if (tag == DT_NULL) {
+                break;
+            } else if (tag == DT_NEEDED) {
+                neededOffsets.add(value);
+            } else if (tag == DT_STRTAB) {
+                strtab = value;
+            } else if (tag == DT_SONAME) {
+                soname = value;
+            }
+        }
+        // DT_STRTAB holds an address, found in the file through the segment loading it
+        long strtabOffset = -1;
+        for (long[] load : loads) {
+            if (strtab >= load[1] && strtab < load[1] + load[2]) {
+                strtabOffset = load[0] + strtab - load[1];
+            }
+        }
+        if (strtabOffset < 0) {
+            return new NativeLibrary(path, NativeLibrary.Format.ELF, fileName, needed);
+        }
+        for (long offset : neededOffsets) {
+            needed.add(baseName(string(elf, strtabOffset + offset)));
+        }
+        final String name = soname >= 0 ? string(elf, strtabOffset + soname) : fileName;
+        return new NativeLibrary(path, NativeLibrary.Format.ELF, name, needed);
+    }
+
+    private static NativeLibrary pe(ByteBuffer pe, String path) {
+        final int header = pe.getInt(0x3c);
+        if (pe.getInt(header) != 0x00004550) {
+            return null;
+        }
+        final int coff = header + 4;
+        final int sectionCount = pe.getShort(coff + 2) & 0xffff;
+        final int optionalSize = pe.getShort(coff + 16) & 0xffff;
+        final int optional = coff + 20;
+        final boolean plus = (pe.getShort(optional) & 0xffff) == 0x20b;
+        final int directoryCount = pe.getInt(optional + (plus ? 108 : 92));
+        final String fileName = path.substring(path.lastIndexOf('/') + 1);
+        final List<String> needed = new ArrayList<>();
+        if (directoryCount <= IMAGE_DIRECTORY_ENTRY_IMPORT) {
+            return new NativeLibrary(path, NativeLibrary.Format.PE, fileName, needed);
+        }
+        final int importRva = pe.getInt(optional + (plus ? 112 : 96) + IMAGE_DIRECTORY_ENTRY_IMPORT * 8);
+        final int sections = optional + optionalSize;
+        if (importRva == 0) {
+            return new NativeLibrary(path, NativeLibrary.Format.PE, fileName, needed);
+        }
+        for (int descriptor = rvaToOffset(pe, sections, sectionCount, importRva); ; descriptor += 20) {
+            final int nameRva = pe.getInt(descriptor + 12);
+            if (nameRva == 0 && pe.getInt(descriptor + 16) == 0) {
+                break;
+            }
+            needed.add(string(pe, rvaToOffset(pe, sections, sectionCount, nameRva)));
+        }
+        return new NativeLibrary(path, NativeLibrary.Format.PE, fileName, needed);
+    }
+
+    private static int rvaToOffset(ByteBuffer pe, int sections, int sectionCount, int rva) {
+        for (int i = 0; i < sectionCount; i++) {
+            final int section = sections + i * 40;
+            final int virtualAddress = pe.getInt(section + 12);
+            final int size = Math.max(pe.getInt(section + 8), pe.getInt(section + 16));
+            if (rva >= virtualAddress && rva < virtualAddress + size) {
+                return pe.getInt(section + 20) + rva - virtualAddress;
+            }
+        }
+        throw new IllegalArgumentException("RVA " + rva + " is in no section");
+    }
+
+    /**
+     * The architectures of a universal binary link against the same libraries, the first one tells them all.
+     */
+    private static NativeLibrary universal(ByteBuffer fat, String path, boolean is64) {
+        fat.order(ByteOrder.BIG_ENDIAN);
+        final int count = fat.getInt(4);
+        // Java class files share the magic, their version numbers make a huge architecture count
+        if (count <= 0 || count > 32) {
+            return null;
+        }
+        final long offset = is64 ? fat.getLong(8 + 8) : fat.getInt(8 + 8) & 0xffffffffL;
+        return machO(fat, (int) offset, path);
+    }
+
+    private static NativeLibrary machO(ByteBuffer macho, int start, String path) {
+        macho.order(ByteOrder.BIG_ENDIAN);
+        int magic = macho.getInt(start);
+        if (magic != MH_MAGIC && magic != MH_MAGIC_64) {
+            macho.order(ByteOrder.LITTLE_ENDIAN);
+            magic = macho.getInt(start);
+            if (magic != MH_MAGIC && magic != MH_MAGIC_64) {
+                return null;
+            }
+        }
+        final int commandCount = macho.getInt(start + 16);
+        int command = start + (magic == MH_MAGIC_64 ? 32 : 28);
+        final String fileName = path.substring(path.lastIndexOf('/') + 1);
+        String name = fileName;
+        final List<String> needed = new ArrayList<>();
+        for (int i = 0; i < commandCount; i++) {
+            final int type = macho.getInt(command);
+            final int size = macho.getInt(command + 4);
+            if (size < 8) {
+                return null;
+            }
+            if (type == LC_ID_DYLIB) {
+                name = baseName(string(macho, command + macho.getInt(command + 8)));
+            } else if (type == LC_LOAD_DYLIB || type == LC_LOAD_WEAK_DYLIB || type == LC_REEXPORT_DYLIB
+                    || type == LC_LOAD_UPWARD_DYLIB) {
+                needed.add(baseName(string(macho, command + macho.getInt(command + 8))));
+            }
+            command += size;
+        }
+        return new NativeLibrary(path, NativeLibrary.Format.MACH_O, name, needed);
+    }
+
+    private static String string(ByteBuffer buffer, long offset) {
+        int end = (int) offset;
+        while (buffer.get(end) != 0) {
+            end++;
+        }
+        final byte[] bytes = new byte[end - (int) offset];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get((int) offset + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Mach-O names are paths such as @rpath/libfoo.dylib, ELF names may be paths as well.
+     */
+    private static String baseName(String name) {
+        return name.substring(name.lastIndexOf('/') + 1);
+    }
+}
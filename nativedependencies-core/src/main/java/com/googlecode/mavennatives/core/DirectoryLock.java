@@ -0,0 +1,75 @@
+package com.googlecode.mavennatives.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Exclusive lock on a natives dir, held by one build at a time whether the other builds run in this JVM (parallel
+ * reactor modules sharing the dir) or in other processes.
+ * <p>
+ * The lock file lives next to the dir, not inside it, so the dir itself can be swapped while the lock is held.
+ */
+final class DirectoryLock implements Closeable {
+
+    /**
+     * File locks are held by the whole JVM, so threads of the same JVM are serialized by these locks first.
+     */
+    private static final ConcurrentMap<String, ReentrantLock> JVM_LOCKS = new ConcurrentHashMap<>();
+
+    private final ReentrantLock jvmLock;
+    private final FileChannel channel;
+    private final FileLock fileLock;
+
+    private DirectoryLock(ReentrantLock jvmLock, FileChannel channel, FileLock fileLock) {
+        this.jvmLock = jvmLock;
+        this.channel = channel;
+        this.fileLock = fileLock;
+    }
+
+    static DirectoryLock lock(File dir) throws IOException {
+        final File canonicalDir = dir.getCanonicalFile();
+        final File lockFile = new File(canonicalDir.getParentFile(), canonicalDir.getName() + ".lock");
+        final ReentrantLock newLock = new ReentrantLock();
+        final ReentrantLock existing = JVM_LOCKS.putIfAbsent(lockFile.getPath(), newLock);
+        final ReentrantLock jvmLock = existing != null ? existing : newLock;
+        jvmLock.lock();
+        try {
+            if (jvmLock.getHoldCount() > 1) {
+                return new DirectoryLock(jvmLock, null, null);
+            }
+            final boolean wereLockFileDirectoriesMade = canonicalDir.getParentFile().mkdirs();
+            if (!wereLockFileDirectoriesMade && !canonicalDir.getParentFile().isDirectory()) {
+                throw new IOException("Unable to create directories: " + canonicalDir.getParentFile());
+            }
+            final FileChannel channel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            try {
+                return new DirectoryLock(jvmLock, channel, channel.lock());
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        } catch (IOException | RuntimeException e) {
+            jvmLock.unlock();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (fileLock != null) {
+                fileLock.release();
+                channel.close();
+            }
+        } finally {
+            jvmLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package com.googlecode.mavennatives.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Removes the sections an ELF executable or shared library does not need at run time (symbol tables, debug info,
+ * comments) without any external toolchain.
+ * <p>
+ * Only sections that are not loaded ({@code SHF_ALLOC} unset) and lie after every loaded segment are removed, so the
+ * file is truncated after its last segment, followed by the section names and a new section header table. Nothing the
+ * dynamic loader reads moves, which keeps the rewrite safe without relocating anything. Files using extended section
+ * numbering, and anything that is not an ELF executable or shared library, are left alone.
+ */
+final class ElfStripper {
+
+    private static final int ET_EXEC = 2;
+    private static final int ET_DYN = 3;
+    private static final int SHT_RELA = 4;
+    private static final int SHT_NOBITS = 8;
+    private static final int SHT_REL = 9;
+    private static final long SHF_ALLOC = 0x2;
+    private static final long SHF_INFO_LINK = 0x40;
+    private static final int SHN_LORESERVE = 0xff00;
+
+    private final FileChannel channel;
+    private final boolean is64;
+    private final ByteBuffer header;
+    private final ByteBuffer sections;
+    private final int shentsize;
+    private final int shnum;
+    private final int shstrndx;
+    private final boolean[] removed;
+    private final long keptEnd;
+
+    private ElfStripper(FileChannel channel, boolean is64, ByteBuffer header, ByteBuffer sections, int shentsize, int shnum,
+                        int shstrndx, long segmentsEnd) {
+        this.channel = channel;
+        this.is64 = is64;
+        this.header = header;
+        this.sections = sections;
+        this.shentsize = shentsize;
+        this.shnum = shnum;
+        this.shstrndx = shstrndx;
+        this.removed = new boolean[shnum];
+        long end = segmentsEnd;
+        // sections kept in place extend what has to be kept, which may in turn keep further sections
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 1; i < shnum; i++) {
+                if (i == shstrndx || type(i) == SHT_NOBITS) {
+                    continue;
+                }
+                final boolean keep = (flags(i) & SHF_ALLOC) != 0 || offset(i) < end;
+                if (keep && offset(i) + size(i) > end) {
+                    end = offset(i) + size(i);
+                    changed = true;
+                }
+                removed[i] = !keep;
+            }
+        }
+        this.keptEnd = end;
+    }
+
+    /**
+     * Tells whether the file is an ELF executable or shared library holding sections to remove. Only the headers are
+     * read.
+     */
+    static boolean isStrippable(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final ElfStripper stripper = parse(channel);
+            return stripper != null && stripper.removedCount() > 0;
+        }
+    }
+
+    /**
+     * Writes the stripped content of source to target.
+     *
+     * @return false, leaving target untouched, when source is not an ELF executable or shared library or has nothing
+     * to remove
+     */
+    static boolean strip(Path source, Path target) throws IOException {
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            final ElfStripper stripper = parse(channel);
+            if (stripper == null || stripper.removedCount() == 0) {
+                return false;
+            }
+            try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                stripper.writeTo(out);
+            }
+            return true;
+        }
+    }
+
+    private static ElfStripper parse(FileChannel channel) throws IOException {
+        final long fileSize = channel.size();
+        if (fileSize < 52) {
+            return null;
+        }
+        final ByteBuffer ident = read(channel, 0, 16);
+        if (ident.getInt(0) != 0x7f454c46) {
+            return null;
+        }
+        final boolean is64 = ident.get(4) == 2;
+        if (!is64 && ident.get(4) != 1) {
+            return null;
+        }
+        final ByteOrder order = ident.get(5) == 2 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+        final int headerSize = is64 ? 64 : 52;
+        if (fileSize < headerSize) {
+            return null;
+        }
+        final ByteBuffer header = read(channel, 0, headerSize).order(order);
+        final int type = header.getShort(16) & 0xffff;
+        if (type != ET_EXEC && type != ET_DYN) {
+            return null;
+        }
+        final long phoff = is64 ? header.getLong(32) : header.getInt(28) & 0xffffffffL;
+        final long shoff = is64 ? header.getLong(40) : header.getInt(32) & 0xffffffffL;
+        final int phentsize = header.getShort(is64 ? 54 : 42) & 0xffff;
+        final int phnum = header.getShort(is64 ? 56 : 44) & 0xffff;
+        final int shentsize = header.getShort(is64 ? 58 : 46) & 0xffff;
+        final int shnum = header.getShort(is64 ? 60 : 48) & 0xffff;
+        final int shstrndx = header.getShort(is64 ? 62 : 50) & 0xffff;
+        if (phnum == 0 || shnum == 0 || shnum >= SHN_LORESERVE || shstrndx == 0 || shstrndx >= shnum
+                || shentsize != (is64 ? 64 : 40) || phentsize != (is64 ? 56 : 32)
+                || phoff + (long) phnum * phentsize > fileSize || shoff + (long) shnum * shentsize > fileSize) {
+            return null;
+        }
+        final ByteBuffer programs = read(channel, phoff, phnum * phentsize).order(order);
+        long segmentsEnd = Math.max(headerSize, phoff + (long) phnum * phentsize);
+        for (int i = 0; i < phnum; i++) {
+            final int base = i * phentsize;
+            final long offset = is64 ? programs.getLong(base + 8) : programs.getInt(base + 4) & 0xffffffffL;
+            final long filesz = is64 ? programs.getLong(base + 32) : programs.getInt(base + 16) & 0xffffffffL;
+            segmentsEnd = Math.max(segmentsEnd, offset + filesz);
+        }
+        if (segmentsEnd > fileSize) {
+            return null;
+        }
+        final ByteBuffer sections = read(channel, shoff, shnum * shentsize).order(order);
+        final ElfStripper stripper = new ElfStripper(channel, is64, header, sections, shentsize, shnum, shstrndx, segmentsEnd);
+        if (stripper.keptEnd > fileSize || stripper.offset(shstrndx) + stripper.size(shstrndx) > fileSize) {
+            return null;
+        }
+        return stripper;
+    }
+
+    private int removedCount() {
+        int count = 0;
+        for (boolean r : removed) {
+            if (r) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void writeTo(FileChannel out) throws IOException {
+        long transferred = 0;
+        while (transferred < keptEnd) {
+            transferred += channel.transferTo(transferred, keptEnd - transferred, out);
+        }
+        long position = keptEnd;
+
+        final int[] newIndex = new int[shnum];
+        int kept = 0;
+        for (int i = 0; i < shnum; i++) {
+            newIndex[i] = removed[i] ? 0 : kept++;
+        }
+
+        long namesOffset = offset(shstrndx);
+        if (namesOffset + size(shstrndx) > keptEnd) {
+            final ByteBuffer names = read(channel, namesOffset, (int) size(shstrndx));
+            namesOffset = position;
+            position += write(out, names, position);
+        }
+
+        final int alignment = is64 ? 8 : 4;
+        position = (position + alignment - 1) / alignment * alignment;
+        final ByteBuffer table = ByteBuffer.allocate(kept * shentsize).order(sections.order());
+        for (int i = 0; i < shnum; i++) {
+            if (removed[i]) {
+                continue;
+            }
+            final int base = newIndex[i] * shentsize;
+            for (int b = 0; b < shentsize; b++) {
+                table.put(base + b, sections.get(i * shentsize + b));
+            }
+            table.putInt(base + (is64 ? 40 : 24), remap(newIndex, link(i)));
+            if ((flags(i) & SHF_INFO_LINK) != 0 || type(i) == SHT_REL || type(i) == SHT_RELA) {
+                table.putInt(base + (is64 ? 44 : 28), remap(newIndex, info(i)));
+            }
+            if (i == shstrndx) {
+                putWord(table, base + (is64 ? 24 : 16), namesOffset);
+            }
+        }
+        final long shoff = position;
+        write(out, table, shoff);
+
+        final ByteBuffer newHeader = ByteBuffer.allocate(header.capacity()).order(header.order());
+        for (int b = 0; b < header.capacity(); b++) {
+            newHeader.put(b, header.get(b));
+        }
+        putWord(newHeader, is64 ? 40 : 32, shoff);
+        newHeader.putShort(is64 ? 60 : 48, (short) kept);
+        newHeader.putShort(is64 ? 62 : 50, (short) newIndex[shstrndx]);
+        write(out, newHeader, 0);
+    }
+
+    private static int remap(int[] newIndex, int index) {
+        return index > 0 && index < newIndex.length ? newIndex[index] : index;
+    }
+
+    private int type(int i) {
+        return sections.getInt(i * shentsize + 4);
+    }
+
+    private long flags(int i) {
+        return is64 ? sections.getLong(i * shentsize + 8) : sections.getInt(i * shentsize + 8) & 0xffffffffL;
+    }
+
+    private long offset(int i) {
+        return is64 ? sections.getLong(i * shentsize + 24) : sections.getInt(i * shentsize + 16) & 0xffffffffL;
+    }
+
+    private long size(int i) {
+        return is64 ? sections.getLong(i * shentsize + 32) : sections.getInt(i * shentsize + 20) & 0xffffffffL;
+    }
+
+    private int link(int i) {
+        return sections.getInt(i * shentsize + (is64 ? 40 : 24));
+    }
+
+    private int info(int i) {
+        return sections.getInt(i * shentsize + (is64 ? 44 : 28));
+    }
+
+    private void putWord(ByteBuffer buffer, int index, long value) {
+        if (is64) {
+            buffer.putLong(index, value);
+        } else {
+            buffer.putInt(index, (int) value);
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of ELF file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static int write(FileChannel out, ByteBuffer buffer, long position) throws IOException {
+        buffer.rewind();
+        final int length = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            out.write(buffer, position + buffer.position());
+        }
+        return length;
+    }
+}
@@ -0,0 +1,108 @@
+package com.googlecode.mavennatives.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.codehaus.plexus.util.SelectorUtils;
+
+/**
+ * Selects jar entries by name with Ant style include and exclude patterns ('*', '?' and '**' for any number of dirs).
+ * <p>
+ * A filter is a list of rules, every one of which must accept an entry: a rule accepts entries matching one of its
+ * includes (or all entries when it has none) unless they match one of its excludes.
+ */
+public final class EntryFilter {
+
+    public static final EntryFilter ALL = new EntryFilter(Collections.<Rule>emptyList());
+
+    private final List<Rule> rules;
+
+    private EntryFilter(List<Rule> rules) {
+        this.rules = rules;
+    }
+
+    /**
+     * @param includes patterns of the entries to unpack, null or empty for all of them
+     * @param excludes patterns of the entries not to unpack, may be null
+     */
+    public static EntryFilter of(List<String> includes, List<String> excludes) {
+        return ALL.and(includes, excludes);
+    }
+
+    /**
+     * @return a filter accepting the entries accepted both by this filter and by the given patterns
+     */
+    public EntryFilter and(List<String> includes, List<String> excludes) {
+        final Rule rule = new Rule(includes, excludes);
+        if (rule.includes.isEmpty() && rule.excludes.isEmpty()) {
+            return this;
+        }
+        final List<Rule> combined = new ArrayList<>(rules);
+        combined.add(rule);
+        return new EntryFilter(Collections.unmodifiableList(combined));
+    }
+
+    /**
+     * @return a filter accepting the entries accepted both by this filter and by the given one
+     */
+    public EntryFilter and(EntryFilter other) {
+        if (other.rules.isEmpty()) {
+            return this;
+        }
+        if (rules.isEmpty()) {
+            return other;
+        }
+        final List<Rule> combined = new ArrayList<>(rules);
+        combined.addAll(other.rules);
+        return new EntryFilter(Collections.unmodifiableList(combined));
+    }
+
+    /**
+     * @param entryName a jar entry name, using '/' as separator
+     */
+    public boolean accepts(String entryName) {
+        for (Rule rule : rules) {
+            if (!rule.accepts(entryName)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Describes the patterns, two filters with the same description select the same entries.
+     */
+    @Override
+    public String toString() {
+        return rules.toString();
+    }
+
+    private static final class Rule {
+        private final List<String> includes;
+        private final List<String> excludes;
+
+        Rule(List<String> includes, List<String> excludes) {
+            this.includes = includes != null ? new ArrayList<>(includes) : Collections.<String>emptyList();
+            this.excludes = excludes != null ? new ArrayList<>(excludes) : Collections.<String>emptyList();
+        }
+
+        boolean accepts(String entryName) {
+            return (includes.isEmpty() || matchesAny(includes, entryName)) && !matchesAny(excludes, entryName);
+        }
+
+        private static boolean matchesAny(List<String> patterns, String entryName) {
+            for (String pattern : patterns) {
+                if (SelectorUtils.matchPath(pattern, entryName, "/", true)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return "includes=" + includes + " excludes=" + excludes;
+        }
+    }
+}
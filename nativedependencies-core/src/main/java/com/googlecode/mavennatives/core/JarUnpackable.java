@@ -0,0 +1,17 @@
+package com.googlecode.mavennatives.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+public interface JarUnpackable {
+
+	String ROLE = JarUnpackable.class.getName();
+	
+	UnpackResult copyJarContent(File jarPath, File targetDir, UnpackOptions options) throws IOException;
+
+	/**
+	 * @return the names of the entries {@link #copyJarContent(File, File, UnpackOptions)} would write, without unpacking anything
+	 */
+	List<String> listEntries(File jarPath, UnpackOptions options) throws IOException;
+}
@@ -0,0 +1,329 @@
+package com.googlecode.mavennatives.core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.apache.commons.io.IOUtils;
+import org.codehaus.plexus.component.annotations.Component;
+
+/**
+ * Unpacks natives jars. Instances hold no state, so the same instance may unpack several jars concurrently.
+ */
+@Component(role = JarUnpackable.class)
+public class JarUnpacker implements JarUnpackable {
+
+    private static final List<String> IGNORED_FILES = new ArrayList<String>() {{
+        add("META-INF");
+        add("MANIFEST.MF");
+    }};
+
+    /**
+     * Buffers reused by the channel copy, one per unpacking thread.
+     */
+    private static final ThreadLocal<byte[]> BUFFERS = new ThreadLocal<>();
+
+    /**
+     * SHA-256 digests, one per unpacking thread.
+     */
+    private static final ThreadLocal<MessageDigest> DIGESTS = new ThreadLocal<MessageDigest>() {
+        @Override
+        protected MessageDigest initialValue() {
+            return ArtifactFingerprint.messageDigest(NativesLock.ALGORITHM);
+        }
+    };
+
+    public UnpackResult copyJarContent(File jarPath, File targetDir, UnpackOptions options) throws IOException {
+        final long start = System.nanoTime();
+        final UnpackLog log = options.getLog();
+        log.info("Copying natives from " + jarPath.getName());
+        final UnpackResult result = new UnpackResult();
+        try (ZipIndex jar = ZipIndex.open(jarPath)) {
+            copyEntries(jar, targetDir, options, result);
+        }
+        result.setElapsedNanos(System.nanoTime() - start);
+        if (options.isSkipIdentical()) {
+            log.info(String.format("Copied %d natives from %s, %d were already up to date", result.getEntriesWritten(),
+                    jarPath.getName(), result.getEntriesSkipped()));
+        }
+        return result;
+    }
+
+    public List<String> listEntries(File jarPath, UnpackOptions options) throws IOException {
+        final List<String> names = new ArrayList<>();
+        try (ZipIndex jar = ZipIndex.open(jarPath)) {
+            for (ZipIndex.Entry entry : jar.entries()) {
+                final String name = options.targetName(entry.getName());
+                if (!entry.isDirectory() && name != null && !IGNORED_FILES.contains(new File(name).getName())) {
+                    names.add(name);
+                }
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Only the central directory is read up front: entries rejected by the filter or found identical are never read
+     * from the jar, and neither are the entries platform routes send to platforms that are not selected, so jars of
+     * several platforms are read once whatever the number of platforms. With a budget, every entry waits for its share
+     * of it before being checked or written. Digests are computed from the bytes being written, or being checked for
+     * identical files, so they never cost a read of their own.
+     */
+    private void copyEntries(ZipIndex jar, File targetDir, UnpackOptions options, UnpackResult result) throws IOException {
+        final MessageDigest digest = options.isComputeDigests() ? DIGESTS.get() : null;
+        final UnpackBudget budget = options.getBudget();
+        final UnpackLog log = options.getLog();
+        for (ZipIndex.Entry file : budget != null ? smallFirst(jar.entries(), budget) : jar.entries()) {
+
+            final String name = options.targetName(file.getName());
+            if (name == null) {
+                continue;
+            }
+
+            final File f = new File(targetDir, name);
+            if (!IGNORED_FILES.contains(f.getName())) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Copying native - " + name + " (" + jar.getFile().getName() + ")");
+                }
+
+                final File parentFile = f.getParentFile();
+                if (!parentFile.exists()) {
+                    final boolean wereParentFileDirectoriesMade = parentFile.mkdirs();
+                    if (!wereParentFileDirectoriesMade) {
+                        throw new IOException("Unable to create directories.");
+                    }
+                }
+
+                if (file.isDirectory()) { // if its a directory, create it
+                    if (!f.exists()) {
+                        final boolean wereFileDirectoriesMade = f.mkdir();
+                        if (!wereFileDirectoriesMade) {
+                            throw new IOException("Unable to create directories.");
+                        }
+                    }
+                    continue;
+                }
+
+                final long waitStart = System.nanoTime();
+                try (UnpackBudget.Grant grant = budget != null ? budget.acquire(file.getSize()) : null) {
+                    result.addBudgetWaitNanos(System.nanoTime() - waitStart);
+                    copyEntry(jar, file, name, f, options, digest, result);
+                }
+            }
+        }
+    }
+
+    private static void copyEntry(ZipIndex jar, ZipIndex.Entry file, String name, File f, UnpackOptions options,
+                                  MessageDigest digest, UnpackResult result) throws IOException {
+        if (options.isSkipIdentical()) {
+            final long checkStart = System.nanoTime();
+            final boolean identical = isIdentical(file, f, options, digest);
+            result.addCheckNanos(System.nanoTime() - checkStart);
+            if (identical) {
+                result.addSkippedFile(name);
+                addDigest(result, name, digest);
+                return;
+            }
+        }
+
+        if (digest != null) {
+            // a failed identical check may have hashed the previous content
+            digest.reset();
+        }
+        final long writeStart = System.nanoTime();
+        final long inflateNanos = writeEntry(jar, file, f, options, digest);
+        result.addTransfer(file.getCompressedSize(), file.getSize(), inflateNanos,
+                System.nanoTime() - writeStart - inflateNanos);
+        result.addWrittenFile(name);
+        addDigest(result, name, digest);
+    }
+
+    /**
+     * @return the entries in central directory order, the large ones last, so the small ones of a jar are not held up
+     * waiting for the budget of a large one
+     */
+    private static List<ZipIndex.Entry> smallFirst(List<ZipIndex.Entry> entries, UnpackBudget budget) {
+        final List<ZipIndex.Entry> ordered = new ArrayList<>(entries.size());
+        final List<ZipIndex.Entry> large = new ArrayList<>();
+        for (ZipIndex.Entry entry : entries) {
+            (budget.isLarge(entry.getSize()) ? large : ordered).add(entry);
+        }
+        ordered.addAll(large);
+        return ordered;
+    }
+
+    /**
+     * Tells whether the target file already holds the entry content. Files of a different size are never read, they are
+     * only identical when they are the stripped copy of the entry; otherwise the CRC-32 of the file is checked against
+     * the one recorded in the jar, which only reads the file.
+     *
+     * @param digest updated with the content of the file when it is read, may be null
+     */
+    private static boolean isIdentical(ZipIndex.Entry entry, File target, UnpackOptions options, MessageDigest digest) throws IOException {
+        if (!target.isFile()) {
+            return false;
+        }
+        if (target.length() != entry.getSize()) {
+            // a stripped copy can not tell the digest of the entry
+            return options.getStripCacheDir() != null && digest == null
+                    && NativesStripper.isStrippedCopy(options.getStripCacheDir(), entry.getCrc(), entry.getSize(), target.toPath());
+        }
+        return crc32(target, options.getBufferSize(), digest) == entry.getCrc();
+    }
+
+    private static long crc32(File file, int bufferSize, MessageDigest digest) throws IOException {
+        final byte[] buffer = buffer(BUFFERS, bufferSize);
+        final CRC32 crc = new CRC32();
+        try (InputStream fis = new FileInputStream(file)) {
+            int read;
+            while ((read = fis.read(buffer)) != -1) {
+                crc.update(buffer, 0, read);
+                if (digest != null) {
+                    digest.update(buffer, 0, read);
+                }
+            }
+        }
+        return crc.getValue();
+    }
+
+    private static void addDigest(UnpackResult result, String name, MessageDigest digest) {
+        if (digest != null) {
+            result.addDigest(name, ArtifactFingerprint.toHex(digest.digest()));
+        }
+    }
+
+    private static byte[] buffer(ThreadLocal<byte[]> buffers, int bufferSize) {
+        byte[] buffer = buffers.get();
+        if (buffer == null || buffer.length != bufferSize) {
+            buffer = new byte[bufferSize];
+            buffers.set(buffer);
+        }
+        return buffer;
+    }
+
+    /**
+     * Writes an entry either in place or, for atomic writes, into a temporary sibling that is then moved over the
+     * target, so an interrupted build never leaves a truncated native behind.
+     *
+     * @param digest updated with the content of the entry, may be null
+     * @return the time spent inflating the entry
+     */
+    private static long writeEntry(ZipIndex jar, ZipIndex.Entry entry, File target, UnpackOptions options,
+                                   MessageDigest digest) throws IOException {
+        if (!options.isAtomicWrites()) {
+            // the existing file may be a hard link into the natives cache, so it gets unlinked rather than truncated
+            Files.deleteIfExists(target.toPath());
+            return copy(jar, entry, target, options, digest);
+        }
+        final Path temp = NativeFiles.createSiblingTemp(target.toPath());
+        boolean moved = false;
+        try {
+            final long inflateNanos = copy(jar, entry, temp.toFile(), options, digest);
+            NativeFiles.moveAtomically(temp, target.toPath());
+            moved = true;
+            return inflateNanos;
+        } finally {
+            if (!moved) {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    /**
+     * Stored entries copied through channels never enter the JVM heap, the kernel transfers them from the jar. Entries
+     * whose digest is needed are read through the heap instead, as the digest has to see their bytes on the way.
+     */
+    private static long copy(ZipIndex jar, ZipIndex.Entry entry, File target, UnpackOptions options,
+                             MessageDigest digest) throws IOException {
+        if (options.getCopyStrategy() == UnpackOptions.CopyStrategy.CHANNEL && entry.isStored() && digest == null) {
+            jar.transferTo(entry, target.toPath());
+            return 0;
+        }
+        try (MeteredInputStream is = new MeteredInputStream(jar.getInputStream(entry))) {
+            final InputStream content = digest != null ? new DigestInputStream(is, digest) : is;
+            if (options.getCopyStrategy() == UnpackOptions.CopyStrategy.STREAM) {
+                copyStream(content, target);
+            } else {
+                copyChannel(content, target, options.getBufferSize());
+            }
+            return is.nanos;
+        }
+    }
+
+    private static void copyStream(InputStream is, File target) throws IOException {
+        try (FileOutputStream fos = new FileOutputStream(target)) {
+            IOUtils.copy(is, fos);
+        }
+    }
+
+    /**
+     * Entries come out of the jar as heap bytes (STORED entries are read as they are, DEFLATED ones through the
+     * inflater), so they are read in large chunks and handed to the channel, which writes them with a single system
+     * call per chunk.
+     */
+    private static void copyChannel(InputStream is, File target, int bufferSize) throws IOException {
+        final byte[] buffer = buffer(BUFFERS, bufferSize);
+        try (FileChannel channel = FileChannel.open(target.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            int read;
+            while ((read = fill(is, buffer)) > 0) {
+                final ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+                while (chunk.hasRemaining()) {
+                    channel.write(chunk);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads until the buffer is full or the stream ends, the inflater tends to return much less than asked for.
+     */
+    private static int fill(InputStream is, byte[] buffer) throws IOException {
+        int total = 0;
+        int read;
+        while (total < buffer.length && (read = is.read(buffer, total, buffer.length - total)) != -1) {
+            total += read;
+        }
+        return total;
+    }
+
+    /**
+     * Counts the time spent reading an entry, which is where it gets inflated.
+     */
+    private static final class MeteredInputStream extends FilterInputStream {
+        private long nanos;
+
+        MeteredInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            final long start = System.nanoTime();
+            final int read = super.read();
+            nanos += System.nanoTime() - start;
+            return read;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            final long start = System.nanoTime();
+            final int read = super.read(b, off, len);
+            nanos += System.nanoTime() - start;
+            return read;
+        }
+    }
+}
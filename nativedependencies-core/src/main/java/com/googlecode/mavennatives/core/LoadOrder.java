@@ -0,0 +1,120 @@
+package com.googlecode.mavennatives.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Orders libraries so every library comes after the libraries it depends on, e.g. libavutil before libavcodec.
+ * Dependencies on libraries that are not part of the set (system libraries) are ignored.
+ * <p>
+ * The order is deterministic: among the libraries whose dependencies are all placed, the one with the smallest path goes
+ * next. Libraries depending on each other in a cycle can not be ordered, they are appended in path order.
+ */
+final class LoadOrder {
+
+    private final List<NativeLibrary> libraries;
+    private final List<NativeLibrary> cyclic;
+
+    private LoadOrder(List<NativeLibrary> libraries, List<NativeLibrary> cyclic) {
+        this.libraries = libraries;
+        this.cyclic = cyclic;
+    }
+
+    static LoadOrder of(Collection<NativeLibrary> libraries) {
+        final Map<String, NativeLibrary> byPath = new TreeMap<>();
+        for (NativeLibrary library : libraries) {
+            byPath.put(library.getPath(), library);
+        }
+        // libraries are referred to by soname or install name; PE imports ignore case
+        final Map<String, NativeLibrary> byName = new HashMap<>();
+        for (NativeLibrary library : byPath.values()) {
+            register(byName, library.getName(), library);
+            register(byName, library.getFileName(), library);
+        }
+        final Map<NativeLibrary, Set<NativeLibrary>> dependencies = new HashMap<>();
+        for (NativeLibrary library : byPath.values()) {
+            final Set<NativeLibrary> resolved = new LinkedHashSet<>();
+            for (String needed : library.getNeeded()) {
+                NativeLibrary dependency = byName.get(needed);
+                if (dependency == null && library.getFormat() == NativeLibrary.Format.PE) {
+                    dependency = byName.get(needed.toLowerCase(Locale.ROOT));
+                }
+                if (dependency != null && dependency != library) {
+                    resolved.add(dependency);
+                }
+            }
+            dependencies.put(library, resolved);
+        }
+        // Kahn's algorithm, the ready libraries kept sorted by path
+        final Map<NativeLibrary, Integer> pending = new HashMap<>();
+        final Map<NativeLibrary, List<NativeLibrary>> dependents = new HashMap<>();
+        final TreeMap<String, NativeLibrary> ready = new TreeMap<>();
+        for (NativeLibrary library : byPath.values()) {
+            pending.put(library, dependencies.get(library).size());
+            for (NativeLibrary dependency : dependencies.get(library)) {
+                if (!dependents.containsKey(dependency)) {
+                    dependents.put(dependency, new ArrayList<NativeLibrary>());
+                }
+                dependents.get(dependency).add(library);
+            }
+            if (dependencies.get(library).isEmpty()) {
+                ready.put(library.getPath(), library);
+            }
+        }
+        final List<NativeLibrary> ordered = new ArrayList<>();
+        final Set<NativeLibrary> placed = new HashSet<>();
+        while (!ready.isEmpty()) {
+            final NativeLibrary library = ready.pollFirstEntry().getValue();
+            ordered.add(library);
+            placed.add(library);
+            if (dependents.containsKey(library)) {
+                for (NativeLibrary dependent : dependents.get(library)) {
+                    final int left = pending.get(dependent) - 1;
+                    pending.put(dependent, left);
+                    if (left == 0) {
+                        ready.put(dependent.getPath(), dependent);
+                    }
+                }
+            }
+        }
+        final List<NativeLibrary> cyclic = new ArrayList<>();
+        for (NativeLibrary library : byPath.values()) {
+            if (!placed.contains(library)) {
+                cyclic.add(library);
+                ordered.add(library);
+            }
+        }
+        return new LoadOrder(ordered, cyclic);
+    }
+
+    private static void register(Map<String, NativeLibrary> byName, String name, NativeLibrary library) {
+        if (!byName.containsKey(name)) {
+            byName.put(name, library);
+        }
+        if (library.getFormat() == NativeLibrary.Format.PE && !byName.containsKey(name.toLowerCase(Locale.ROOT))) {
+            byName.put(name.toLowerCase(Locale.ROOT), library);
+        }
+    }
+
+    /**
+     * @return every library, dependencies first
+     */
+    List<NativeLibrary> getLibraries() {
+        return libraries;
+    }
+
+    /**
+     * @return the libraries that could not be ordered because of dependency cycles
+     */
+    List<NativeLibrary> getCyclic() {
+        return cyclic;
+    }
+}
@@ -0,0 +1,19 @@
+package com.googlecode.mavennatives.core;
+
+/**
+ * What an unpack run does with the SHA-256 lock file of the natives.
+ */
+public enum LockMode {
+    /**
+     * Neither computes digests nor reads or writes the lock file.
+     */
+    NONE,
+    /**
+     * Records the digests of the natives in the lock file.
+     */
+    WRITE,
+    /**
+     * Fails the run when the natives do not match the lock file.
+     */
+    VERIFY
+}
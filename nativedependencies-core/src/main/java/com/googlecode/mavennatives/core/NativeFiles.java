@@ -0,0 +1,146 @@
+package com.googlecode.mavennatives.core;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * File system helpers shared by the unpack steps.
+ */
+final class NativeFiles {
+
+    private NativeFiles() {
+    }
+
+    /**
+     * Creates an empty temporary file next to the given target, so it can later be moved over it atomically. Unlike
+     * {@link Files#createTempFile} the file gets the default permissions, which the target inherits once moved.
+     */
+    static Path createSiblingTemp(Path target) throws IOException {
+        while (true) {
+            final Path temp = target.resolveSibling(
+                    "." + target.getFileName() + "." + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+            try {
+                return Files.createFile(temp);
+            } catch (FileAlreadyExistsException e) {
+                // try another name
+            }
+        }
+    }
+
+    /**
+     * Moves source over target so that readers of target either see the old or the new file, never a partial one.
+     * File systems without atomic moves get a plain replacing move.
+     */
+    static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Hard links target to source, copying it when the file system can not link them (e.g. across devices).
+     */
+    static void linkOrCopy(Path source, Path target) throws IOException {
+        try {
+            Files.createLink(target, source);
+        } catch (IOException | UnsupportedOperationException e) {
+            Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+        }
+    }
+
+    /**
+     * Atomically replaces target with a hard link to source (or a copy when linking is not possible).
+     */
+    static void replaceWithLink(Path source, Path target) throws IOException {
+        final Path temp = createSiblingTemp(target);
+        boolean moved = false;
+        try {
+            Files.delete(temp);
+            linkOrCopy(source, temp);
+            moveAtomically(temp, target);
+            moved = true;
+        } finally {
+            if (!moved) {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    /**
+     * Recreates the content of sourceDir in targetDir, linking or copying every file.
+     */
+    static void mirror(final Path sourceDir, final Path targetDir) throws IOException {
+        Files.walkFileTree(sourceDir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(targetDir.resolve(sourceDir.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                linkOrCopy(file, targetDir.resolve(sourceDir.relativize(file).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Deletes a file below root, then every parent dir up to root that was left empty. Paths leading outside of root
+     * are ignored.
+     *
+     * @return whether the file existed
+     */
+    static boolean deleteWithEmptyParents(Path root, String relativePath) throws IOException {
+        final Path normalizedRoot = root.toAbsolutePath().normalize();
+        final Path file = normalizedRoot.resolve(relativePath).normalize();
+        if (!file.startsWith(normalizedRoot) || file.equals(normalizedRoot)) {
+            return false;
+        }
+        final boolean existed = Files.deleteIfExists(file);
+        for (Path dir = file.getParent(); !dir.equals(normalizedRoot); dir = dir.getParent()) {
+            try {
+                Files.deleteIfExists(dir);
+            } catch (DirectoryNotEmptyException e) {
+                break;
+            }
+        }
+        return existed;
+    }
+
+    /**
+     * Deletes a file or a dir with all its content, doing nothing when it does not exist.
+     */
+    static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                if (exc != null) {
+                    throw exc;
+                }
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
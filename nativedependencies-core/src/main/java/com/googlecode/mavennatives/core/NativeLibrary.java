@@ -0,0 +1,57 @@
+package com.googlecode.mavennatives.core;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An unpacked shared library together with the names of the libraries its dynamic loader loads before it.
+ */
+final class NativeLibrary {
+
+    enum Format {
+        ELF, PE, MACH_O
+    }
+
+    private final String path;
+    private final Format format;
+    private final String name;
+    private final List<String> needed;
+
+    /**
+     * @param path   the path of the library relative to the natives dir, '/' separated
+     * @param name   the name other libraries refer to it by: the ELF soname or the Mach-O install name, the file name
+     *               when the library does not declare one
+     * @param needed the file names of the libraries it depends on, without their directories
+     */
+    NativeLibrary(String path, Format format, String name, List<String> needed) {
+        this.path = path;
+        this.format = format;
+        this.name = name;
+        this.needed = Collections.unmodifiableList(needed);
+    }
+
+    String getPath() {
+        return path;
+    }
+
+    Format getFormat() {
+        return format;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    String getFileName() {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    List<String> getNeeded() {
+        return needed;
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+}
@@ -0,0 +1,166 @@
+package com.googlecode.mavennatives.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+
+/**
+ * Packs a natives dir into a single indexed archive, read at run time by nativedependencies-loader without unpacking
+ * a jar.
+ * <p>
+ * Nothing is compressed and the content of every file starts at a multiple of the alignment, so a reader can map a
+ * library straight from the archive, or extract them all with one sequential read. Big endian layout:
+ *
+ * <pre>
+ * header   magic "MVNNATIV", int version (1), int alignment, int entry count, int index length
+ * index    per entry, in path order: UTF path relative to the natives dir ('/' separated, as written by
+ *          DataOutput.writeUTF), long offset, long size, int mode (0755 or 0644), 32 bytes SHA-256 of the content
+ * data     the content of every entry at its offset, zero padded up to the next multiple of the alignment
+ * </pre>
+ *
+ * With separateDirs, paths start with the platform of their jar. Like bundles, archives are reproducible: they carry
+ * no modification time, so the same natives always produce the same bytes.
+ */
+final class NativesArchive {
+
+    static final byte[] MAGIC = "MVNNATIV".getBytes(StandardCharsets.US_ASCII);
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 24;
+    static final int DIGEST_SIZE = 32;
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private NativesArchive() {
+    }
+
+    /**
+     * @param alignment the alignment of the content of every file, a power of two, e.g. the 4096 bytes of a page
+     * @return the size of the archive
+     */
+    static long write(File dir, File archive, int alignment) throws IOException {
+        if (alignment <= 0 || Integer.bitCount(alignment) != 1) {
+            throw new IOException("The archive alignment must be a power of two: " + alignment);
+        }
+        final Path target = archive.toPath().toAbsolutePath();
+        final List<Path> files = NativesBundle.files(dir.toPath(), target);
+        final String[] paths = new String[files.size()];
+        final long[] offsets = new long[files.size()];
+        final long[] sizes = new long[files.size()];
+        int indexLength = 0;
+        for (int i = 0; i < paths.length; i++) {
+            paths[i] = dir.toPath().relativize(files.get(i)).toString().replace(File.separatorChar, '/');
+            sizes[i] = Files.size(files.get(i));
+            indexLength += utfLength(paths[i]) + 8 + 8 + 4 + DIGEST_SIZE;
+        }
+        long offset = align(HEADER_SIZE + indexLength, alignment);
+        for (int i = 0; i < paths.length; i++) {
+            offsets[i] = offset;
+            offset = align(offset + sizes[i], alignment);
+        }
+        Files.createDirectories(target.getParent());
+        final Path temp = NativeFiles.createSiblingTemp(target);
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                final byte[][] digests = new byte[paths.length][];
+                final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+                for (int i = 0; i < paths.length; i++) {
+                    digests[i] = copy(files.get(i), sizes[i], channel, offsets[i], buffer);
+                }
+                // the last entry is padded too, so every mapping of a whole page stays inside the file
+                if (channel.size() < offset) {
+                    writeFully(channel, ByteBuffer.allocate(1), offset - 1);
+                }
+                final ByteArrayOutputStream header = new ByteArrayOutputStream(HEADER_SIZE + indexLength);
+                final DataOutputStream out = new DataOutputStream(header);
+                out.write(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(alignment);
+                out.writeInt(paths.length);
+                out.writeInt(indexLength);
+                for (int i = 0; i < paths.length; i++) {
+                    out.writeUTF(paths[i]);
+                    out.writeLong(offsets[i]);
+                    out.writeLong(sizes[i]);
+                    out.writeInt(Files.isExecutable(files.get(i)) ? 0755 : 0644);
+                    out.write(digests[i]);
+                }
+                out.flush();
+                writeFully(channel, ByteBuffer.wrap(header.toByteArray()), 0);
+            }
+            NativeFiles.moveAtomically(temp, target);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return Files.size(target);
+    }
+
+    /**
+     * @return the number of bytes {@link DataOutputStream#writeUTF} writes for the string: modified UTF-8 encodes NUL
+     * in two bytes and supplementary characters as two surrogates of three bytes each
+     */
+    static int utfLength(String s) {
+        int length = 2;
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            if (c >= 0x0001 && c <= 0x007f) {
+                length += 1;
+            } else if (c > 0x07ff) {
+                length += 3;
+            } else {
+                length += 2;
+            }
+        }
+        return length;
+    }
+
+    static long align(long offset, int alignment) {
+        return (offset + alignment - 1) & -alignment;
+    }
+
+    /**
+     * @return the SHA-256 of the copied content
+     */
+    private static byte[] copy(Path file, long size, FileChannel target, long offset, ByteBuffer buffer) throws IOException {
+        final MessageDigest digest = sha256();
+        long position = offset;
+        try (FileChannel source = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (position - offset < size) {
+                buffer.clear();
+                buffer.limit((int) Math.min(buffer.capacity(), size - (position - offset)));
+                if (source.read(buffer) == -1) {
+                    throw new IOException(file + " was truncated while being archived");
+                }
+                buffer.flip();
+                digest.update(buffer.array(), 0, buffer.limit());
+                position += writeFully(target, buffer, position);
+            }
+        }
+        return digest.digest();
+    }
+
+    private static int writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int written = 0;
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer, position + written);
+        }
+        return written;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by this JVM", e);
+        }
+    }
+}
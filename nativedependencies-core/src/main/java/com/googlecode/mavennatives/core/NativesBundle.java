@@ -0,0 +1,91 @@
+package com.googlecode.mavennatives.core;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.tukaani.xz.LZMA2Options;
+import org.tukaani.xz.UnsupportedOptionsException;
+import org.tukaani.xz.XZOutputStream;
+
+/**
+ * Packs a natives dir into a tar.xz bundle for distribution.
+ * <p>
+ * Bundles are reproducible: entries are sorted by path and carry neither modification times nor owners, so the same
+ * natives always produce the same bytes and e.g. container image layers built from them stay cached.
+ */
+final class NativesBundle {
+
+    private NativesBundle() {
+    }
+
+    /**
+     * @param preset the xz preset, 0 (fastest) to 9 (smallest)
+     * @return the size of the bundle
+     */
+    static long write(File dir, File bundle, int preset) throws IOException {
+        final List<Path> files = files(dir.toPath(), bundle.toPath().toAbsolutePath());
+        final Path target = bundle.toPath().toAbsolutePath();
+        Files.createDirectories(target.getParent());
+        final Path temp = NativeFiles.createSiblingTemp(target);
+        try {
+            try (OutputStream os = new BufferedOutputStream(Files.newOutputStream(temp));
+                 XZOutputStream xz = new XZOutputStream(os, options(preset));
+                 TarArchiveOutputStream tar = new TarArchiveOutputStream(xz)) {
+                tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+                tar.setBigNumberMode(TarArchiveOutputStream.BIGNUMBER_POSIX);
+                for (Path file : files) {
+                    final TarArchiveEntry entry = new TarArchiveEntry(
+                            dir.toPath().relativize(file).toString().replace(File.separatorChar, '/'));
+                    entry.setSize(Files.size(file));
+                    entry.setMode(Files.isExecutable(file) ? 0100755 : 0100644);
+                    entry.setModTime(0);
+                    tar.putArchiveEntry(entry);
+                    Files.copy(file, tar);
+                    tar.closeArchiveEntry();
+                }
+            }
+            NativeFiles.moveAtomically(temp, target);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return Files.size(target);
+    }
+
+    private static LZMA2Options options(int preset) throws IOException {
+        try {
+            return new LZMA2Options(preset);
+        } catch (UnsupportedOptionsException e) {
+            throw new IOException("Unsupported xz preset " + preset, e);
+        }
+    }
+
+    /**
+     * @return the files to bundle in path order, leaving out the unpack state and the bundle itself
+     */
+    static List<Path> files(Path dir, final Path bundle) throws IOException {
+        final List<Path> files = new ArrayList<>();
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (!file.getFileName().toString().equals(NativesState.FILE_NAME) && !file.toAbsolutePath().equals(bundle)) {
+                    files.add(file);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        Collections.sort(files);
+        return files;
+    }
+}
@@ -0,0 +1,84 @@
+package com.googlecode.mavennatives.core;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * A jar of natives for one platform, as handed to {@link NativesUnpacker}.
+ */
+public final class NativesJar {
+
+    private static final String NATIVES = "natives-";
+
+    private final String key;
+    private final String version;
+    private final File file;
+    private final String platform;
+    private final EntryFilter filter;
+
+    /**
+     * @param key      identifies the jar across runs and versions, e.g. groupId:artifactId:type:classifier; conflicts
+     *                 between jars writing the same file are settled in key order
+     * @param version  the version of the jar, may be null
+     * @param platform the platform of the natives, i.e. the classifier without its "natives-" prefix
+     */
+    public NativesJar(String key, String version, File file, String platform) {
+        this(key, version, file, platform, EntryFilter.ALL);
+    }
+
+    private NativesJar(String key, String version, File file, String platform, EntryFilter filter) {
+        this.key = key;
+        this.version = version;
+        this.file = file;
+        this.platform = platform;
+        this.filter = filter;
+    }
+
+    /**
+     * Describes a jar by its file name alone, e.g. lwjgl-platform-2.9.1-natives-linux.jar for the linux platform, keyed
+     * by its name without extension.
+     *
+     * @throws IllegalArgumentException when the name holds no "natives-" classifier
+     */
+    public static NativesJar of(File file) {
+        final String name = file.getName().endsWith(".jar")
+                ? file.getName().substring(0, file.getName().length() - ".jar".length()) : file.getName();
+        final int natives = name.lastIndexOf(NATIVES);
+        if (natives < 0 || natives + NATIVES.length() == name.length()) {
+            throw new IllegalArgumentException(file + " is not named after a natives-<platform> classifier");
+        }
+        return new NativesJar(name, null, file, name.substring(natives + NATIVES.length()));
+    }
+
+    /**
+     * @return a copy of this jar that only unpacks the entries selected by the given patterns as well
+     */
+    public NativesJar filter(List<String> includes, List<String> excludes) {
+        return new NativesJar(key, version, file, platform, filter.and(includes, excludes));
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public String getPlatform() {
+        return platform;
+    }
+
+    public EntryFilter getFilter() {
+        return filter;
+    }
+
+    @Override
+    public String toString() {
+        return key;
+    }
+}
@@ -0,0 +1,151 @@
+package com.googlecode.mavennatives.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Writes what a JVM needs to load the unpacked natives without any trial and error:
+ * <ul>
+ * <li>a JVM argument file ({@code java @natives.args ...}, Java 9 and later) setting java.library.path to the dirs
+ * holding libraries, and pointing {@value #PROPERTIES_PROPERTY} to the properties file</li>
+ * <li>a properties file with the natives dir ({@value #NATIVES_DIR}), the same library path ({@value #LIBRARY_PATH})
+ * and the libraries in load order, dependencies first ({@value #PRELOAD}, or {@value #PRELOAD}.&lt;platform&gt; for
+ * every platform dir when the natives are unpacked into separate dirs). Paths are relative to the natives dir, comma
+ * separated.</li>
+ * </ul>
+ * The load order comes from the dynamic dependency tables of the libraries, see {@link DependencyReader}. Files whose
+ * content did not change are left untouched.
+ */
+final class NativesLaunchFiles {
+
+    static final String PROPERTIES_PROPERTY = "mavennatives.natives.properties";
+    static final String NATIVES_DIR = "natives.dir";
+    static final String LIBRARY_PATH = "java.library.path";
+    static final String PRELOAD = "preload";
+
+    private NativesLaunchFiles() {
+    }
+
+    /**
+     * @param paths          the files of the natives dir, relative to it and '/' separated
+     * @param argFile        the argument file to write, null for none
+     * @param propertiesFile the properties file to write, null for none
+     * @return the number of libraries found
+     */
+    static int write(File nativesDir, Collection<String> paths, boolean separateDirs, File argFile, File propertiesFile,
+                     UnpackLog log) throws IOException {
+        final Map<String, List<NativeLibrary>> groups = new TreeMap<>();
+        final TreeSet<String> libraryDirs = new TreeSet<>();
+        int count = 0;
+        for (String path : new TreeSet<>(paths)) {
+            final NativeLibrary library = DependencyReader.read(new File(nativesDir, path).toPath(), path);
+            if (library == null) {
+                continue;
+            }
+            final int slash = path.indexOf('/');
+            final String group = separateDirs && slash > 0 ? path.substring(0, slash) : "";
+            if (!groups.containsKey(group)) {
+                groups.put(group, new ArrayList<NativeLibrary>());
+            }
+            groups.get(group).add(library);
+            final File dir = new File(nativesDir, path).getAbsoluteFile().getParentFile();
+            libraryDirs.add(dir.getPath());
+            count++;
+        }
+        if (libraryDirs.isEmpty()) {
+            libraryDirs.add(nativesDir.getAbsolutePath());
+        }
+        final String libraryPath = join(libraryDirs, File.pathSeparator);
+        if (propertiesFile != null) {
+            final Map<String, String> properties = new TreeMap<>();
+            properties.put(NATIVES_DIR, nativesDir.getAbsolutePath());
+            properties.put(LIBRARY_PATH, libraryPath);
+            for (Map.Entry<String, List<NativeLibrary>> group : groups.entrySet()) {
+                final LoadOrder order = LoadOrder.of(group.getValue());
+                if (!order.getCyclic().isEmpty()) {
+                    log.warn(String.format("Natives depending on each other can not be ordered: %s", order.getCyclic()));
+                }
+                final List<String> preload = new ArrayList<>();
+                for (NativeLibrary library : order.getLibraries()) {
+                    preload.add(library.getPath());
+                }
+                properties.put(group.getKey().isEmpty() ? PRELOAD : PRELOAD + "." + group.getKey(), join(preload, ","));
+            }
+            writeIfChanged(propertiesFile, properties(properties));
+        }
+        if (argFile != null) {
+            final StringBuilder args = new StringBuilder();
+            args.append(quote("-D" + LIBRARY_PATH + "=" + libraryPath)).append('\n');
+            if (propertiesFile != null) {
+                args.append(quote("-D" + PROPERTIES_PROPERTY + "=" + propertiesFile.getAbsolutePath())).append('\n');
+            }
+            writeIfChanged(argFile, args.toString());
+        }
+        return count;
+    }
+
+    /**
+     * Properties.store writes a date comment and hash table order, each line is stored on its own to leave both out.
+     */
+    private static String properties(Map<String, String> properties) throws IOException {
+        final StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, String> property : properties.entrySet()) {
+            final Properties single = new Properties();
+            single.setProperty(property.getKey(), property.getValue());
+            final StringWriter writer = new StringWriter();
+            single.store(writer, null);
+            for (String line : writer.toString().split("\r?\n")) {
+                if (!line.startsWith("#")) {
+                    text.append(line).append('\n');
+                }
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Argument files treat backslashes inside quotes as escapes.
+     */
+    private static String quote(String argument) {
+        return '"' + argument.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+    }
+
+    private static String join(Collection<String> values, String separator) {
+        final StringBuilder joined = new StringBuilder();
+        for (String value : values) {
+            if (joined.length() > 0) {
+                joined.append(separator);
+            }
+            joined.append(value);
+        }
+        return joined.toString();
+    }
+
+    private static void writeIfChanged(File file, String content) throws IOException {
+        final byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        final Path target = file.toPath().toAbsolutePath();
+        if (Files.isRegularFile(target) && Arrays.equals(Files.readAllBytes(target), bytes)) {
+            return;
+        }
+        Files.createDirectories(target.getParent());
+        final Path temp = NativeFiles.createSiblingTemp(target);
+        try {
+            Files.write(temp, bytes);
+            NativeFiles.moveAtomically(temp, target);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.googlecode.mavennatives.core;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Lock file mapping the unpacked natives to their SHA-256, one {@code <sha256>  <path>} line per file with paths
+ * relative to the natives dir, so the files can also be checked with {@code sha256sum -c}.
+ */
+public final class NativesLock {
+
+    static final String ALGORITHM = "SHA-256";
+
+    private static final String SEPARATOR = "  ";
+
+    private NativesLock() {
+    }
+
+    /**
+     * @return the digests by path, in path order
+     */
+    public static Map<String, String> read(File lockFile) throws IOException {
+        final Map<String, String> digests = new TreeMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(lockFile.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                final int separator = line.indexOf(SEPARATOR);
+                if (separator <= 0) {
+                    throw new IOException(String.format("Malformed line in %s: %s", lockFile, line));
+                }
+                digests.put(line.substring(separator + SEPARATOR.length()), line.substring(0, separator));
+            }
+        }
+        return digests;
+    }
+
+    static void write(File lockFile, Map<String, String> digests) throws IOException {
+        final Path target = lockFile.toPath().toAbsolutePath();
+        Files.createDirectories(target.getParent());
+        final Path temp = NativeFiles.createSiblingTemp(target);
+        try {
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, String> digest : new TreeMap<>(digests).entrySet()) {
+                    writer.write(digest.getValue() + SEPARATOR + digest.getKey() + "\n");
+                }
+            }
+            NativeFiles.moveAtomically(temp, target);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * @return a description of every file whose digest differs, that is missing or that the lock does not list, in path
+     * order; empty when the natives match the lock
+     */
+    static List<String> differences(Map<String, String> locked, Map<String, String> actual) {
+        final Set<String> paths = new TreeSet<>(locked.keySet());
+        paths.addAll(actual.keySet());
+        final List<String> differences = new ArrayList<>();
+        for (String path : paths) {
+            final String expected = locked.get(path);
+            final String found = actual.get(path);
+            if (expected == null) {
+                differences.add(path + " is not in the lock file");
+            } else if (found == null) {
+                differences.add(path + " is locked but was not unpacked");
+            } else if (!expected.equalsIgnoreCase(found)) {
+                differences.add(String.format("%s has SHA-256 %s, the lock file expects %s", path, found, expected));
+            }
+        }
+        return differences;
+    }
+}
@@ -0,0 +1,27 @@
+package com.googlecode.mavennatives.core;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Thrown when the unpacked natives do not match their lock file, or when there is no lock file to verify them against.
+ */
+public class NativesLockException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<String> differences;
+
+    public NativesLockException(String message, List<String> differences) {
+        super(message);
+        this.differences = Collections.unmodifiableList(differences);
+    }
+
+    /**
+     * @return a description of every native that does not match the lock file, in path order
+     */
+    public List<String> getDifferences() {
+        return differences;
+    }
+}
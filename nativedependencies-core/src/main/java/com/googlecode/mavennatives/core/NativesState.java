@@ -0,0 +1,190 @@
+package com.googlecode.mavennatives.core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Persisted record of what was unpacked by previous runs, stored as a properties file under the natives dir.
+ * <p>
+ * Every natives artifact is stored under its versionless key so an upgraded artifact replaces the record of the
+ * previous version.
+ */
+final class NativesState {
+
+    static final String FILE_NAME = ".nativedependencies.state";
+
+    private static final String SIZE = ".size";
+    private static final String LAST_MODIFIED = ".lastModified";
+    private static final String SHA1 = ".sha1";
+    private static final String VERSION = ".version";
+    private static final String DIR = ".dir";
+    private static final String FILES = ".files";
+    private static final String SELECTION = ".selection";
+    private static final String FILES_SEPARATOR = "\n";
+
+    private final File stateFile;
+    private final Map<String, Entry> entries = new TreeMap<>();
+
+    private NativesState(File stateFile) {
+        this.stateFile = stateFile;
+    }
+
+    /**
+     * Loads the state stored in the given natives dir; a missing or unreadable file results in an empty state.
+     */
+    static NativesState load(File nativesTargetDir) throws IOException {
+        final NativesState state = new NativesState(new File(nativesTargetDir, FILE_NAME));
+        if (!state.stateFile.isFile()) {
+            return state;
+        }
+        final Properties properties = new Properties();
+        try (InputStream is = new FileInputStream(state.stateFile)) {
+            properties.load(is);
+        }
+        for (String name : properties.stringPropertyNames()) {
+            if (!name.endsWith(SHA1)) {
+                continue;
+            }
+            final String key = name.substring(0, name.length() - SHA1.length());
+            try {
+                final ArtifactFingerprint fingerprint = new ArtifactFingerprint(
+                        Long.parseLong(properties.getProperty(key + SIZE)),
+                        Long.parseLong(properties.getProperty(key + LAST_MODIFIED)),
+                        properties.getProperty(name));
+                final String files = properties.getProperty(key + FILES, "");
+                state.entries.put(key, new Entry(properties.getProperty(key + VERSION), properties.getProperty(key + DIR, ""),
+                        properties.getProperty(key + SELECTION, ""), fingerprint,
+                        files.isEmpty() ? Collections.<String>emptyList() : Arrays.asList(files.split(FILES_SEPARATOR))));
+            } catch (NumberFormatException e) {
+                // a damaged record only costs a fresh unpack of that artifact
+            }
+        }
+        return state;
+    }
+
+    void save() throws IOException {
+        final Properties properties = new Properties();
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            final String key = e.getKey();
+            final Entry entry = e.getValue();
+            properties.setProperty(key + SIZE, String.valueOf(entry.fingerprint.getSize()));
+            properties.setProperty(key + LAST_MODIFIED, String.valueOf(entry.fingerprint.getLastModified()));
+            properties.setProperty(key + SHA1, entry.fingerprint.getSha1());
+            if (entry.version != null) {
+                properties.setProperty(key + VERSION, entry.version);
+            }
+            properties.setProperty(key + DIR, entry.dir);
+            properties.setProperty(key + SELECTION, entry.selection);
+            properties.setProperty(key + FILES, join(entry.files));
+        }
+        final Path temp = NativeFiles.createSiblingTemp(stateFile.toPath());
+        try {
+            try (OutputStream os = new FileOutputStream(temp.toFile())) {
+                properties.store(os, "nativedependencies-maven-plugin unpack state, do not edit");
+            }
+            NativeFiles.moveAtomically(temp, stateFile.toPath());
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    Entry get(String key) {
+        return entries.get(key);
+    }
+
+    void put(String key, Entry entry) {
+        entries.put(key, entry);
+    }
+
+    Entry remove(String key) {
+        return entries.remove(key);
+    }
+
+    Set<String> keys() {
+        return Collections.unmodifiableSet(entries.keySet());
+    }
+
+    /**
+     * @return the files unpacked by all recorded artifacts, relative to the natives dir
+     */
+    Set<String> ownedPaths() {
+        final Set<String> paths = new TreeSet<>();
+        for (Entry entry : entries.values()) {
+            for (String file : entry.files) {
+                paths.add(entry.dir.isEmpty() ? file : entry.dir + "/" + file);
+            }
+        }
+        return paths;
+    }
+
+    private static String join(List<String> files) {
+        final StringBuilder sb = new StringBuilder();
+        for (String file : files) {
+            if (sb.length() > 0) {
+                sb.append(FILES_SEPARATOR);
+            }
+            sb.append(file);
+        }
+        return sb.toString();
+    }
+
+    static final class Entry {
+        private final String version;
+        private final String dir;
+        private final String selection;
+        private final ArtifactFingerprint fingerprint;
+        private final List<String> files;
+
+        /**
+         * @param dir       the dir the artifact was unpacked to, relative to the natives dir ("" for the natives dir itself)
+         * @param selection the {@link UnpackOptions#selectionSignature() selection signature} of the unpack options
+         * @param files     the unpacked files relative to {@code dir}
+         */
+        Entry(String version, String dir, String selection, ArtifactFingerprint fingerprint, List<String> files) {
+            this.version = version;
+            this.dir = dir;
+            this.selection = selection;
+            this.fingerprint = fingerprint;
+            this.files = Collections.unmodifiableList(new ArrayList<>(files));
+        }
+
+        String getVersion() {
+            return version;
+        }
+
+        String getDir() {
+            return dir;
+        }
+
+        String getSelection() {
+            return selection;
+        }
+
+        ArtifactFingerprint getFingerprint() {
+            return fingerprint;
+        }
+
+        List<String> getFiles() {
+            return files;
+        }
+
+        Entry withFingerprint(ArtifactFingerprint newFingerprint) {
+            return new Entry(version, dir, selection, newFingerprint, files);
+        }
+    }
+}
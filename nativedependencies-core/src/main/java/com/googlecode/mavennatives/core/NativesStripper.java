@@ -0,0 +1,202 @@
+package com.googlecode.mavennatives.core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+/**
+ * Strips the unpacked ELF natives with {@link ElfStripper}, concurrently across files.
+ * <p>
+ * Stripped files are cached under the SHA-256 of their unstripped content and linked into the natives dir, so each
+ * distinct library is only ever stripped once per cache dir. Files already stripped are told apart by their headers
+ * alone and are not even hashed.
+ * <p>
+ * Every stripped library is also recorded under the CRC-32 and size of its unstripped content, which a jar records for
+ * its entries: unpacking an entry over its stripped copy finds the record and leaves the file alone (see
+ * {@link #isStrippedCopy}) instead of writing and stripping it again.
+ */
+final class NativesStripper {
+
+    private static final String ENTRIES = "entries";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final File cacheDir;
+    private final int threads;
+    private final UnpackLog log;
+
+    NativesStripper(File cacheDir, int threads, UnpackLog log) {
+        this.cacheDir = cacheDir;
+        this.threads = threads;
+        this.log = log;
+    }
+
+    /**
+     * @param files the files to strip, relative to dir; those that are not ELF files are left untouched
+     * @return the number of bytes saved
+     */
+    long strip(final File dir, Collection<String> files) throws IOException {
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            final List<Future<Long>> futures = new ArrayList<>(files.size());
+            for (final String file : files) {
+                futures.add(executor.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() throws IOException {
+                        return strip(dir.toPath().resolve(file));
+                    }
+                }));
+            }
+            long saved = 0;
+            int stripped = 0;
+            for (Future<Long> future : futures) {
+                final long fileSaved = get(future);
+                if (fileSaved > 0) {
+                    saved += fileSaved;
+                    stripped++;
+                }
+            }
+            if (stripped > 0) {
+                log.info(String.format("Stripped %d natives, saving %d bytes", stripped, saved));
+            }
+            return saved;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private long strip(Path file) throws IOException {
+        if (!Files.isRegularFile(file) || !ElfStripper.isStrippable(file)) {
+            return 0;
+        }
+        final long size = Files.size(file);
+        final CRC32 crc = new CRC32();
+        final String hash = hash(file, crc);
+        final Path cached = cacheDir.toPath().resolve(hash);
+        if (!Files.isRegularFile(cached)) {
+            Files.createDirectories(cacheDir.toPath());
+            final Path temp = NativeFiles.createSiblingTemp(cached);
+            try {
+                if (!ElfStripper.strip(file, temp)) {
+                    return 0;
+                }
+                copyPermissions(file, temp);
+                publish(temp, cached);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+        final long saved = size - Files.size(cached);
+        log.debug("Stripping native - " + file);
+        NativeFiles.replaceWithLink(cached, file);
+        record(entryRecord(cacheDir, crc.getValue(), size), hash);
+        return saved;
+    }
+
+    /**
+     * Tells whether a file is a link to the stripped copy of the content with the given CRC-32 and size, only reading
+     * the record of that content, never the file.
+     */
+    static boolean isStrippedCopy(File cacheDir, long crc, long size, Path file) throws IOException {
+        final Path record = entryRecord(cacheDir, crc, size);
+        if (!Files.isRegularFile(record)) {
+            return false;
+        }
+        final Path cached = cacheDir.toPath().resolve(new String(Files.readAllBytes(record), StandardCharsets.US_ASCII).trim());
+        return Files.isRegularFile(cached) && Files.isSameFile(cached, file);
+    }
+
+    private static Path entryRecord(File cacheDir, long crc, long size) {
+        return cacheDir.toPath().resolve(ENTRIES).resolve(String.format("%08x-%x", crc, size));
+    }
+
+    private static void record(Path record, String hash) throws IOException {
+        if (Files.isRegularFile(record)) {
+            return;
+        }
+        Files.createDirectories(record.getParent());
+        final Path temp = NativeFiles.createSiblingTemp(record);
+        try {
+            Files.write(temp, hash.getBytes(StandardCharsets.US_ASCII));
+            NativeFiles.moveAtomically(temp, record);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * @return the SHA-256 of the file, updating crc with its content as well
+     */
+    private static String hash(Path file, CRC32 crc) throws IOException {
+        final MessageDigest digest = ArtifactFingerprint.messageDigest(NativesLock.ALGORITHM);
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream is = new FileInputStream(file.toFile())) {
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+                crc.update(buffer, 0, read);
+            }
+        }
+        return ArtifactFingerprint.toHex(digest.digest());
+    }
+
+    /**
+     * Links the stripped library into the cache without ever replacing one that another thread or build cached
+     * meanwhile, which files of this run may already link to.
+     */
+    private static void publish(Path temp, Path cached) throws IOException {
+        try {
+            Files.createLink(cached, temp);
+        } catch (FileAlreadyExistsException e) {
+            // the cached copy has the same content
+        } catch (IOException | UnsupportedOperationException e) {
+            if (!Files.exists(cached)) {
+                NativeFiles.moveAtomically(temp, cached);
+            }
+        }
+    }
+
+    private static void copyPermissions(Path source, Path target) throws IOException {
+        try {
+            Files.setPosixFilePermissions(target, Files.getPosixFilePermissions(source));
+        } catch (UnsupportedOperationException e) {
+            // no permissions to keep on this file system
+        }
+    }
+
+    private static long get(Future<Long> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while stripping natives");
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+}
@@ -0,0 +1,679 @@
+package com.googlecode.mavennatives.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Unpacks natives jars into a dir, independently of any build tool:
+ *
+ * <pre>
+ * NativesUnpacker.into(new File("target/natives"))
+ *         .jars(jarFiles)
+ *         .autoDetectPlatform(true)
+ *         .unpack();
+ * </pre>
+ *
+ * Every setting defaults to what the Maven plugin does by default: jars are unpacked in parallel, incrementally,
+ * skipping identical files and writing atomically; files no jar provides anymore are pruned.
+ * <p>
+ * Instances are not thread safe, but runs of different instances may share natives dirs and cache dirs.
+ */
+public final class NativesUnpacker {
+
+    /**
+     * Tells jars known not to have changed since the previous run, e.g. from the incremental build of an IDE, so their
+     * content hash does not have to be checked.
+     */
+    public interface ChangeHint {
+        boolean isUnchanged(File jar);
+    }
+
+    /**
+     * Shared by all the runs of this JVM, so concurrent runs using the same cache dir unpack every jar once.
+     */
+    private static final UnpackCoordinator SHARED_COORDINATOR = new ReactorUnpackCoordinator();
+
+    private final File nativesTargetDir;
+    private final List<NativesJar> jars = new ArrayList<>();
+    private final List<String> platforms = new ArrayList<>();
+    private boolean autoDetectPlatform;
+    private Map<String, String> platformMappings;
+    private boolean separateDirs;
+    private PlatformRoutes platformRoutes = PlatformRoutes.NONE;
+    private List<String> includes;
+    private List<String> excludes;
+    private int threads;
+    private boolean incremental = true;
+    private boolean pruneStale = true;
+    private UnpackOptions.CopyStrategy copyStrategy = UnpackOptions.CopyStrategy.CHANNEL;
+    private int bufferSize = UnpackOptions.DEFAULT_BUFFER_SIZE;
+    private boolean skipIdentical = true;
+    private boolean atomicWrites = true;
+    private boolean swapDirectory;
+    private UnpackBudget budget;
+    private File cacheDir;
+    private UnpackCoordinator coordinator = SHARED_COORDINATOR;
+    private LockMode lockMode = LockMode.NONE;
+    private File lockFile;
+    private File stripCacheDir;
+    private File argFile;
+    private File loadOrderFile;
+    private File bundle;
+    private int bundlePreset = 6;
+    private File archive;
+    private int archiveAlignment = 4096;
+    private File metricsFile;
+    private JarUnpackable jarUnpacker = new JarUnpacker();
+    private ChangeHint changeHint;
+    private UnpackLog log = UnpackLog.SYSTEM;
+
+    private NativesUnpacker(File nativesTargetDir) {
+        this.nativesTargetDir = nativesTargetDir;
+    }
+
+    public static NativesUnpacker into(File nativesTargetDir) {
+        return new NativesUnpacker(nativesTargetDir);
+    }
+
+    public NativesUnpacker jar(NativesJar jar) {
+        jars.add(jar);
+        return this;
+    }
+
+    public NativesUnpacker jars(Collection<NativesJar> jars) {
+        this.jars.addAll(jars);
+        return this;
+    }
+
+    /**
+     * Adds jars described by their file names alone, see {@link NativesJar#of(File)}.
+     */
+    public NativesUnpacker jarFiles(Collection<File> files) {
+        for (File file : files) {
+            jars.add(NativesJar.of(file));
+        }
+        return this;
+    }
+
+    /**
+     * @param platforms the platforms to unpack (classifiers without their "natives-" prefix), null or empty for all
+     */
+    public NativesUnpacker platforms(Collection<String> platforms) {
+        if (platforms != null) {
+            this.platforms.addAll(platforms);
+        }
+        return this;
+    }
+
+    /**
+     * @param autoDetectPlatform whether to unpack the platforms of the machine running this JVM as well
+     */
+    public NativesUnpacker autoDetectPlatform(boolean autoDetectPlatform) {
+        this.autoDetectPlatform = autoDetectPlatform;
+        return this;
+    }
+
+    /**
+     * @param platformMappings "os-arch" hosts (e.g. linux-x86_64) mapped to comma separated platforms, replacing the
+     *                         platforms auto detection selects for those hosts
+     */
+    public NativesUnpacker platformMappings(Map<String, String> platformMappings) {
+        this.platformMappings = platformMappings;
+        return this;
+    }
+
+    /**
+     * @param separateDirs whether every platform is unpacked into a dir of its own
+     */
+    public NativesUnpacker separateDirs(boolean separateDirs) {
+        this.separateDirs = separateDirs;
+        return this;
+    }
+
+    /**
+     * Routes the entries of jars holding the natives of several platforms to their platforms, see
+     * {@link PlatformRoutes}. Jars are then never skipped for their platform alone, as they may hold entries of
+     * selected platforms.
+     *
+     * @param prefixes entry name prefixes mapped to the platform their entries belong to, null or empty for none
+     */
+    public NativesUnpacker platformRoutes(Map<String, String> prefixes) {
+        this.platformRoutes = PlatformRoutes.of(prefixes);
+        return this;
+    }
+
+    /**
+     * @param includes Ant style patterns of the entries to unpack, null or empty for all of them
+     */
+    public NativesUnpacker includes(List<String> includes) {
+        this.includes = includes;
+        return this;
+    }
+
+    /**
+     * @param excludes Ant style patterns of the entries not to unpack
+     */
+    public NativesUnpacker excludes(List<String> excludes) {
+        this.excludes = excludes;
+        return this;
+    }
+
+    /**
+     * @param threads the number of jars unpacked concurrently, 0 or less for the number of available processors
+     */
+    public NativesUnpacker threads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * @param incremental whether jars unchanged since the previous run into the same dir are skipped
+     */
+    public NativesUnpacker incremental(boolean incremental) {
+        this.incremental = incremental;
+        return this;
+    }
+
+    /**
+     * @param pruneStale whether files unpacked by previous runs that no jar provides anymore are deleted
+     */
+    public NativesUnpacker pruneStale(boolean pruneStale) {
+        this.pruneStale = pruneStale;
+        return this;
+    }
+
+    public NativesUnpacker copyStrategy(UnpackOptions.CopyStrategy copyStrategy) {
+        this.copyStrategy = copyStrategy;
+        return this;
+    }
+
+    public NativesUnpacker bufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+        return this;
+    }
+
+    /**
+     * @param skipIdentical whether existing files already holding the content of their entry are left untouched
+     */
+    public NativesUnpacker skipIdentical(boolean skipIdentical) {
+        this.skipIdentical = skipIdentical;
+        return this;
+    }
+
+    /**
+     * @param atomicWrites whether files are replaced through atomic moves and runs sharing the dir are serialized
+     */
+    public NativesUnpacker atomicWrites(boolean atomicWrites) {
+        this.atomicWrites = atomicWrites;
+        return this;
+    }
+
+    /**
+     * @param swapDirectory whether to unpack into a staging dir swapped with the natives dir once complete; the swap is
+     *                      two renames, between which the natives dir is missing for a moment
+     */
+    public NativesUnpacker swapDirectory(boolean swapDirectory) {
+        this.swapDirectory = swapDirectory;
+        return this;
+    }
+
+    /**
+     * @param budget caps the bytes of the entries unpacked at once and the number of large ones among them, across
+     *               every run sharing it (see {@link UnpackBudget#shared}); null for no cap
+     */
+    public NativesUnpacker budget(UnpackBudget budget) {
+        this.budget = budget;
+        return this;
+    }
+
+    /**
+     * @param cacheDir dir every jar is unpacked to once, the natives dir then only gets hard links to the cached files;
+     *                 null to unpack every jar into the natives dir
+     */
+    public NativesUnpacker cache(File cacheDir) {
+        this.cacheDir = cacheDir;
+        return this;
+    }
+
+    /**
+     * @param coordinator deduplicates concurrent unpacks into the cache dir, by default across this JVM
+     */
+    public NativesUnpacker coordinator(UnpackCoordinator coordinator) {
+        this.coordinator = coordinator;
+        return this;
+    }
+
+    /**
+     * @param lockFile the lock file listing the SHA-256 of every native, only used when lockMode is not NONE
+     */
+    public NativesUnpacker lock(LockMode lockMode, File lockFile) {
+        this.lockMode = lockMode != null ? lockMode : LockMode.NONE;
+        this.lockFile = lockFile;
+        return this;
+    }
+
+    /**
+     * @param stripCacheDir dir caching the stripped ELF natives, whose stripped copies are kept by skipIdentical; null
+     *                      not to strip anything
+     */
+    public NativesUnpacker strip(File stripCacheDir) {
+        this.stripCacheDir = stripCacheDir;
+        return this;
+    }
+
+    /**
+     * Writes the library path and the order in which the unpacked libraries load, dependencies first, as read from
+     * their ELF, PE or Mach-O dynamic dependency tables.
+     *
+     * @param argFile       JVM argument file setting java.library.path and pointing to loadOrderFile, null for none
+     * @param loadOrderFile properties file listing the natives dir, the library path and the libraries in load order,
+     *                      null for none
+     */
+    public NativesUnpacker launchFiles(File argFile, File loadOrderFile) {
+        this.argFile = argFile;
+        this.loadOrderFile = loadOrderFile;
+        return this;
+    }
+
+    /**
+     * @param bundle tar.xz file to pack the natives dir into once unpacked, null for none
+     * @param preset xz preset, from 0 (fastest) to 9 (smallest)
+     */
+    public NativesUnpacker bundle(File bundle, int preset) {
+        this.bundle = bundle;
+        this.bundlePreset = preset;
+        return this;
+    }
+
+    /**
+     * @param archive   indexed archive to pack the natives dir into once unpacked, its files stored uncompressed so they
+     *                  can be mapped straight from it; null for none
+     * @param alignment alignment of every file in the archive, a power of two, e.g. the 4096 bytes of a memory page
+     */
+    public NativesUnpacker archive(File archive, int alignment) {
+        this.archive = archive;
+        this.archiveAlignment = alignment;
+        return this;
+    }
+
+    /**
+     * @param metricsFile JSON report of the run, null for none
+     */
+    public NativesUnpacker metricsFile(File metricsFile) {
+        this.metricsFile = metricsFile;
+        return this;
+    }
+
+    public NativesUnpacker jarUnpacker(JarUnpackable jarUnpacker) {
+        this.jarUnpacker = jarUnpacker;
+        return this;
+    }
+
+    public NativesUnpacker changeHint(ChangeHint changeHint) {
+        this.changeHint = changeHint;
+        return this;
+    }
+
+    public NativesUnpacker log(UnpackLog log) {
+        this.log = log;
+        return this;
+    }
+
+    List<NativesJar> getJars() {
+        return jars;
+    }
+
+    ChangeHint getChangeHint() {
+        return changeHint;
+    }
+
+    /**
+     * @return the natives dir
+     * @throws NativesLockException when the natives do not match the lock file
+     */
+    public File unpack() throws IOException {
+        log.info("Saving natives in " + nativesTargetDir);
+        if (separateDirs) {
+            log.info("Storing artifacts in separate dirs according to classifier");
+        }
+        final List<String> selectedPlatforms = selectedPlatforms();
+        if (!selectedPlatforms.isEmpty()) {
+            log.info(String.format("Only copying the following platforms: %s", selectedPlatforms));
+        } else {
+            log.info("Copying all platforms.");
+        }
+        if (budget != null) {
+            log.info("Unpacking within a budget of " + budget);
+        }
+        final UnpackMetrics metrics = new UnpackMetrics();
+        if (atomicWrites || swapDirectory) {
+            try (DirectoryLock lock = DirectoryLock.lock(nativesTargetDir)) {
+                updateNatives(selectedPlatforms, metrics);
+            }
+        } else {
+            updateNatives(selectedPlatforms, metrics);
+        }
+        if (metricsFile != null) {
+            metrics.write(metricsFile, nativesTargetDir, threadCount(), copyStrategy);
+            log.info("Unpack metrics written to " + metricsFile);
+        }
+        return nativesTargetDir;
+    }
+
+    /**
+     * @return the platforms to copy, empty to copy all of them
+     */
+    private List<String> selectedPlatforms() {
+        final List<String> selected = new ArrayList<>(platforms);
+        if (autoDetectPlatform) {
+            final String host = PlatformDetector.currentHost();
+            final List<String> detected = new PlatformDetector(platformMappings).platformsFor(host);
+            if (detected.isEmpty()) {
+                log.warn(String.format("No natives platforms are mapped to %s, add it to platformMappings", host));
+            } else {
+                log.info(String.format("Detected %s, natives platforms: %s", host, detected));
+                for (String platform : detected) {
+                    if (!selected.contains(platform)) {
+                        selected.add(platform);
+                    }
+                }
+            }
+        }
+        return selected;
+    }
+
+    private void updateNatives(List<String> selectedPlatforms, UnpackMetrics metrics) throws IOException {
+        final Set<String> producedPaths;
+        if (swapDirectory) {
+            producedPaths = copyNativesAndSwap(selectedPlatforms, metrics);
+        } else {
+            producedPaths = copyNatives(nativesTargetDir, selectedPlatforms, metrics);
+        }
+        if (argFile != null || loadOrderFile != null) {
+            final long launchStart = System.nanoTime();
+            final int libraries = NativesLaunchFiles.write(nativesTargetDir, producedPaths, separateDirs, argFile, loadOrderFile, log);
+            metrics.addLaunchFiles(System.nanoTime() - launchStart, libraries);
+            log.info(String.format("Library path and load order of %d natives written", libraries));
+        }
+        if (bundle != null) {
+            final long bundleStart = System.nanoTime();
+            final long size = NativesBundle.write(nativesTargetDir, bundle, bundlePreset);
+            metrics.addBundle(System.nanoTime() - bundleStart, size);
+            log.info(String.format("Natives bundled in %s (%d bytes)", bundle, size));
+        }
+        if (archive != null) {
+            final long archiveStart = System.nanoTime();
+            final long size = NativesArchive.write(nativesTargetDir, archive, archiveAlignment);
+            metrics.addArchive(System.nanoTime() - archiveStart, size);
+            log.info(String.format("Natives archived in %s (%d bytes)", archive, size));
+        }
+    }
+
+    /**
+     * Unpacks into a staging dir seeded with links to the current natives, then swaps it with nativesTargetDir. Runs
+     * sharing the natives dir are serialized by the dir lock and never observe a half unpacked dir.
+     * <p>
+     * Java can not exchange two dirs atomically, so the swap renames nativesTargetDir to a .previous sibling, then the
+     * staging dir to nativesTargetDir: readers see either set of natives, or no natives dir at all in between. A run
+     * that stops between the two renames leaves the natives in the .previous dir; the next run moves them back first.
+     */
+    private Set<String> copyNativesAndSwap(List<String> selectedPlatforms, UnpackMetrics metrics) throws IOException {
+        final Path target = nativesTargetDir.toPath();
+        final Path staging = target.resolveSibling(target.getFileName() + ".staging");
+        final Path previous = target.resolveSibling(target.getFileName() + ".previous");
+        if (!Files.exists(target) && Files.isDirectory(previous)) {
+            log.warn(String.format("Restoring %s, left at %s by an interrupted swap", target, previous));
+            Files.move(previous, target);
+        }
+        NativeFiles.deleteRecursively(staging);
+        NativeFiles.deleteRecursively(previous);
+        if (Files.isDirectory(target)) {
+            NativeFiles.mirror(target, staging);
+        }
+        final Set<String> producedPaths = copyNatives(staging.toFile(), selectedPlatforms, metrics);
+        if (Files.exists(target)) {
+            Files.move(target, previous);
+        }
+        Files.move(staging, target);
+        NativeFiles.deleteRecursively(previous);
+        return producedPaths;
+    }
+
+    /**
+     * @return the paths of the natives the selected jars provide, relative to targetDir
+     */
+    private Set<String> copyNatives(File targetDir, List<String> selectedPlatforms, UnpackMetrics metrics) throws IOException {
+        final long resolveStart = System.nanoTime();
+        final boolean wereNativesTargetDirectoriesMade = targetDir.mkdirs();
+        if (!wereNativesTargetDirectoriesMade) {
+            log.info("Unable to create directories(may already have existed): " + targetDir);
+        }
+        final boolean platformsActive = !selectedPlatforms.isEmpty();
+        final NativesState state = incremental || pruneStale ? NativesState.load(targetDir) : null;
+        final Set<String> previouslyOwned = state != null ? state.ownedPaths() : Collections.<String>emptySet();
+        final Set<String> selectedKeys = new HashSet<>();
+        final Set<String> producedPaths = new TreeSet<>();
+        final List<UnpackJob> jobs = new ArrayList<>();
+        final List<NativesJar> jobJars = new ArrayList<>();
+        final Map<UnpackJob, Set<String>> upToDate = new HashMap<>();
+        for (NativesJar jar : jars) {
+            final String platform = jar.getPlatform();
+            final boolean routed = !platformRoutes.isEmpty();
+            if (platformsActive && (!selectedPlatforms.contains(platform)) && !routed) {
+                log.info("Skipping other platform: " + jar.getKey());
+                continue;
+            }
+            log.info("Natives: " + jar.getKey());
+            // routes tell the dir of every entry, the jar is unpacked into the natives dir itself
+            final String relativeDir = separateDirs && !routed ? platform : "";
+            final UnpackOptions options = unpackOptions(jar, selectedPlatforms);
+            selectedKeys.add(jar.getKey());
+            final File artifactDir = relativeDir.isEmpty() ? targetDir : new File(targetDir, relativeDir);
+            final UnpackJob job = new UnpackJob(jar.getKey(), jar.getFile(), relativeDir, artifactDir, options);
+            if (incremental && !locking() && isUpToDate(jar, targetDir, relativeDir, options, state)) {
+                // unpacked again only when it shares natives with a jar that is not up to date
+                final Set<String> paths = new TreeSet<>();
+                for (String file : state.get(jar.getKey()).getFiles()) {
+                    paths.add(job.targetPath(file));
+                }
+                upToDate.put(job, paths);
+            } else if (!relativeDir.isEmpty()) {
+                final boolean wereArtifactDirectoriesMade = artifactDir.mkdirs();
+                if (!wereArtifactDirectoriesMade) {
+                    log.info("Unable to create directories(may already have existed): " + targetDir);
+                }
+            }
+            jobs.add(job);
+            jobJars.add(jar);
+        }
+        metrics.addResolveNanos(System.nanoTime() - resolveStart);
+        final long unpackStart = System.nanoTime();
+        final JarUnpackable unpacker = cacheDir != null ? new CachingJarUnpacker(jarUnpacker, cacheDir, coordinator) : jarUnpacker;
+        final List<UnpackResult> results = new UnpackScheduler(unpacker, threadCount(), log).unpack(jobs, upToDate);
+        metrics.addUnpackNanos(System.nanoTime() - unpackStart);
+        int unpacked = 0;
+        int written = 0;
+        int skipped = 0;
+        for (int i = 0; i < jobs.size(); i++) {
+            final UnpackJob job = jobs.get(i);
+            final UnpackResult result = results.get(i);
+            if (result == null) {
+                log.info("Natives are up to date: " + job.getKey());
+                metrics.upToDate(job.getKey(), jobJars.get(i).getVersion());
+                producedPaths.addAll(upToDate.get(job));
+                continue;
+            }
+            metrics.unpacked(job.getKey(), jobJars.get(i).getVersion(), result);
+            for (String file : result.getFiles()) {
+                producedPaths.add(job.targetPath(file));
+            }
+            unpacked++;
+            written += result.getEntriesWritten();
+            skipped += result.getEntriesSkipped();
+        }
+        if (unpacked > 0 && skipIdentical) {
+            log.info(String.format("Copied %d natives, %d were already up to date", written, skipped));
+        }
+        if (state != null) {
+            for (int i = 0; i < jobs.size(); i++) {
+                final UnpackJob job = jobs.get(i);
+                if (results.get(i) == null) {
+                    continue;
+                }
+                state.put(job.getKey(), new NativesState.Entry(jobJars.get(i).getVersion(), job.getRelativeDir(),
+                        job.getOptions().selectionSignature(), ArtifactFingerprint.of(job.getJar()), results.get(i).getFiles()));
+            }
+            if (pruneStale) {
+                final long pruneStart = System.nanoTime();
+                pruneStaleFiles(targetDir, state, selectedKeys, previouslyOwned);
+                metrics.addPruneNanos(System.nanoTime() - pruneStart);
+            }
+            state.save();
+        }
+        if (locking()) {
+            checkLock(digests(jobs, results));
+        }
+        if (stripCacheDir != null) {
+            final long stripStart = System.nanoTime();
+            final long saved = new NativesStripper(stripCacheDir, threadCount(), log).strip(targetDir, producedPaths);
+            metrics.addStrip(System.nanoTime() - stripStart, saved);
+        }
+        return producedPaths;
+    }
+
+    /**
+     * @return the digests of the unpacked natives by path relative to the natives dir
+     */
+    private static Map<String, String> digests(List<UnpackJob> jobs, List<UnpackResult> results) {
+        // jobs writing the same path are unpacked in key order, the file on disk is the one of the last key
+        final Map<String, Integer> jobsByKey = new TreeMap<>();
+        for (int i = 0; i < jobs.size(); i++) {
+            jobsByKey.put(jobs.get(i).getKey(), i);
+        }
+        final Map<String, String> digests = new TreeMap<>();
+        for (int i : jobsByKey.values()) {
+            if (results.get(i) == null) {
+                continue;
+            }
+            for (Map.Entry<String, String> digest : results.get(i).getDigests().entrySet()) {
+                digests.put(jobs.get(i).targetPath(digest.getKey()), digest.getValue());
+            }
+        }
+        return digests;
+    }
+
+    private void checkLock(Map<String, String> digests) throws IOException {
+        if (lockMode == LockMode.WRITE) {
+            NativesLock.write(lockFile, digests);
+            log.info(String.format("Wrote the SHA-256 of %d natives to %s", digests.size(), lockFile));
+            return;
+        }
+        if (!lockFile.isFile()) {
+            throw new NativesLockException(String.format("%s does not exist, create it with lockMode WRITE", lockFile),
+                    Collections.<String>emptyList());
+        }
+        final List<String> differences = NativesLock.differences(NativesLock.read(lockFile), digests);
+        if (!differences.isEmpty()) {
+            for (String difference : differences) {
+                log.error(difference);
+            }
+            throw new NativesLockException(String.format("%d natives do not match %s", differences.size(), lockFile), differences);
+        }
+        log.info(String.format("The SHA-256 of all %d natives match %s", digests.size(), lockFile));
+    }
+
+    private boolean locking() {
+        return lockMode != LockMode.NONE;
+    }
+
+    /**
+     * Forgets the jars that were not selected by this run and deletes the files that were owned by a jar in the
+     * previous run but are owned by none anymore.
+     */
+    private void pruneStaleFiles(File targetDir, NativesState state, Set<String> selectedKeys, Set<String> previouslyOwned) throws IOException {
+        for (String key : new ArrayList<>(state.keys())) {
+            if (!selectedKeys.contains(key)) {
+                state.remove(key);
+            }
+        }
+        final Set<String> stale = new TreeSet<>(previouslyOwned);
+        stale.removeAll(state.ownedPaths());
+        int removed = 0;
+        for (String path : stale) {
+            if (NativeFiles.deleteWithEmptyParents(targetDir.toPath(), path)) {
+                log.debug("Removing stale native - " + path);
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            log.info(String.format("Removed %d stale natives", removed));
+        }
+    }
+
+    private int threadCount() {
+        return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    private UnpackOptions unpackOptions(NativesJar jar, List<String> selectedPlatforms) {
+        return new UnpackOptions()
+                .setCopyStrategy(copyStrategy)
+                .setBufferSize(bufferSize)
+                .setSkipIdentical(skipIdentical)
+                // files of a staging dir or of the cache are hard links shared with other dirs, they must be replaced, never rewritten
+                .setAtomicWrites(atomicWrites || swapDirectory || cacheDir != null)
+                .setEntryFilter(EntryFilter.of(includes, excludes).and(jar.getFilter()))
+                .setPlatformRoutes(platformRoutes.forJar(jar.getPlatform(), selectedPlatforms, separateDirs))
+                .setComputeDigests(locking())
+                .setBudget(budget)
+                .setStripCacheDir(stripCacheDir)
+                .setLog(log);
+    }
+
+    /**
+     * A jar is up to date when it was unpacked to the same dir with the same filters by a previous run, all the files it
+     * produced are still there and its content did not change. The content hash is only computed when the size and
+     * modification time alone can not tell.
+     */
+    private boolean isUpToDate(NativesJar jar, File targetDir, String relativeDir, UnpackOptions options, NativesState state) throws IOException {
+        final String key = jar.getKey();
+        final NativesState.Entry entry = state.get(key);
+        if (entry == null || !entry.getDir().equals(relativeDir) || !entry.getSelection().equals(options.selectionSignature())) {
+            return false;
+        }
+        final File dir = relativeDir.isEmpty() ? targetDir : new File(targetDir, relativeDir);
+        for (String file : entry.getFiles()) {
+            if (!new File(dir, file).isFile()) {
+                return false;
+            }
+        }
+        final File file = jar.getFile();
+        if (changeHint != null && changeHint.isUnchanged(file)) {
+            return true;
+        }
+        final ArtifactFingerprint previous = entry.getFingerprint();
+        if (previous.sameMetadata(file)) {
+            return true;
+        }
+        if (file.length() != previous.getSize()) {
+            return false;
+        }
+        final ArtifactFingerprint current = ArtifactFingerprint.of(file);
+        if (!current.getSha1().equals(previous.getSha1())) {
+            return false;
+        }
+        state.put(key, entry.withFingerprint(current));
+        return true;
+    }
+}
@@ -0,0 +1,164 @@
+package com.googlecode.mavennatives.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a natives dir in sync with its jars while they are rebuilt, e.g. by the build of a JNI module: unpacks once,
+ * then waits for jars to be written and unpacks again.
+ * <p>
+ * The dirs holding the jars (local repository or reactor target dirs) are watched through a {@link WatchService}.
+ * Changes are debounced, so a jar written in several steps or several jars written by one build are unpacked once,
+ * when no change came for the debounce delay. Only the changed jars are checked: the others are reported unchanged
+ * through the unpacker's {@link NativesUnpacker.ChangeHint}, and entries that did not change are skipped as usual.
+ * Dirs deleted while watching, e.g. by a clean build, are watched again once they are back.
+ */
+public final class NativesWatcher implements Closeable {
+
+    /**
+     * How often dirs that do not exist are checked for again.
+     */
+    private static final long RETRY_MILLIS = 500;
+
+    private final NativesUnpacker unpacker;
+    private final long debounceMillis;
+    private final UnpackLog log;
+    private final WatchService watchService;
+    private final Map<Path, Set<String>> jarsByDir = new HashMap<>();
+    private final Map<WatchKey, Path> dirs = new HashMap<>();
+    private volatile boolean closed;
+
+    /**
+     * @param debounceMillis how long jars have to stay unchanged before they are unpacked
+     */
+    public NativesWatcher(NativesUnpacker unpacker, long debounceMillis, UnpackLog log) throws IOException {
+        this.unpacker = unpacker;
+        this.debounceMillis = debounceMillis;
+        this.log = log;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        for (NativesJar jar : unpacker.getJars()) {
+            final Path file = jar.getFile().toPath().toAbsolutePath();
+            final Path dir = file.getParent();
+            if (!jarsByDir.containsKey(dir)) {
+                jarsByDir.put(dir, new HashSet<String>());
+            }
+            jarsByDir.get(dir).add(file.getFileName().toString());
+        }
+    }
+
+    /**
+     * Unpacks, then unpacks the jars that change until {@link #close()} is called or the thread is interrupted. Failures
+     * of the first unpack are thrown, later ones are logged and the jars watched further.
+     */
+    public void run() throws IOException, InterruptedException {
+        final NativesUnpacker.ChangeHint changeHint = unpacker.getChangeHint();
+        try {
+            register(null);
+            unpacker.unpack();
+            log.info(String.format("Watching %d natives jars for changes", unpacker.getJars().size()));
+            while (!closed) {
+                final Set<File> changed = awaitChanges();
+                if (changed.isEmpty()) {
+                    continue;
+                }
+                log.info(String.format("Natives changed: %s", new TreeSet<>(changed)));
+                unpacker.changeHint(new NativesUnpacker.ChangeHint() {
+                    @Override
+                    public boolean isUnchanged(File jar) {
+                        return !changed.contains(jar.getAbsoluteFile());
+                    }
+                });
+                try {
+                    unpacker.unpack();
+                } catch (IOException e) {
+                    log.error(String.format("Unable to unpack the changed natives, waiting for further changes: %s", e));
+                }
+            }
+        } catch (ClosedWatchServiceException e) {
+            // closed while waiting
+        } finally {
+            unpacker.changeHint(changeHint);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        watchService.close();
+    }
+
+    /**
+     * @return the jars changed since the last call, empty when no jar changed
+     */
+    private Set<File> awaitChanges() throws IOException, InterruptedException {
+        final Set<File> changed = new HashSet<>();
+        final boolean missingDirs = register(changed);
+        WatchKey key = missingDirs || !changed.isEmpty() ? watchService.poll(RETRY_MILLIS, TimeUnit.MILLISECONDS)
+                : watchService.take();
+        while (key != null) {
+            final Path dir = dirs.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    // events were lost, every jar of the dir may have changed
+                    for (String name : jarsByDir.get(dir)) {
+                        changed.add(dir.resolve(name).toFile());
+                    }
+                } else if (jarsByDir.get(dir).contains(event.context().toString())) {
+                    changed.add(dir.resolve(event.context().toString()).toFile());
+                }
+            }
+            if (!key.reset()) {
+                dirs.remove(key);
+            }
+            if (changed.isEmpty()) {
+                // other files of the dirs
+                return changed;
+            }
+            key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+        }
+        return changed;
+    }
+
+    /**
+     * Watches the dirs not watched yet. The jars of dirs that are back after being deleted are added to changed, as
+     * they may have been written before the dir was watched again.
+     *
+     * @return whether some dirs do not exist
+     */
+    private boolean register(Set<File> changed) throws IOException {
+        boolean missing = false;
+        for (Map.Entry<Path, Set<String>> jars : jarsByDir.entrySet()) {
+            final Path dir = jars.getKey();
+            if (dirs.containsValue(dir)) {
+                continue;
+            }
+            if (!dir.toFile().isDirectory()) {
+                missing = true;
+                continue;
+            }
+            dirs.put(dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY), dir);
+            if (changed != null) {
+                for (String name : jars.getValue()) {
+                    if (dir.resolve(name).toFile().isFile()) {
+                        changed.add(dir.resolve(name).toFile());
+                    }
+                }
+            }
+        }
+        return missing;
+    }
+}
@@ -0,0 +1,128 @@
+package com.googlecode.mavennatives.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Maps the operating system and architecture of a machine to the natives classifier suffixes (the part after
+ * "natives-") it can load, e.g. linux/amd64 to linux, linux-x86_64, linux-amd64 and linux64.
+ * <p>
+ * Hosts are identified by a "os-arch" key built from normalized os.name and os.arch values: os is one of linux,
+ * windows, osx, freebsd or sunos and arch one of x86_64, x86, aarch64, arm, ppc64le or s390x.
+ */
+public final class PlatformDetector {
+
+    private static final Map<String, List<String>> DEFAULT_MAPPINGS = new HashMap<>();
+
+    static {
+        DEFAULT_MAPPINGS.put("linux-x86_64", Arrays.asList("linux", "linux-x86_64", "linux-amd64", "linux64"));
+        DEFAULT_MAPPINGS.put("linux-x86", Arrays.asList("linux", "linux-x86", "linux-i586", "linux32"));
+        DEFAULT_MAPPINGS.put("linux-aarch64", Arrays.asList("linux-aarch64", "linux-arm64"));
+        DEFAULT_MAPPINGS.put("linux-arm", Arrays.asList("linux-arm", "linux-arm32", "linux-armv6hf"));
+        DEFAULT_MAPPINGS.put("linux-ppc64le", Arrays.asList("linux-ppc64le"));
+        DEFAULT_MAPPINGS.put("linux-s390x", Arrays.asList("linux-s390x"));
+        DEFAULT_MAPPINGS.put("windows-x86_64", Arrays.asList("windows", "windows-x86_64", "windows-amd64", "windows64"));
+        DEFAULT_MAPPINGS.put("windows-x86", Arrays.asList("windows", "windows-x86", "windows-i586", "windows32"));
+        DEFAULT_MAPPINGS.put("windows-aarch64", Arrays.asList("windows-aarch64", "windows-arm64"));
+        DEFAULT_MAPPINGS.put("osx-x86_64", Arrays.asList("osx", "macos", "macosx", "osx-x86_64", "macos-x86_64", "macosx-universal"));
+        DEFAULT_MAPPINGS.put("osx-aarch64", Arrays.asList("osx-aarch64", "osx-arm64", "macos-arm64", "macosx-universal"));
+        DEFAULT_MAPPINGS.put("freebsd-x86_64", Arrays.asList("freebsd", "freebsd-x86_64", "freebsd-amd64"));
+        DEFAULT_MAPPINGS.put("sunos-x86_64", Arrays.asList("solaris", "solaris-x86_64", "solaris-amd64"));
+    }
+
+    private final Map<String, List<String>> mappings;
+
+    /**
+     * @param customMappings host keys mapped to comma separated classifier suffixes, replacing the default mapping of
+     *                       those hosts; may be null
+     */
+    public PlatformDetector(Map<String, String> customMappings) {
+        mappings = new HashMap<>(DEFAULT_MAPPINGS);
+        if (customMappings != null) {
+            for (Map.Entry<String, String> mapping : customMappings.entrySet()) {
+                final List<String> platforms = new ArrayList<>();
+                for (String platform : mapping.getValue().split(",")) {
+                    if (!platform.trim().isEmpty()) {
+                        platforms.add(platform.trim());
+                    }
+                }
+                mappings.put(mapping.getKey(), platforms);
+            }
+        }
+    }
+
+    /**
+     * @return the key of the machine running this JVM
+     */
+    public static String currentHost() {
+        return host(System.getProperty("os.name"), System.getProperty("os.arch"));
+    }
+
+    static String host(String osName, String osArch) {
+        return normalizeOs(osName) + "-" + normalizeArch(osArch);
+    }
+
+    /**
+     * @return the classifier suffixes loadable on the given host, empty for unknown hosts
+     */
+    public List<String> platformsFor(String host) {
+        final List<String> platforms = mappings.get(host);
+        return platforms != null ? Collections.unmodifiableList(platforms) : Collections.<String>emptyList();
+    }
+
+    static String normalizeOs(String osName) {
+        final String os = osName.toLowerCase(Locale.ENGLISH);
+        if (os.startsWith("linux")) {
+            return "linux";
+        }
+        if (os.startsWith("windows")) {
+            return "windows";
+        }
+        if (os.startsWith("mac") || os.startsWith("darwin")) {
+            return "osx";
+        }
+        if (os.startsWith("freebsd")) {
+            return "freebsd";
+        }
+        if (os.startsWith("sunos") || os.startsWith("solaris")) {
+            return "sunos";
+        }
+        return os.replaceAll("[^a-z0-9]+", "");
+    }
+
+    static String normalizeArch(String osArch) {
+        final String arch = osArch.toLowerCase(Locale.ENGLISH);
+        switch (arch) {
+            case "amd64":
+            case "x86_64":
+            case "x86-64":
+            case "em64t":
+                return "x86_64";
+            case "x86":
+            case "i386":
+            case "i486":
+            case "i586":
+            case "i686":
+                return "x86";
+            case "aarch64":
+            case "arm64":
+                return "aarch64";
+            case "arm":
+            case "arm32":
+            case "armv7l":
+            case "armhf":
+                return "arm";
+            case "ppc64le":
+                return "ppc64le";
+            case "s390x":
+                return "s390x";
+            default:
+                return arch.replaceAll("[^a-z0-9_]+", "");
+        }
+    }
+}
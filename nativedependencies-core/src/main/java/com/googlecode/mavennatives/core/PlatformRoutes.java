@@ -0,0 +1,129 @@
+package com.googlecode.mavennatives.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Routes the entries of jars holding the natives of several platforms, e.g. linux/, windows/ and macos/ dirs inside a
+ * single natives-all jar, to the platforms they belong to, so such a jar is unpacked once for every platform.
+ * <p>
+ * An entry whose name starts with a route prefix belongs to the platform of the longest such prefix and is unpacked
+ * without that prefix, into the dir of its platform with separateDirs. Other entries belong to the platform of their
+ * jar. Entries of platforms that are not selected are skipped, without being read.
+ */
+public final class PlatformRoutes {
+
+    public static final PlatformRoutes NONE = new PlatformRoutes(Collections.<Route>emptyList(), null, null, false);
+
+    private static final Comparator<Route> LONGEST_PREFIX_FIRST = new Comparator<Route>() {
+        @Override
+        public int compare(Route o1, Route o2) {
+            final int byLength = o2.prefix.length() - o1.prefix.length();
+            return byLength != 0 ? byLength : o1.prefix.compareTo(o2.prefix);
+        }
+    };
+
+    private final List<Route> routes;
+    private final String jarPlatform;
+    private final Set<String> selectedPlatforms;
+    private final boolean separateDirs;
+
+    private PlatformRoutes(List<Route> routes, String jarPlatform, Set<String> selectedPlatforms, boolean separateDirs) {
+        this.routes = routes;
+        this.jarPlatform = jarPlatform;
+        this.selectedPlatforms = selectedPlatforms;
+        this.separateDirs = separateDirs;
+    }
+
+    /**
+     * @param prefixes entry name prefixes (e.g. linux/ or natives/win32-x86-64/) mapped to the platform their entries
+     *                 belong to; null or empty for none
+     */
+    public static PlatformRoutes of(Map<String, String> prefixes) {
+        if (prefixes == null || prefixes.isEmpty()) {
+            return NONE;
+        }
+        final List<Route> routes = new ArrayList<>();
+        for (Map.Entry<String, String> prefix : prefixes.entrySet()) {
+            if (prefix.getKey() == null || prefix.getKey().isEmpty() || prefix.getValue() == null || prefix.getValue().isEmpty()) {
+                throw new IllegalArgumentException("Platform routes need a prefix and a platform: " + prefix);
+            }
+            routes.add(new Route(prefix.getKey(), prefix.getValue()));
+        }
+        Collections.sort(routes, LONGEST_PREFIX_FIRST);
+        return new PlatformRoutes(Collections.unmodifiableList(routes), null, null, false);
+    }
+
+    public boolean isEmpty() {
+        return routes.isEmpty();
+    }
+
+    /**
+     * @param jarPlatform       the platform of the jar, which the entries matching no route belong to
+     * @param selectedPlatforms the platforms to unpack, empty for all of them
+     * @param separateDirs      whether entries go to the dir of their platform
+     * @return these routes, applied to the entries of one jar
+     */
+    PlatformRoutes forJar(String jarPlatform, Collection<String> selectedPlatforms, boolean separateDirs) {
+        if (routes.isEmpty()) {
+            return this;
+        }
+        return new PlatformRoutes(routes, jarPlatform, new LinkedHashSet<>(selectedPlatforms), separateDirs);
+    }
+
+    /**
+     * @param entryName a jar entry name, using '/' as separator
+     * @return the path of the entry relative to the natives dir, null when its platform is not selected
+     */
+    String route(String entryName) {
+        if (jarPlatform == null) {
+            return entryName;
+        }
+        for (Route route : routes) {
+            if (entryName.startsWith(route.prefix)) {
+                final String name = entryName.substring(route.prefix.length());
+                return name.isEmpty() ? null : platformPath(route.platform, name);
+            }
+        }
+        return platformPath(jarPlatform, entryName);
+    }
+
+    private String platformPath(String platform, String name) {
+        if (!selectedPlatforms.isEmpty() && !selectedPlatforms.contains(platform)) {
+            return null;
+        }
+        return separateDirs ? platform + "/" + name : name;
+    }
+
+    /**
+     * Describes the routes, two instances with the same description route entries the same way.
+     */
+    @Override
+    public String toString() {
+        if (jarPlatform == null) {
+            return routes.toString();
+        }
+        return routes + " platform=" + jarPlatform + " selected=" + selectedPlatforms + " separateDirs=" + separateDirs;
+    }
+
+    private static final class Route {
+        private final String prefix;
+        private final String platform;
+
+        Route(String prefix, String platform) {
+            this.prefix = prefix;
+            this.platform = platform;
+        }
+
+        @Override
+        public String toString() {
+            return prefix + "=" + platform;
+        }
+    }
+}
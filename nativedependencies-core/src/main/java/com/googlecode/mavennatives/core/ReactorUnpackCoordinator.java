@@ -0,0 +1,57 @@
+package com.googlecode.mavennatives.core;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.codehaus.plexus.component.annotations.Component;
+
+/**
+ * Keeps track of the extractions in flight in this JVM. Being a singleton of the plugin realm, which Maven shares
+ * between the modules of a build, it makes modules built concurrently (-T) wait for each other instead of extracting
+ * the same jar side by side.
+ * <p>
+ * Finished extractions are forgotten: their dir is on disk for the callers that come later.
+ */
+@Component(role = UnpackCoordinator.class)
+public class ReactorUnpackCoordinator implements UnpackCoordinator {
+
+    private final ConcurrentMap<Path, FutureTask<Path>> inFlight = new ConcurrentHashMap<>();
+
+    @Override
+    public Path extractOnce(Path dir, Callable<Path> extraction) throws IOException {
+        final FutureTask<Path> task = new FutureTask<>(extraction);
+        FutureTask<Path> running = inFlight.putIfAbsent(dir, task);
+        if (running == null) {
+            running = task;
+            try {
+                task.run();
+            } finally {
+                inFlight.remove(dir, task);
+            }
+        }
+        try {
+            return running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the extraction into " + dir);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException("Extraction into " + dir + " failed", cause);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.googlecode.mavennatives.core;
+
+/**
+ * {@link UnpackLog} writing warnings and errors to the standard error and everything else to the standard output.
+ */
+final class SystemUnpackLog implements UnpackLog {
+
+    @Override
+    public boolean isDebugEnabled() {
+        return false;
+    }
+
+    @Override
+    public void debug(String message) {
+        System.out.println("[debug] " + message);
+    }
+
+    @Override
+    public void info(String message) {
+        System.out.println("[info] " + message);
+    }
+
+    @Override
+    public void warn(String message) {
+        System.err.println("[warning] " + message);
+    }
+
+    @Override
+    public void error(String message) {
+        System.err.println("[error] " + message);
+    }
+}
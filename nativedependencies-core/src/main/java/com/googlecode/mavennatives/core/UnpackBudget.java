@@ -0,0 +1,139 @@
+package com.googlecode.mavennatives.core;
+
+import java.io.Closeable;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Caps the bytes of the entries being unpacked at once, and the number of large entries among them, across every
+ * unpacking thread sharing the budget, so that unpacking huge natives in parallel (e.g. by the modules of a -T build)
+ * neither piles up inflaters and dirty pages nor evicts the page cache in bursts.
+ * <p>
+ * An entry holds a share of the budget the size of its content while it is checked and written; entries larger than
+ * the whole budget hold all of it. Entries of at least the large entry size also hold one of the large write slots.
+ * Entries go ahead whenever they fit and no other entry is waiting. Once one waits, the entries arriving after it queue
+ * behind it and are served in order, so a stream of small entries can not starve a large one. Jars unpack their small
+ * entries before their large ones, so those are not held up behind the large ones of their own jar.
+ */
+public final class UnpackBudget {
+
+    /**
+     * Shared by all the runs of this JVM with the same settings, i.e. by the modules of a build as the plugin realm is.
+     */
+    private static final ConcurrentMap<String, UnpackBudget> SHARED = new ConcurrentHashMap<>();
+
+    private final long maxBytes;
+    private final int maxLargeWrites;
+    private final long largeEntryBytes;
+    private long bytesInFlight;
+    private int largeWritesInFlight;
+    private final Deque<Object> waiting = new ArrayDeque<>();
+
+    /**
+     * @param maxBytes        the bytes of entry content unpacked at once
+     * @param maxLargeWrites  the number of large entries unpacked at once
+     * @param largeEntryBytes the size from which entries are large
+     */
+    public UnpackBudget(long maxBytes, int maxLargeWrites, long largeEntryBytes) {
+        if (maxBytes <= 0 || maxLargeWrites <= 0 || largeEntryBytes <= 0) {
+            throw new IllegalArgumentException(String.format("Unpack budgets need positive sizes and slots: %d bytes, %d large writes of %d bytes",
+                    maxBytes, maxLargeWrites, largeEntryBytes));
+        }
+        this.maxBytes = maxBytes;
+        this.maxLargeWrites = maxLargeWrites;
+        this.largeEntryBytes = largeEntryBytes;
+    }
+
+    /**
+     * @return the budget of this JVM with the given settings, created on first use
+     */
+    public static UnpackBudget shared(long maxBytes, int maxLargeWrites, long largeEntryBytes) {
+        final String key = maxBytes + "/" + maxLargeWrites + "/" + largeEntryBytes;
+        UnpackBudget budget = SHARED.get(key);
+        if (budget == null) {
+            final UnpackBudget created = new UnpackBudget(maxBytes, maxLargeWrites, largeEntryBytes);
+            budget = SHARED.putIfAbsent(key, created);
+            if (budget == null) {
+                budget = created;
+            }
+        }
+        return budget;
+    }
+
+    boolean isLarge(long size) {
+        return size >= largeEntryBytes;
+    }
+
+    /**
+     * Waits until an entry of the given size fits in the budget and every entry that waited before it was served.
+     *
+     * @return the share of the budget held by the entry, to close once it is written
+     */
+    synchronized Grant acquire(long size) throws InterruptedIOException {
+        final long bytes = Math.min(Math.max(size, 0), maxBytes);
+        final boolean large = isLarge(size);
+        if (!waiting.isEmpty() || !fits(bytes, large)) {
+            final Object turn = new Object();
+            waiting.addLast(turn);
+            try {
+                while (waiting.peekFirst() != turn || !fits(bytes, large)) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the unpack budget");
+            } finally {
+                waiting.remove(turn);
+                // the next entry in line may fit as well
+                notifyAll();
+            }
+        }
+        bytesInFlight += bytes;
+        if (large) {
+            largeWritesInFlight++;
+        }
+        return new Grant(bytes, large);
+    }
+
+    private boolean fits(long bytes, boolean large) {
+        return bytesInFlight + bytes <= maxBytes && (!large || largeWritesInFlight < maxLargeWrites);
+    }
+
+    private synchronized void release(long bytes, boolean large) {
+        bytesInFlight -= bytes;
+        if (large) {
+            largeWritesInFlight--;
+        }
+        notifyAll();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d bytes, %d large writes of %d bytes", maxBytes, maxLargeWrites, largeEntryBytes);
+    }
+
+    /**
+     * A share of the budget, released when closed.
+     */
+    final class Grant implements Closeable {
+        private final long bytes;
+        private final boolean large;
+        private boolean released;
+
+        private Grant(long bytes, boolean large) {
+            this.bytes = bytes;
+            this.large = large;
+        }
+
+        @Override
+        public void close() {
+            if (!released) {
+                released = true;
+                release(bytes, large);
+            }
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.googlecode.mavennatives.core;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+
+public interface UnpackCoordinator {
+
+	String ROLE = UnpackCoordinator.class.getName();
+
+	/**
+	 * Runs an extraction into the given dir unless another caller is already running one into the same dir, in which
+	 * case it waits for that one to finish and shares its outcome.
+	 *
+	 * @return the result of the extraction
+	 */
+	Path extractOnce(Path dir, Callable<Path> extraction) throws IOException;
+}
@@ -0,0 +1,59 @@
+package com.googlecode.mavennatives.core;
+
+import java.io.File;
+
+/**
+ * A natives jar that has to be unpacked into a dir.
+ */
+final class UnpackJob {
+
+    private final String key;
+    private final File jar;
+    private final String relativeDir;
+    private final File targetDir;
+    private final UnpackOptions options;
+
+    /**
+     * @param key         identifies the artifact, used to order jobs deterministically
+     * @param relativeDir the target dir relative to the natives dir ("" for the natives dir itself)
+     */
+    UnpackJob(String key, File jar, String relativeDir, File targetDir, UnpackOptions options) {
+        this.key = key;
+        this.jar = jar;
+        this.relativeDir = relativeDir;
+        this.targetDir = targetDir;
+        this.options = options;
+    }
+
+    String getKey() {
+        return key;
+    }
+
+    File getJar() {
+        return jar;
+    }
+
+    String getRelativeDir() {
+        return relativeDir;
+    }
+
+    File getTargetDir() {
+        return targetDir;
+    }
+
+    UnpackOptions getOptions() {
+        return options;
+    }
+
+    /**
+     * @return the path of an entry of this job's jar relative to the natives dir
+     */
+    String targetPath(String entryName) {
+        return relativeDir.isEmpty() ? entryName : relativeDir + "/" + entryName;
+    }
+
+    @Override
+    public String toString() {
+        return key;
+    }
+}
@@ -0,0 +1,22 @@
+package com.googlecode.mavennatives.core;
+
+/**
+ * Receives the messages of an unpack run, so build tools can forward them to their own log.
+ */
+public interface UnpackLog {
+
+    /**
+     * Writes to the standard output, the way the Maven plugin always logged unpacked jars.
+     */
+    UnpackLog SYSTEM = new SystemUnpackLog();
+
+    boolean isDebugEnabled();
+
+    void debug(String message);
+
+    void info(String message);
+
+    void warn(String message);
+
+    void error(String message);
+}
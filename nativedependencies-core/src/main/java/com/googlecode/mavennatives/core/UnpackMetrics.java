@@ -0,0 +1,204 @@
+package com.googlecode.mavennatives.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Timings and volumes of a run of the copy goal, per artifact and in total, written as a JSON report.
+ * <p>
+ * Phases are wall clock times of the build thread: resolve covers selecting the artifacts and telling whether they are
+ * up to date, unpack the unpacking of all jars, prune the removal of stale files, strip the stripping of ELF natives,
+ * launchFiles the reading of the libraries' dependencies and the writing of the launch files, bundle and archive the
+ * packing of the natives dir. Inflate, write, check and budget wait times are summed over the artifacts, so they
+ * exceed the unpack time when jars are unpacked in parallel.
+ */
+final class UnpackMetrics {
+
+    private final long start = System.nanoTime();
+    private final List<Artifact> artifacts = new ArrayList<>();
+    private long resolveNanos;
+    private long unpackNanos;
+    private long pruneNanos;
+    private long stripNanos;
+    private long bytesStripped;
+    private long launchFilesNanos;
+    private int libraries;
+    private long bundleNanos;
+    private long bundleBytes;
+    private long archiveNanos;
+    private long archiveBytes;
+
+    void addResolveNanos(long nanos) {
+        resolveNanos += nanos;
+    }
+
+    void addUnpackNanos(long nanos) {
+        unpackNanos += nanos;
+    }
+
+    void addPruneNanos(long nanos) {
+        pruneNanos += nanos;
+    }
+
+    void addStrip(long nanos, long bytesSaved) {
+        stripNanos += nanos;
+        bytesStripped += bytesSaved;
+    }
+
+    void addLaunchFiles(long nanos, int libraryCount) {
+        launchFilesNanos += nanos;
+        libraries = libraryCount;
+    }
+
+    void addBundle(long nanos, long bytes) {
+        bundleNanos += nanos;
+        bundleBytes = bytes;
+    }
+
+    void addArchive(long nanos, long bytes) {
+        archiveNanos += nanos;
+        archiveBytes = bytes;
+    }
+
+    void upToDate(String key, String version) {
+        artifacts.add(new Artifact(key, version, "up-to-date", new UnpackResult()));
+    }
+
+    void unpacked(String key, String version, UnpackResult result) {
+        artifacts.add(new Artifact(key, version, "unpacked", result));
+    }
+
+    /**
+     * Writes the report, replacing any previous one.
+     */
+    void write(File reportFile, File nativesTargetDir, int threads, UnpackOptions.CopyStrategy copyStrategy) throws IOException {
+        final long totalNanos = System.nanoTime() - start;
+        int unpacked = 0;
+        final UnpackResult total = new UnpackResult();
+        int entriesWritten = 0;
+        int entriesSkipped = 0;
+        for (Artifact artifact : artifacts) {
+            if ("unpacked".equals(artifact.status)) {
+                unpacked++;
+            }
+            total.addMetricsOf(artifact.result);
+            entriesWritten += artifact.result.getEntriesWritten();
+            entriesSkipped += artifact.result.getEntriesSkipped();
+        }
+
+        final StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        field(json, 1, "nativesTargetDir", nativesTargetDir.getPath()).append(",\n");
+        field(json, 1, "threads", threads).append(",\n");
+        field(json, 1, "copyStrategy", String.valueOf(copyStrategy)).append(",\n");
+        field(json, 1, "totalMillis", millis(totalNanos)).append(",\n");
+        field(json, 1, "resolveMillis", millis(resolveNanos)).append(",\n");
+        field(json, 1, "unpackMillis", millis(unpackNanos)).append(",\n");
+        field(json, 1, "pruneMillis", millis(pruneNanos)).append(",\n");
+        field(json, 1, "stripMillis", millis(stripNanos)).append(",\n");
+        field(json, 1, "bytesStripped", bytesStripped).append(",\n");
+        field(json, 1, "launchFilesMillis", millis(launchFilesNanos)).append(",\n");
+        field(json, 1, "libraries", libraries).append(",\n");
+        field(json, 1, "bundleMillis", millis(bundleNanos)).append(",\n");
+        field(json, 1, "bundleBytes", bundleBytes).append(",\n");
+        field(json, 1, "archiveMillis", millis(archiveNanos)).append(",\n");
+        field(json, 1, "archiveBytes", archiveBytes).append(",\n");
+        field(json, 1, "artifactsUnpacked", unpacked).append(",\n");
+        field(json, 1, "artifactsUpToDate", artifacts.size() - unpacked).append(",\n");
+        field(json, 1, "entriesWritten", entriesWritten).append(",\n");
+        field(json, 1, "entriesSkipped", entriesSkipped).append(",\n");
+        transfer(json, 1, total).append(",\n");
+        indent(json, 1).append("\"artifacts\": [");
+        for (int i = 0; i < artifacts.size(); i++) {
+            final Artifact artifact = artifacts.get(i);
+            json.append(i == 0 ? "\n" : ",\n");
+            indent(json, 2).append("{\n");
+            field(json, 3, "key", artifact.key).append(",\n");
+            field(json, 3, "version", artifact.version).append(",\n");
+            field(json, 3, "status", artifact.status).append(",\n");
+            field(json, 3, "millis", millis(artifact.result.getElapsedNanos())).append(",\n");
+            field(json, 3, "entriesWritten", artifact.result.getEntriesWritten()).append(",\n");
+            field(json, 3, "entriesSkipped", artifact.result.getEntriesSkipped()).append(",\n");
+            transfer(json, 3, artifact.result).append("\n");
+            indent(json, 2).append("}");
+        }
+        json.append(artifacts.isEmpty() ? "]\n" : "\n  ]\n").append("}\n");
+
+        final Path target = reportFile.toPath();
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        final Path temp = NativeFiles.createSiblingTemp(target);
+        try {
+            try (Writer writer = new OutputStreamWriter(Files.newOutputStream(temp), StandardCharsets.UTF_8)) {
+                writer.write(json.toString());
+            }
+            NativeFiles.moveAtomically(temp, target);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static StringBuilder transfer(StringBuilder json, int depth, UnpackResult result) {
+        field(json, depth, "bytesRead", result.getBytesRead()).append(",\n");
+        field(json, depth, "bytesWritten", result.getBytesWritten()).append(",\n");
+        field(json, depth, "inflateMillis", millis(result.getInflateNanos())).append(",\n");
+        field(json, depth, "writeMillis", millis(result.getWriteNanos())).append(",\n");
+        field(json, depth, "checkMillis", millis(result.getCheckNanos())).append(",\n");
+        return field(json, depth, "budgetWaitMillis", millis(result.getBudgetWaitNanos()));
+    }
+
+    private static StringBuilder field(StringBuilder json, int depth, String name, Number value) {
+        return indent(json, depth).append('"').append(name).append("\": ").append(value);
+    }
+
+    private static StringBuilder field(StringBuilder json, int depth, String name, String value) {
+        indent(json, depth).append('"').append(name).append("\": ");
+        if (value == null) {
+            return json.append("null");
+        }
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        return json.append('"');
+    }
+
+    private static StringBuilder indent(StringBuilder json, int depth) {
+        for (int i = 0; i < depth; i++) {
+            json.append("  ");
+        }
+        return json;
+    }
+
+    private static Number millis(long nanos) {
+        return Double.valueOf(String.format(Locale.ROOT, "%.3f", nanos / 1e6));
+    }
+
+    private static final class Artifact {
+        private final String key;
+        private final String version;
+        private final String status;
+        private final UnpackResult result;
+
+        Artifact(String key, String version, String status, UnpackResult result) {
+            this.key = key;
+            this.version = version;
+            this.status = status;
+            this.result = result;
+        }
+    }
+}
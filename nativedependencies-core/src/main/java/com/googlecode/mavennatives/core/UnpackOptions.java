@@ -0,0 +1,174 @@
+package com.googlecode.mavennatives.core;
+
+import java.io.File;
+
+/**
+ * Settings of a single unpack run, shared by all the jars unpacked by that run.
+ */
+public class UnpackOptions {
+
+    public static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+
+    /**
+     * How entry content is written to disk.
+     */
+    public enum CopyStrategy {
+        /**
+         * Copies through a FileOutputStream with a small buffer, the way the plugin always did.
+         */
+        STREAM,
+        /**
+         * Copies through a FileChannel with a large reusable buffer.
+         */
+        CHANNEL
+    }
+
+    private CopyStrategy copyStrategy = CopyStrategy.CHANNEL;
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+    private boolean skipIdentical = true;
+    private boolean atomicWrites = true;
+    private EntryFilter entryFilter = EntryFilter.ALL;
+    private PlatformRoutes platformRoutes = PlatformRoutes.NONE;
+    private boolean computeDigests;
+    private UnpackBudget budget;
+    private File stripCacheDir;
+    private UnpackLog log = UnpackLog.SYSTEM;
+
+    /**
+     * Describes the options deciding which files a jar produces, so a change of them can be told apart from a run
+     * with the same options.
+     */
+    public String selectionSignature() {
+        return platformRoutes.isEmpty() ? "filter=" + entryFilter : "filter=" + entryFilter + " routes=" + platformRoutes;
+    }
+
+    public CopyStrategy getCopyStrategy() {
+        return copyStrategy;
+    }
+
+    /**
+     * @param copyStrategy the strategy to use, null for the default one
+     */
+    public UnpackOptions setCopyStrategy(CopyStrategy copyStrategy) {
+        this.copyStrategy = copyStrategy != null ? copyStrategy : CopyStrategy.CHANNEL;
+        return this;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * @param bufferSize the buffer size in bytes, 0 or less for the default one
+     */
+    public UnpackOptions setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize > 0 ? bufferSize : DEFAULT_BUFFER_SIZE;
+        return this;
+    }
+
+    public boolean isSkipIdentical() {
+        return skipIdentical;
+    }
+
+    /**
+     * @param skipIdentical whether existing files holding the same content as their entry are left untouched
+     */
+    public UnpackOptions setSkipIdentical(boolean skipIdentical) {
+        this.skipIdentical = skipIdentical;
+        return this;
+    }
+
+    public EntryFilter getEntryFilter() {
+        return entryFilter;
+    }
+
+    /**
+     * @param entryFilter selects the entries to unpack, null for all of them
+     */
+    public UnpackOptions setEntryFilter(EntryFilter entryFilter) {
+        this.entryFilter = entryFilter != null ? entryFilter : EntryFilter.ALL;
+        return this;
+    }
+
+    public PlatformRoutes getPlatformRoutes() {
+        return platformRoutes;
+    }
+
+    /**
+     * @param platformRoutes routes the entries to the dirs of their platforms, null to unpack them where they are
+     */
+    public UnpackOptions setPlatformRoutes(PlatformRoutes platformRoutes) {
+        this.platformRoutes = platformRoutes != null ? platformRoutes : PlatformRoutes.NONE;
+        return this;
+    }
+
+    /**
+     * @param entryName a jar entry name, using '/' as separator
+     * @return the path the entry is unpacked to relative to the target dir, null when it is not unpacked
+     */
+    public String targetName(String entryName) {
+        return entryFilter.accepts(entryName) ? platformRoutes.route(entryName) : null;
+    }
+
+    public boolean isAtomicWrites() {
+        return atomicWrites;
+    }
+
+    /**
+     * @param atomicWrites whether entries are written to a temporary file that is then moved over the target
+     */
+    public UnpackOptions setAtomicWrites(boolean atomicWrites) {
+        this.atomicWrites = atomicWrites;
+        return this;
+    }
+
+    public boolean isComputeDigests() {
+        return computeDigests;
+    }
+
+    /**
+     * @param computeDigests whether the SHA-256 of every unpacked file is computed while it is written, or while it is
+     *                       checked when it is already identical
+     */
+    public UnpackOptions setComputeDigests(boolean computeDigests) {
+        this.computeDigests = computeDigests;
+        return this;
+    }
+
+    public UnpackBudget getBudget() {
+        return budget;
+    }
+
+    /**
+     * @param budget caps the entries unpacked at once across the threads sharing it, null for no cap
+     */
+    public UnpackOptions setBudget(UnpackBudget budget) {
+        this.budget = budget;
+        return this;
+    }
+
+    public File getStripCacheDir() {
+        return stripCacheDir;
+    }
+
+    /**
+     * @param stripCacheDir the cache dir natives are stripped with, whose stripped copy of an entry is identical to it
+     *                      when skipping identical files; null when natives are not stripped
+     */
+    public UnpackOptions setStripCacheDir(File stripCacheDir) {
+        this.stripCacheDir = stripCacheDir;
+        return this;
+    }
+
+    public UnpackLog getLog() {
+        return log;
+    }
+
+    /**
+     * @param log where the unpackers report the jars they unpack, null for {@link UnpackLog#SYSTEM}
+     */
+    public UnpackOptions setLog(UnpackLog log) {
+        this.log = log != null ? log : UnpackLog.SYSTEM;
+        return this;
+    }
+}
@@ -0,0 +1,158 @@
+package com.googlecode.mavennatives.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of unpacking a single natives jar.
+ */
+public class UnpackResult {
+
+    private final List<String> files = new ArrayList<>();
+    private final Map<String, String> digests = new LinkedHashMap<>();
+    private int entriesWritten;
+    private int entriesSkipped;
+    private long bytesRead;
+    private long bytesWritten;
+    private long inflateNanos;
+    private long writeNanos;
+    private long checkNanos;
+    private long budgetWaitNanos;
+    private long elapsedNanos;
+
+    /**
+     * @return the entry names written (or kept) relative to the target dir, using '/' as separator
+     */
+    public List<String> getFiles() {
+        return Collections.unmodifiableList(files);
+    }
+
+    /**
+     * @return the hex SHA-256 of the files by entry name, empty unless {@link UnpackOptions#isComputeDigests() digests}
+     * were asked for
+     */
+    public Map<String, String> getDigests() {
+        return Collections.unmodifiableMap(digests);
+    }
+
+    /**
+     * @return the number of entries written to disk
+     */
+    public int getEntriesWritten() {
+        return entriesWritten;
+    }
+
+    /**
+     * @return the number of entries left untouched because the target file already had the same content
+     */
+    public int getEntriesSkipped() {
+        return entriesSkipped;
+    }
+
+    /**
+     * @return the compressed bytes read from the jar for the written entries
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * @return the bytes written to disk
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * @return the time spent reading and inflating the written entries
+     */
+    public long getInflateNanos() {
+        return inflateNanos;
+    }
+
+    /**
+     * @return the time spent writing the entries to disk, including their atomic move in place
+     */
+    public long getWriteNanos() {
+        return writeNanos;
+    }
+
+    /**
+     * @return the time spent telling whether existing files already had the content of their entry
+     */
+    public long getCheckNanos() {
+        return checkNanos;
+    }
+
+    /**
+     * @return the time spent waiting for the {@link UnpackBudget unpack budget}
+     */
+    public long getBudgetWaitNanos() {
+        return budgetWaitNanos;
+    }
+
+    /**
+     * @return the wall clock time the whole jar took
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Records a file written by the unpack, relative to the target dir; {@link JarUnpackable} implementations record
+     * every file they produce, written or skipped.
+     */
+    public void addWrittenFile(String relativePath) {
+        files.add(relativePath);
+        entriesWritten++;
+    }
+
+    /**
+     * Records a file left untouched as it already held the content of its entry.
+     */
+    public void addSkippedFile(String relativePath) {
+        files.add(relativePath);
+        entriesSkipped++;
+    }
+
+    /**
+     * @param digest the SHA-256 of the file, in hex
+     */
+    public void addDigest(String relativePath, String digest) {
+        digests.put(relativePath, digest);
+    }
+
+    /**
+     * Records bytes read from the jar and written to the target dir, and the time spent inflating and writing them.
+     */
+    public void addTransfer(long read, long written, long inflate, long write) {
+        bytesRead += read;
+        bytesWritten += written;
+        inflateNanos += inflate;
+        writeNanos += write;
+    }
+
+    void addCheckNanos(long nanos) {
+        checkNanos += nanos;
+    }
+
+    void addBudgetWaitNanos(long nanos) {
+        budgetWaitNanos += nanos;
+    }
+
+    void setElapsedNanos(long nanos) {
+        elapsedNanos = nanos;
+    }
+
+    /**
+     * Adds the transfer, check and budget metrics of another result, but neither its files nor its elapsed time.
+     */
+    void addMetricsOf(UnpackResult other) {
+        addTransfer(other.bytesRead, other.bytesWritten, other.inflateNanos, other.writeNanos);
+        checkNanos += other.checkNanos;
+        budgetWaitNanos += other.budgetWaitNanos;
+    }
+}
@@ -0,0 +1,229 @@
+package com.googlecode.mavennatives.core;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs unpack jobs, concurrently when more than one thread is allowed.
+ * <p>
+ * Before unpacking the entries of every jar are listed, jobs writing the same target path are grouped and every group
+ * is unpacked on a single thread ordered by artifact key, so the last artifact in key order wins every conflict no
+ * matter how threads are scheduled. Jobs already up to date take part with the paths they produced before: they are
+ * unpacked again when they share a path with a job that is not, so an older artifact never overwrites the natives of a
+ * newer one.
+ */
+final class UnpackScheduler {
+
+    private static final Comparator<UnpackJob> BY_KEY = new Comparator<UnpackJob>() {
+        @Override
+        public int compare(UnpackJob o1, UnpackJob o2) {
+            return o1.getKey().compareTo(o2.getKey());
+        }
+    };
+
+    private final JarUnpackable jarUnpacker;
+    private final int threads;
+    private final UnpackLog log;
+
+    UnpackScheduler(JarUnpackable jarUnpacker, int threads, UnpackLog log) {
+        this.jarUnpacker = jarUnpacker;
+        this.threads = threads;
+        this.log = log;
+    }
+
+    /**
+     * @param upToDate the paths, relative to the natives dir, of the jobs whose natives are already in place
+     * @return the results in the same order as the jobs, null for the jobs left up to date
+     */
+    List<UnpackResult> unpack(List<UnpackJob> jobs, Map<UnpackJob, ? extends Collection<String>> upToDate) throws IOException {
+        final List<List<UnpackJob>> groups = new ArrayList<>();
+        int count = 0;
+        if (upToDate.size() < jobs.size()) {
+            for (List<UnpackJob> group : groupConflicting(jobs, upToDate)) {
+                final List<UnpackJob> again = new ArrayList<>();
+                for (UnpackJob job : group) {
+                    if (upToDate.containsKey(job)) {
+                        again.add(job);
+                    }
+                }
+                if (again.size() < group.size()) {
+                    if (!again.isEmpty()) {
+                        log.info(String.format("Unpacking %s again, they share natives with %s", again, group));
+                    }
+                    groups.add(group);
+                    count += group.size();
+                }
+            }
+        }
+        final Map<UnpackJob, UnpackResult> resultsByJob = new IdentityHashMap<>();
+        final int threadCount = Math.min(threads, groups.size());
+        if (threadCount <= 1) {
+            for (List<UnpackJob> group : groups) {
+                put(resultsByJob, group, unpack(group));
+            }
+        } else {
+            log.info(String.format("Unpacking %d natives artifacts using %d threads", count, threadCount));
+            unpackInParallel(groups, threadCount, resultsByJob);
+        }
+        final List<UnpackResult> results = new ArrayList<>(jobs.size());
+        for (UnpackJob job : jobs) {
+            results.add(resultsByJob.get(job));
+        }
+        return results;
+    }
+
+    private void unpackInParallel(List<List<UnpackJob>> groups, int threadCount, Map<UnpackJob, UnpackResult> resultsByJob) throws IOException {
+        final ExecutorService executor = Executors.newFixedThreadPool(threadCount, new UnpackThreadFactory());
+        try {
+            final List<Future<List<UnpackResult>>> futures = new ArrayList<>(groups.size());
+            for (final List<UnpackJob> group : groups) {
+                futures.add(executor.submit(new Callable<List<UnpackResult>>() {
+                    @Override
+                    public List<UnpackResult> call() throws IOException {
+                        return unpack(group);
+                    }
+                }));
+            }
+            for (int i = 0; i < groups.size(); i++) {
+                put(resultsByJob, groups.get(i), get(futures.get(i)));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Unpacks a group of jobs one after the other, in key order.
+     */
+    private List<UnpackResult> unpack(List<UnpackJob> group) throws IOException {
+        final List<UnpackResult> results = new ArrayList<>(group.size());
+        for (UnpackJob job : group) {
+            results.add(jarUnpacker.copyJarContent(job.getJar(), job.getTargetDir(), job.getOptions()));
+        }
+        return results;
+    }
+
+    private static void put(Map<UnpackJob, UnpackResult> resultsByJob, List<UnpackJob> group, List<UnpackResult> results) {
+        for (int i = 0; i < group.size(); i++) {
+            resultsByJob.put(group.get(i), results.get(i));
+        }
+    }
+
+    /**
+     * Groups the jobs that write at least one common target path, reporting every conflict in path order. Every group is
+     * sorted by key.
+     */
+    private List<List<UnpackJob>> groupConflicting(List<UnpackJob> jobs, Map<UnpackJob, ? extends Collection<String>> upToDate) throws IOException {
+        final int[] parent = new int[jobs.size()];
+        final Map<String, List<Integer>> writers = new TreeMap<>();
+        for (int i = 0; i < jobs.size(); i++) {
+            parent[i] = i;
+        }
+        // a single job conflicts with none, its jar need not be listed
+        for (int i = 0; i < jobs.size() && jobs.size() > 1; i++) {
+            final UnpackJob job = jobs.get(i);
+            final Collection<String> paths;
+            if (upToDate.containsKey(job)) {
+                paths = upToDate.get(job);
+            } else {
+                paths = new ArrayList<>();
+                for (String entry : jarUnpacker.listEntries(job.getJar(), job.getOptions())) {
+                    paths.add(job.targetPath(entry));
+                }
+            }
+            for (String path : paths) {
+                List<Integer> jobIndexes = writers.get(path);
+                if (jobIndexes == null) {
+                    jobIndexes = new ArrayList<>(1);
+                    writers.put(path, jobIndexes);
+                }
+                jobIndexes.add(i);
+            }
+        }
+        for (Map.Entry<String, List<Integer>> writer : writers.entrySet()) {
+            final List<Integer> jobIndexes = writer.getValue();
+            if (jobIndexes.size() < 2) {
+                continue;
+            }
+            final List<UnpackJob> conflicting = new ArrayList<>(jobIndexes.size());
+            for (int jobIndex : jobIndexes) {
+                conflicting.add(jobs.get(jobIndex));
+                parent[find(parent, jobIndex)] = find(parent, jobIndexes.get(0));
+            }
+            Collections.sort(conflicting, BY_KEY);
+            log.warn(String.format("%s is provided by %s, keeping the one from %s", writer.getKey(), conflicting,
+                    conflicting.get(conflicting.size() - 1)));
+        }
+        final Map<Integer, List<UnpackJob>> groups = new TreeMap<>();
+        for (int i = 0; i < jobs.size(); i++) {
+            final int root = find(parent, i);
+            List<UnpackJob> group = groups.get(root);
+            if (group == null) {
+                group = new ArrayList<>(1);
+                groups.put(root, group);
+            }
+            group.add(jobs.get(i));
+        }
+        final List<List<UnpackJob>> result = new ArrayList<>(groups.size());
+        for (List<UnpackJob> group : groups.values()) {
+            Collections.sort(group, BY_KEY);
+            result.add(group);
+        }
+        return result;
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static <T> T get(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while unpacking natives");
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private static final class UnpackThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            final Thread thread = new Thread(r, "natives-unpack-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
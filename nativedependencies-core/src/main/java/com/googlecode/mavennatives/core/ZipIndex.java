@@ -0,0 +1,419 @@
+package com.googlecode.mavennatives.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Random access reader of a zip (or jar) file. Only the central directory is read when opening, and entry data is read
+ * on demand at its offset, so unpacking a few entries of a large jar costs about the size of those entries. Zip64
+ * archives are supported.
+ * <p>
+ * Both are read through positional channel reads rather than a mapping, as a mapping could only be released by the
+ * garbage collector and keeps the jar locked on Windows until then: closing the index releases the jar at once. Not thread-safe for concurrent reads of the same
+ * entry stream, but distinct streams of the same index may be read from different threads.
+ */
+final class ZipIndex implements Closeable {
+
+    private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY = 0x06064b50;
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR = 0x07064b50;
+    private static final int CENTRAL_DIRECTORY_HEADER = 0x02014b50;
+    private static final int LOCAL_FILE_HEADER = 0x04034b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+    private static final int ZIP64_LOCATOR_SIZE = 20;
+    private static final int LOCAL_FILE_HEADER_SIZE = 30;
+    private static final int MAX_COMMENT_SIZE = 0xffff;
+    private static final int ZIP64_EXTRA = 0x0001;
+    private static final long ZIP64_MAGIC = 0xffffffffL;
+    private static final int FLAG_ENCRYPTED = 1;
+    private static final int FLAG_UTF8 = 1 << 11;
+    private static final Charset CP437_FALLBACK = StandardCharsets.ISO_8859_1;
+
+    private final File file;
+    private final FileChannel channel;
+    private final List<Entry> entries;
+    private final Map<String, Entry> byName;
+
+    private ZipIndex(File file, FileChannel channel, List<Entry> entries) {
+        this.file = file;
+        this.channel = channel;
+        this.entries = Collections.unmodifiableList(entries);
+        this.byName = new HashMap<>(entries.size() * 2);
+        for (Entry entry : entries) {
+            byName.put(entry.name, entry);
+        }
+    }
+
+    static ZipIndex open(File file) throws IOException {
+        final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            return new ZipIndex(file, channel, readCentralDirectory(file, channel));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    /**
+     * @return the entries in central directory order
+     */
+    List<Entry> entries() {
+        return entries;
+    }
+
+    /**
+     * @return the entry of the given name, null when there is none
+     */
+    Entry get(String name) {
+        return byName.get(name);
+    }
+
+    /**
+     * @return the uncompressed content of an entry; the stream has to be closed to release its inflater
+     */
+    InputStream getInputStream(Entry entry) throws IOException {
+        final long offset = dataOffset(entry);
+        if (entry.method == Entry.STORED) {
+            return new RegionInputStream(channel, offset, entry.compressedSize, false);
+        }
+        return new InflatingInputStream(new RegionInputStream(channel, offset, entry.compressedSize, true), entry.size);
+    }
+
+    /**
+     * Copies a stored entry into a file with {@link FileChannel#transferTo}, letting the kernel move the bytes.
+     */
+    void transferTo(Entry entry, Path target) throws IOException {
+        if (entry.method != Entry.STORED) {
+            throw new IllegalArgumentException(entry.name + " is not stored");
+        }
+        final long offset = dataOffset(entry);
+        try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long transferred = 0;
+            while (transferred < entry.size) {
+                final long count = channel.transferTo(offset + transferred, entry.size - transferred, out);
+                if (count <= 0) {
+                    throw new ZipException("Truncated entry " + entry.name + " in " + file);
+                }
+                transferred += count;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * The central directory only tells where the local header starts, whose variable length fields may differ from
+     * the central ones.
+     */
+    private long dataOffset(Entry entry) throws IOException {
+        final ByteBuffer header = read(channel, entry.localHeaderOffset, LOCAL_FILE_HEADER_SIZE);
+        if (header.getInt(0) != LOCAL_FILE_HEADER) {
+            throw new ZipException("Invalid local header of " + entry.name + " in " + file);
+        }
+        return entry.localHeaderOffset + LOCAL_FILE_HEADER_SIZE + (header.getShort(26) & 0xffff) + (header.getShort(28) & 0xffff);
+    }
+
+    private static List<Entry> readCentralDirectory(File file, FileChannel channel) throws IOException {
+        final long size = channel.size();
+        final int tailSize = (int) Math.min(size, END_OF_CENTRAL_DIRECTORY_SIZE + MAX_COMMENT_SIZE);
+        final ByteBuffer tail = read(channel, size - tailSize, tailSize);
+        int eocd = -1;
+        for (int i = tailSize - END_OF_CENTRAL_DIRECTORY_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) == END_OF_CENTRAL_DIRECTORY) {
+                eocd = i;
+                break;
+            }
+        }
+        if (eocd < 0) {
+            throw new ZipException("Not a zip file: " + file);
+        }
+        long entryCount = tail.getShort(eocd + 10) & 0xffff;
+        long directorySize = tail.getInt(eocd + 12) & ZIP64_MAGIC;
+        long directoryOffset = tail.getInt(eocd + 16) & ZIP64_MAGIC;
+        final long locator = size - tailSize + eocd - ZIP64_LOCATOR_SIZE;
+        if (locator >= 0) {
+            final ByteBuffer zip64Locator = read(channel, locator, ZIP64_LOCATOR_SIZE);
+            if (zip64Locator.getInt(0) == ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR) {
+                final ByteBuffer zip64End = read(channel, zip64Locator.getLong(8), 56);
+                if (zip64End.getInt(0) != ZIP64_END_OF_CENTRAL_DIRECTORY) {
+                    throw new ZipException("Invalid zip64 end of central directory in " + file);
+                }
+                entryCount = zip64End.getLong(32);
+                directorySize = zip64End.getLong(40);
+                directoryOffset = zip64End.getLong(48);
+            }
+        }
+        if (directoryOffset + directorySize > size || directorySize > Integer.MAX_VALUE) {
+            throw new ZipException("Invalid central directory in " + file);
+        }
+
+        final ByteBuffer directory = read(channel, directoryOffset, (int) directorySize);
+        final List<Entry> entries = new ArrayList<>((int) Math.min(entryCount, 1 << 16));
+        int position = 0;
+        for (long i = 0; i < entryCount; i++) {
+            if (position + 46 > directorySize || directory.getInt(position) != CENTRAL_DIRECTORY_HEADER) {
+                throw new ZipException("Invalid central directory header in " + file);
+            }
+            final int flags = directory.getShort(position + 8) & 0xffff;
+            final int method = directory.getShort(position + 10) & 0xffff;
+            final long crc = directory.getInt(position + 16) & ZIP64_MAGIC;
+            long compressedSize = directory.getInt(position + 20) & ZIP64_MAGIC;
+            long size64 = directory.getInt(position + 24) & ZIP64_MAGIC;
+            final int nameLength = directory.getShort(position + 28) & 0xffff;
+            final int extraLength = directory.getShort(position + 30) & 0xffff;
+            final int commentLength = directory.getShort(position + 32) & 0xffff;
+            long localHeaderOffset = directory.getInt(position + 42) & ZIP64_MAGIC;
+
+            final byte[] nameBytes = new byte[nameLength];
+            directory.position(position + 46);
+            directory.get(nameBytes);
+            final String name = new String(nameBytes, (flags & FLAG_UTF8) != 0 ? StandardCharsets.UTF_8 : utf8OrFallback(nameBytes));
+
+            // zip64 sizes and offsets replace the central ones that are all ones, in this order
+            int extra = position + 46 + nameLength;
+            final int extraEnd = extra + extraLength;
+            while (extra + 4 <= extraEnd) {
+                final int id = directory.getShort(extra) & 0xffff;
+                final int length = directory.getShort(extra + 2) & 0xffff;
+                if (id == ZIP64_EXTRA) {
+                    int field = extra + 4;
+                    if (size64 == ZIP64_MAGIC) {
+                        size64 = directory.getLong(field);
+                        field += 8;
+                    }
+                    if (compressedSize == ZIP64_MAGIC) {
+                        compressedSize = directory.getLong(field);
+                        field += 8;
+                    }
+                    if (localHeaderOffset == ZIP64_MAGIC) {
+                        localHeaderOffset = directory.getLong(field);
+                    }
+                }
+                extra += 4 + length;
+            }
+            if ((flags & FLAG_ENCRYPTED) != 0) {
+                throw new ZipException("Encrypted entry " + name + " in " + file);
+            }
+            if (method != Entry.STORED && method != Entry.DEFLATED) {
+                throw new ZipException("Unsupported compression method " + method + " of " + name + " in " + file);
+            }
+            entries.add(new Entry(name, method, crc, size64, compressedSize, localHeaderOffset));
+            position = extraEnd + commentLength;
+        }
+        return entries;
+    }
+
+    /**
+     * Names without the UTF-8 flag are decoded as UTF-8 like {@link java.util.zip.ZipFile} does, unless they are not
+     * valid UTF-8.
+     */
+    private static Charset utf8OrFallback(byte[] name) {
+        try {
+            StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(name));
+            return StandardCharsets.UTF_8;
+        } catch (CharacterCodingException e) {
+            return CP437_FALLBACK;
+        }
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new ZipException("Unexpected end of zip file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * A zip entry as described by the central directory.
+     */
+    static final class Entry {
+        static final int STORED = 0;
+        static final int DEFLATED = 8;
+
+        private final String name;
+        private final int method;
+        private final long crc;
+        private final long size;
+        private final long compressedSize;
+        private final long localHeaderOffset;
+
+        Entry(String name, int method, long crc, long size, long compressedSize, long localHeaderOffset) {
+            this.name = name;
+            this.method = method;
+            this.crc = crc;
+            this.size = size;
+            this.compressedSize = compressedSize;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        boolean isDirectory() {
+            return name.endsWith("/");
+        }
+
+        boolean isStored() {
+            return method == STORED;
+        }
+
+        long getCrc() {
+            return crc;
+        }
+
+        long getSize() {
+            return size;
+        }
+
+        long getCompressedSize() {
+            return compressedSize;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * Reads a region of the channel with positional reads, so several streams can share the channel.
+     */
+    private static final class RegionInputStream extends InputStream {
+        private final FileChannel channel;
+        private long position;
+        private final long end;
+        private boolean dummyByte;
+
+        /**
+         * @param dummyByte whether to append a zero byte, which an inflater without zlib header may need to finish
+         */
+        RegionInputStream(FileChannel channel, long position, long length, boolean dummyByte) {
+            this.channel = channel;
+            this.position = position;
+            this.end = position + length;
+            this.dummyByte = dummyByte;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final byte[] b = new byte[1];
+            return read(b, 0, 1) == 1 ? b[0] & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (position >= end) {
+                if (dummyByte) {
+                    dummyByte = false;
+                    b[off] = 0;
+                    return 1;
+                }
+                return -1;
+            }
+            final int count = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, end - position)), position);
+            if (count < 0) {
+                throw new ZipException("Unexpected end of zip file");
+            }
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, end - position);
+        }
+    }
+
+    /**
+     * Inflates raw deflate data, ending its inflater on close.
+     */
+    private static final class InflatingInputStream extends InputStream {
+        private final InputStream in;
+        private final Inflater inflater = new Inflater(true);
+        private final byte[] input;
+        private boolean closed;
+
+        InflatingInputStream(InputStream in, long size) {
+            this.in = in;
+            // small entries need no larger input buffer than themselves
+            this.input = new byte[(int) Math.max(512, Math.min(64 * 1024, size))];
+        }
+
+        @Override
+        public int read() throws IOException {
+            final byte[] b = new byte[1];
+            return read(b, 0, 1) == 1 ? b[0] & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            if (len == 0) {
+                return 0;
+            }
+            try {
+                int count;
+                while ((count = inflater.inflate(b, off, len)) == 0) {
+                    if (inflater.finished() || inflater.needsDictionary()) {
+                        return -1;
+                    }
+                    if (inflater.needsInput()) {
+                        final int read = in.read(input, 0, input.length);
+                        if (read < 0) {
+                            throw new ZipException("Unexpected end of deflated entry");
+                        }
+                        inflater.setInput(input, 0, read);
+                    }
+                }
+                return count;
+            } catch (DataFormatException e) {
+                throw new ZipException("Invalid deflated entry: " + e.getMessage());
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                inflater.end();
+                in.close();
+            }
+        }
+    }
+}
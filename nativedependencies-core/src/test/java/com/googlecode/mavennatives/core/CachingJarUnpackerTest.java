@@ -0,0 +1,163 @@
+package com.googlecode.mavennatives.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CachingJarUnpackerTest
+{
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private final byte[] content = "native".getBytes();
+	private File cacheDir;
+	private File jar;
+	private CachingJarUnpacker cachingJarUnpacker;
+
+	@Before
+	public void setUp() throws IOException
+	{
+		cacheDir = temporaryFolder.newFolder("cache");
+		jar = temporaryFolder.newFile("natives-linux.jar");
+		try (JarOutputStream jos = new JarOutputStream(new FileOutputStream(jar)))
+		{
+			jos.putNextEntry(new JarEntry("lib/liba.so"));
+			jos.write(content);
+		}
+		cachingJarUnpacker = new CachingJarUnpacker(new JarUnpacker(), cacheDir, new ReactorUnpackCoordinator());
+	}
+
+	@Test
+	public void everyTargetDirIsLinkedToTheSameCachedFiles() throws IOException
+	{
+		final File first = temporaryFolder.newFolder("first");
+		final File second = temporaryFolder.newFolder("second");
+
+		final UnpackResult firstResult = cachingJarUnpacker.copyJarContent(jar, first, new UnpackOptions());
+		cachingJarUnpacker.copyJarContent(jar, second, new UnpackOptions());
+
+		assertEquals(Arrays.asList("lib/liba.so"), firstResult.getFiles());
+		final File cached = new File(new File(cacheDir, ArtifactFingerprint.of(jar).getSha1()), "lib/liba.so");
+		assertArrayEquals(content, Files.readAllBytes(new File(second, "lib/liba.so").toPath()));
+		assertTrue(Files.isSameFile(cached.toPath(), new File(first, "lib/liba.so").toPath()));
+		assertTrue(Files.isSameFile(cached.toPath(), new File(second, "lib/liba.so").toPath()));
+		// the cached dir and its digests
+		assertEquals(2, cacheDir.list().length);
+	}
+
+	@Test
+	public void filesAlreadyLinkedAreSkipped() throws IOException
+	{
+		final File targetDir = temporaryFolder.newFolder("natives");
+		cachingJarUnpacker.copyJarContent(jar, targetDir, new UnpackOptions());
+
+		final UnpackResult result = cachingJarUnpacker.copyJarContent(jar, targetDir, new UnpackOptions());
+
+		assertEquals(0, result.getEntriesWritten());
+		assertEquals(1, result.getEntriesSkipped());
+	}
+
+	@Test
+	public void digestsAreStoredWhenCachingAndReusedByLaterUnpacks() throws Exception
+	{
+		cachingJarUnpacker.copyJarContent(jar, temporaryFolder.newFolder("first"), new UnpackOptions());
+		final File digests = new File(cacheDir, ArtifactFingerprint.of(jar).getSha1() + ".sha256");
+		final String sha256 = ArtifactFingerprint.toHex(MessageDigest.getInstance("SHA-256").digest(content));
+		assertEquals(Collections.singletonMap("lib/liba.so", sha256), NativesLock.read(digests));
+
+		// only the stored digest can tell this one
+		NativesLock.write(digests, Collections.singletonMap("lib/liba.so", "stored"));
+		final UnpackResult result = cachingJarUnpacker.copyJarContent(jar, temporaryFolder.newFolder("second"),
+				new UnpackOptions().setComputeDigests(true));
+
+		assertEquals(Collections.singletonMap("lib/liba.so", "stored"), result.getDigests());
+	}
+
+	@Test
+	public void unpackingWithoutTheCacheDoesNotAlterCachedFiles() throws IOException
+	{
+		final File targetDir = temporaryFolder.newFolder("natives");
+		cachingJarUnpacker.copyJarContent(jar, targetDir, new UnpackOptions());
+		final File cached = new File(new File(cacheDir, ArtifactFingerprint.of(jar).getSha1()), "lib/liba.so");
+
+		new JarUnpacker().copyJarContent(jar, targetDir, new UnpackOptions().setAtomicWrites(false).setSkipIdentical(false));
+
+		assertFalse(Files.isSameFile(cached.toPath(), new File(targetDir, "lib/liba.so").toPath()));
+		assertArrayEquals(content, Files.readAllBytes(cached.toPath()));
+	}
+
+	@Test
+	public void concurrentModulesWaitForTheExtractionInProgress() throws Exception
+	{
+		final AtomicInteger extractions = new AtomicInteger();
+		final JarUnpacker slowUnpacker = new JarUnpacker()
+		{
+			@Override
+			public UnpackResult copyJarContent(File jarPath, File targetDir, UnpackOptions options) throws IOException
+			{
+				extractions.incrementAndGet();
+				try
+				{
+					// leaves the other modules the time to ask for the same jar
+					Thread.sleep(200);
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				}
+				return super.copyJarContent(jarPath, targetDir, options);
+			}
+		};
+		final CachingJarUnpacker shared = new CachingJarUnpacker(slowUnpacker, cacheDir, new ReactorUnpackCoordinator());
+		final ExecutorService executor = Executors.newFixedThreadPool(4);
+		try
+		{
+			final List<Future<UnpackResult>> modules = new ArrayList<>();
+			for (int i = 0; i < 4; i++)
+			{
+				final File targetDir = temporaryFolder.newFolder("module" + i);
+				modules.add(executor.submit(new Callable<UnpackResult>()
+				{
+					@Override
+					public UnpackResult call() throws IOException
+					{
+						return shared.copyJarContent(jar, targetDir, new UnpackOptions());
+					}
+				}));
+			}
+			for (int i = 0; i < 4; i++)
+			{
+				assertEquals(1, modules.get(i).get().getEntriesWritten());
+				assertArrayEquals(content, Files.readAllBytes(new File(temporaryFolder.getRoot(), "module" + i + "/lib/liba.so").toPath()));
+			}
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+		assertEquals(1, extractions.get());
+	}
+}
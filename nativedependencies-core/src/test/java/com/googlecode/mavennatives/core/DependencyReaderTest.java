@@ -0,0 +1,200 @@
+package com.googlecode.mavennatives.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DependencyReaderTest
+{
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void elfLibrariesTellTheirSonameAndNeededLibraries() throws IOException
+	{
+		final NativeLibrary library = read("linux/libavcodec.so", elf("libavcodec.so.58", "libavutil.so.56", "libc.so.6"));
+
+		assertEquals(NativeLibrary.Format.ELF, library.getFormat());
+		assertEquals("libavcodec.so.58", library.getName());
+		assertEquals(Arrays.asList("libavutil.so.56", "libc.so.6"), library.getNeeded());
+	}
+
+	@Test
+	public void peLibrariesTellTheirImportedDlls() throws IOException
+	{
+		final NativeLibrary library = read("avcodec-58.dll", pe("avutil-56.dll", "KERNEL32.dll"));
+
+		assertEquals(NativeLibrary.Format.PE, library.getFormat());
+		assertEquals("avcodec-58.dll", library.getName());
+		assertEquals(Arrays.asList("avutil-56.dll", "KERNEL32.dll"), library.getNeeded());
+	}
+
+	@Test
+	public void machOLibrariesTellTheirInstallNameAndDylibs() throws IOException
+	{
+		final byte[] machO = machO("@rpath/libavcodec.58.dylib", "@rpath/libavutil.56.dylib", "/usr/lib/libSystem.B.dylib");
+
+		for (byte[] content : Arrays.asList(machO, universal(machO)))
+		{
+			final NativeLibrary library = read("libavcodec.dylib", content);
+			assertEquals(NativeLibrary.Format.MACH_O, library.getFormat());
+			assertEquals("libavcodec.58.dylib", library.getName());
+			assertEquals(Arrays.asList("libavutil.56.dylib", "libSystem.B.dylib"), library.getNeeded());
+		}
+	}
+
+	@Test
+	public void otherFilesAreNoLibraries() throws IOException
+	{
+		final byte[] text = new byte[128];
+		Arrays.fill(text, (byte) 'M');
+		assertNull(read("readme.txt", text));
+		// a class file shares the magic of universal binaries
+		final ByteBuffer classFile = ByteBuffer.allocate(128);
+		classFile.putInt(0xcafebabe).putShort((short) 0).putShort((short) 51);
+		assertNull(read("Foo.class", classFile.array()));
+	}
+
+	private NativeLibrary read(String path, byte[] content) throws IOException
+	{
+		final File file = new File(temporaryFolder.getRoot(), path.replace('/', '_'));
+		Files.write(file.toPath(), content);
+		return DependencyReader.read(file.toPath(), path);
+	}
+
+	/**
+	 * A little endian ELF64 shared library: one segment loading the whole file at 0x10000, the dynamic section at
+	 * 0x100 and its string table at 0x200.
+	 */
+	private static byte[] elf(String soname, String... needed)
+	{
+		final ByteBuffer elf = ByteBuffer.allocate(0x400).order(ByteOrder.LITTLE_ENDIAN);
+		elf.putInt(0, 0x464c457f);
+		elf.put(4, (byte) 2);
+		elf.put(5, (byte) 1);
+		elf.put(6, (byte) 1);
+		elf.putShort(16, (short) 3);
+		elf.putLong(32, 64);
+		elf.putShort(54, (short) 56);
+		elf.putShort(56, (short) 2);
+		elf.putInt(64, 1);
+		elf.putLong(64 + 8, 0);
+		elf.putLong(64 + 16, 0x10000);
+		elf.putLong(64 + 32, 0x400);
+		elf.putInt(120, 2);
+		elf.putLong(120 + 8, 0x100);
+		elf.putLong(120 + 16, 0x10100);
+		elf.putLong(120 + 32, 16 * (needed.length + 3));
+		int string = 1;
+		int entry = 0x100;
+		for (String name : needed)
+		{
+			elf.putLong(entry, 1).putLong(entry + 8, string);
+			string = putString(elf, 0x200 + string, name) - 0x200;
+			entry += 16;
+		}
+		elf.putLong(entry, 14).putLong(entry + 8, string);
+		putString(elf, 0x200 + string, soname);
+		elf.putLong(entry + 16, 5).putLong(entry + 24, 0x10200);
+		return elf.array();
+	}
+
+	/**
+	 * A PE32+ dll with a single section mapping RVA 0x1000 to the file offset 0x200, holding the import descriptors
+	 * and at 0x300 the names of the imported dlls.
+	 */
+	private static byte[] pe(String... imports)
+	{
+		final ByteBuffer pe = ByteBuffer.allocate(0x400).order(ByteOrder.LITTLE_ENDIAN);
+		pe.putShort(0, (short) 0x5a4d);
+		pe.putInt(0x3c, 0x40);
+		pe.putInt(0x40, 0x00004550);
+		pe.putShort(0x44, (short) 0x8664);
+		pe.putShort(0x44 + 2, (short) 1);
+		pe.putShort(0x44 + 16, (short) 240);
+		final int optional = 0x58;
+		pe.putShort(optional, (short) 0x20b);
+		pe.putInt(optional + 108, 16);
+		pe.putInt(optional + 112 + 8, 0x1000);
+		pe.putInt(optional + 112 + 12, 20 * (imports.length + 1));
+		final int section = optional + 240;
+		pe.putInt(section + 8, 0x200);
+		pe.putInt(section + 12, 0x1000);
+		pe.putInt(section + 16, 0x200);
+		pe.putInt(section + 20, 0x200);
+		int name = 0x300;
+		for (int i = 0; i < imports.length; i++)
+		{
+			pe.putInt(0x200 + 20 * i + 12, 0x1000 + name - 0x200);
+			pe.putInt(0x200 + 20 * i + 16, 0x1000);
+			name = putString(pe, name, imports[i]);
+		}
+		return pe.array();
+	}
+
+	/**
+	 * A little endian 64 bit Mach-O dylib with its LC_ID_DYLIB followed by an LC_LOAD_DYLIB per dependency.
+	 */
+	private static byte[] machO(String installName, String... dylibs)
+	{
+		final ByteBuffer macho = ByteBuffer.allocate(0x400).order(ByteOrder.LITTLE_ENDIAN);
+		macho.putInt(0, 0xfeedfacf);
+		macho.putInt(12, 6);
+		macho.putInt(16, dylibs.length + 1);
+		int command = 32;
+		command = dylibCommand(macho, command, 0xd, installName);
+		for (String dylib : dylibs)
+		{
+			command = dylibCommand(macho, command, 0xc, dylib);
+		}
+		macho.putInt(20, command - 32);
+		return macho.array();
+	}
+
+	private static int dylibCommand(ByteBuffer macho, int command, int type, String name)
+	{
+		final int size = (24 + name.length() + 1 + 7) & ~7;
+		macho.putInt(command, type);
+		macho.putInt(command + 4, size);
+		macho.putInt(command + 8, 24);
+		putString(macho, command + 24, name);
+		return command + size;
+	}
+
+	private static byte[] universal(byte[] machO)
+	{
+		final ByteBuffer fat = ByteBuffer.allocate(0x1000 + machO.length);
+		fat.putInt(0, 0xcafebabe);
+		fat.putInt(4, 1);
+		fat.putInt(8, 0x01000007);
+		fat.putInt(8 + 8, 0x1000);
+		fat.putInt(8 + 12, machO.length);
+		fat.position(0x1000);
+		fat.put(machO);
+		return fat.array();
+	}
+
+	/**
+	 * @return the offset following the terminating NUL
+	 */
+	private static int putString(ByteBuffer buffer, int offset, String value)
+	{
+		final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		for (int i = 0; i < bytes.length; i++)
+		{
+			buffer.put(offset + i, bytes[i]);
+		}
+		return offset + bytes.length + 1;
+	}
+}
@@ -0,0 +1,196 @@
+package com.googlecode.mavennatives.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ElfStripperTest
+{
+	private static final String NAMES = "\0.text\0.comment\0.symtab\0.strtab\0.shstrtab\0";
+	private static final int SEGMENT_END = 0x100;
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void sectionsAfterTheLoadedSegmentsAreRemoved() throws IOException
+	{
+		final File library = temporaryFolder.newFile("libfoo.so");
+		final byte[] content = sharedLibrary();
+		Files.write(library.toPath(), content);
+		final File stripped = new File(temporaryFolder.getRoot(), "libfoo-stripped.so");
+
+		assertTrue(ElfStripper.isStrippable(library.toPath()));
+		assertTrue(ElfStripper.strip(library.toPath(), stripped.toPath()));
+
+		final ByteBuffer elf = ByteBuffer.wrap(Files.readAllBytes(stripped.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+		assertTrue(elf.capacity() < content.length);
+		assertArrayEquals(Arrays.copyOfRange(content, 64, SEGMENT_END), Arrays.copyOfRange(elf.array(), 64, SEGMENT_END));
+		assertEquals(3, elf.getShort(60));
+		assertEquals(2, elf.getShort(62));
+		final int shoff = (int) elf.getLong(40);
+		final int namesOffset = (int) elf.getLong(shoff + 2 * 64 + 24);
+		assertEquals(".text", name(elf, namesOffset, elf.getInt(shoff + 64)));
+		assertEquals(".shstrtab", name(elf, namesOffset, elf.getInt(shoff + 2 * 64)));
+		assertEquals(0x78, elf.getLong(shoff + 64 + 24));
+		assertFalse(ElfStripper.isStrippable(stripped.toPath()));
+	}
+
+	@Test
+	public void filesThatAreNotElfLibrariesAreLeftAlone() throws IOException
+	{
+		final File text = temporaryFolder.newFile("readme.txt");
+		Files.write(text.toPath(), new byte[100]);
+		final File target = new File(temporaryFolder.getRoot(), "target");
+
+		assertFalse(ElfStripper.isStrippable(text.toPath()));
+		assertFalse(ElfStripper.strip(text.toPath(), target.toPath()));
+		assertFalse(target.exists());
+	}
+
+	@Test
+	public void strippedLibrariesAreCachedByContent() throws IOException, NoSuchAlgorithmException
+	{
+		final File dir = temporaryFolder.newFolder("natives");
+		final File cacheDir = new File(temporaryFolder.getRoot(), "stripped");
+		Files.write(new File(dir, "liba.so").toPath(), sharedLibrary());
+		Files.write(new File(dir, "libb.so").toPath(), sharedLibrary());
+		Files.write(new File(dir, "readme.txt").toPath(), new byte[] { 1 });
+		final NativesStripper stripper = new NativesStripper(cacheDir, 2, UnpackLog.SYSTEM);
+
+		final long saved = stripper.strip(dir, Arrays.asList("liba.so", "libb.so", "readme.txt"));
+
+		assertEquals(2 * (sharedLibrary().length - new File(dir, "liba.so").length()), saved);
+		assertEquals(Arrays.asList(hex(MessageDigest.getInstance("SHA-256").digest(sharedLibrary())), "entries"),
+				sorted(cacheDir.list()));
+		assertTrue(Files.isSameFile(new File(dir, "liba.so").toPath(), new File(dir, "libb.so").toPath()));
+		assertEquals(0, stripper.strip(dir, Arrays.asList("liba.so", "libb.so", "readme.txt")));
+	}
+
+	@Test
+	public void strippedCopiesOfJarEntriesAreLeftAloneWhenUnpackingAgain() throws IOException
+	{
+		final File jar = temporaryFolder.newFile("foo-natives-linux.jar");
+		try (JarOutputStream jos = new JarOutputStream(new FileOutputStream(jar)))
+		{
+			jos.putNextEntry(new JarEntry("libfoo.so"));
+			jos.write(sharedLibrary());
+		}
+		final File dir = temporaryFolder.newFolder("natives");
+		final File cacheDir = new File(temporaryFolder.getRoot(), "stripped");
+		final UnpackOptions options = new UnpackOptions().setStripCacheDir(cacheDir);
+		new JarUnpacker().copyJarContent(jar, dir, options);
+		new NativesStripper(cacheDir, 1, UnpackLog.SYSTEM).strip(dir, Arrays.asList("libfoo.so"));
+		final long stripped = new File(dir, "libfoo.so").length();
+
+		final UnpackResult result = new JarUnpacker().copyJarContent(jar, dir, options);
+
+		assertEquals(1, result.getEntriesSkipped());
+		assertEquals(stripped, new File(dir, "libfoo.so").length());
+		assertEquals(0, new JarUnpacker().copyJarContent(jar, dir, new UnpackOptions()).getEntriesSkipped());
+	}
+
+	private static String name(ByteBuffer elf, int namesOffset, int nameIndex)
+	{
+		int end = namesOffset + nameIndex;
+		while (elf.get(end) != 0)
+		{
+			end++;
+		}
+		return new String(elf.array(), namesOffset + nameIndex, end - namesOffset - nameIndex, StandardCharsets.US_ASCII);
+	}
+
+	private static List<String> sorted(String[] names)
+	{
+		final List<String> list = Arrays.asList(names);
+		Collections.sort(list);
+		return list;
+	}
+
+	private static String hex(byte[] bytes)
+	{
+		final StringBuilder sb = new StringBuilder();
+		for (byte b : bytes)
+		{
+			sb.append(String.format("%02x", b & 0xff));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * A 64 bit shared library with one loaded segment holding .text, followed by .comment, .symtab, .strtab and the
+	 * section names.
+	 */
+	private static byte[] sharedLibrary()
+	{
+		final byte[] names = NAMES.getBytes(StandardCharsets.US_ASCII);
+		final int namesOffset = 0x130;
+		final int shoff = (namesOffset + names.length + 7) / 8 * 8;
+		final ByteBuffer elf = ByteBuffer.allocate(shoff + 6 * 64).order(ByteOrder.LITTLE_ENDIAN);
+		elf.put(new byte[] { 0x7f, 'E', 'L', 'F', 2, 1, 1 });
+		elf.putShort(16, (short) 3);
+		elf.putShort(18, (short) 62);
+		elf.putInt(20, 1);
+		elf.putLong(32, 64);
+		elf.putLong(40, shoff);
+		elf.putShort(52, (short) 64);
+		elf.putShort(54, (short) 56);
+		elf.putShort(56, (short) 1);
+		elf.putShort(58, (short) 64);
+		elf.putShort(60, (short) 6);
+		elf.putShort(62, (short) 5);
+		// PT_LOAD of the first SEGMENT_END bytes
+		elf.putInt(64, 1);
+		elf.putInt(68, 5);
+		elf.putLong(64 + 32, SEGMENT_END);
+		elf.putLong(64 + 40, SEGMENT_END);
+		for (int i = 0x78; i < SEGMENT_END; i++)
+		{
+			elf.put(i, (byte) i);
+		}
+		for (int i = SEGMENT_END; i < namesOffset; i++)
+		{
+			elf.put(i, (byte) 0x5a);
+		}
+		elf.position(namesOffset);
+		elf.put(names);
+		section(elf, shoff, 1, NAMES.indexOf(".text"), 1, 0x6, 0x78, SEGMENT_END - 0x78, 0);
+		section(elf, shoff, 2, NAMES.indexOf(".comment"), 1, 0x30, 0x100, 16, 0);
+		section(elf, shoff, 3, NAMES.indexOf(".symtab"), 2, 0, 0x110, 24, 4);
+		section(elf, shoff, 4, NAMES.indexOf(".strtab"), 3, 0, 0x128, 8, 0);
+		section(elf, shoff, 5, NAMES.indexOf(".shstrtab"), 3, 0, namesOffset, names.length, 0);
+		return elf.array();
+	}
+
+	private static void section(ByteBuffer elf, int shoff, int index, int name, int type, long flags, long offset, long size, int link)
+	{
+		final int base = shoff + index * 64;
+		elf.putInt(base, name);
+		elf.putInt(base + 4, type);
+		elf.putLong(base + 8, flags);
+		elf.putLong(base + 16, (flags & 0x2) != 0 ? offset : 0);
+		elf.putLong(base + 24, offset);
+		elf.putLong(base + 32, size);
+		elf.putInt(base + 40, link);
+	}
+}
@@ -0,0 +1,274 @@
+package com.googlecode.mavennatives.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JarUnpackerTest
+{
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private final JarUnpacker jarUnpacker = new JarUnpacker();
+	private final byte[] big = new byte[3 * UnpackOptions.DEFAULT_BUFFER_SIZE + 17];
+	private final byte[] small = "small native".getBytes();
+	private File jar;
+
+	@Before
+	public void setUp() throws IOException
+	{
+		new Random(42).nextBytes(big);
+		jar = temporaryFolder.newFile("natives-linux.jar");
+		try (JarOutputStream jos = new JarOutputStream(new FileOutputStream(jar)))
+		{
+			jos.putNextEntry(new JarEntry("META-INF/MANIFEST.MF"));
+			jos.write("Manifest-Version: 1.0\n".getBytes());
+			jos.putNextEntry(new JarEntry("lib/"));
+			jos.putNextEntry(new JarEntry("lib/libbig.so"));
+			jos.write(big);
+			jos.putNextEntry(stored("libsmall.so", small));
+			jos.write(small);
+		}
+	}
+
+	@Test
+	public void bothCopyStrategiesUnpackTheSameContent() throws IOException
+	{
+		for (UnpackOptions.CopyStrategy copyStrategy : UnpackOptions.CopyStrategy.values())
+		{
+			final File targetDir = temporaryFolder.newFolder(copyStrategy.name());
+			final UnpackResult result = jarUnpacker.copyJarContent(jar, targetDir,
+					new UnpackOptions().setCopyStrategy(copyStrategy).setBufferSize(4096));
+
+			assertEquals(Arrays.asList("lib/libbig.so", "libsmall.so"), result.getFiles());
+			assertEquals(big.length + small.length, result.getBytesWritten());
+			assertArrayEquals(big, Files.readAllBytes(new File(targetDir, "lib/libbig.so").toPath()));
+			assertArrayEquals(small, Files.readAllBytes(new File(targetDir, "libsmall.so").toPath()));
+			assertFalse(new File(targetDir, "META-INF/MANIFEST.MF").exists());
+		}
+	}
+
+	@Test
+	public void unpackingTwiceOverwritesTheExistingFiles() throws IOException
+	{
+		final File targetDir = temporaryFolder.newFolder("natives");
+		jarUnpacker.copyJarContent(jar, targetDir, new UnpackOptions());
+		Files.write(new File(targetDir, "libsmall.so").toPath(), "longer than the original content".getBytes());
+
+		jarUnpacker.copyJarContent(jar, targetDir, new UnpackOptions());
+
+		assertArrayEquals(small, Files.readAllBytes(new File(targetDir, "libsmall.so").toPath()));
+	}
+
+	@Test
+	public void identicalFilesAreNotRewritten() throws IOException
+	{
+		final File targetDir = temporaryFolder.newFolder("natives");
+		final UnpackResult first = jarUnpacker.copyJarContent(jar, targetDir, new UnpackOptions());
+		assertEquals(2, first.getEntriesWritten());
+		assertEquals(0, first.getEntriesSkipped());
+
+		final File bigFile = new File(targetDir, "lib/libbig.so");
+		final File smallFile = new File(targetDir, "libsmall.so");
+		assertTrue(bigFile.setLastModified(1000000L));
+		// same size, different content
+		Files.write(smallFile.toPath(), "SMALL NATIVE".getBytes());
+
+		final UnpackResult second = jarUnpacker.copyJarContent(jar, targetDir, new UnpackOptions());
+
+		assertEquals(1, second.getEntriesWritten());
+		assertEquals(1, second.getEntriesSkipped());
+		assertEquals(Arrays.asList("lib/libbig.so", "libsmall.so"), second.getFiles());
+		assertEquals(1000000L, bigFile.lastModified());
+		assertArrayEquals(small, Files.readAllBytes(smallFile.toPath()));
+	}
+
+	@Test
+	public void identicalFilesAreRewrittenWhenNotSkipped() throws IOException
+	{
+		final File targetDir = temporaryFolder.newFolder("natives");
+		jarUnpacker.copyJarContent(jar, targetDir, new UnpackOptions());
+
+		final UnpackResult second = jarUnpacker.copyJarContent(jar, targetDir, new UnpackOptions().setSkipIdentical(false));
+
+		assertEquals(2, second.getEntriesWritten());
+		assertEquals(0, second.getEntriesSkipped());
+	}
+
+	@Test
+	public void atomicWritesReplaceFilesInsteadOfRewritingThem() throws IOException
+	{
+		final File targetDir = temporaryFolder.newFolder("natives");
+		final File smallFile = new File(targetDir, "libsmall.so");
+		Files.write(smallFile.toPath(), "outdated".getBytes());
+		final File link = new File(temporaryFolder.getRoot(), "link.so");
+		Files.createLink(link.toPath(), smallFile.toPath());
+
+		jarUnpacker.copyJarContent(jar, targetDir, new UnpackOptions().setAtomicWrites(true));
+
+		assertArrayEquals(small, Files.readAllBytes(smallFile.toPath()));
+		assertArrayEquals("outdated".getBytes(), Files.readAllBytes(link.toPath()));
+		assertEquals(Arrays.asList("lib", "libsmall.so"), sortedNames(targetDir));
+	}
+
+	@Test
+	public void digestsAreComputedWhileUnpackingAndWhileCheckingIdenticalFiles() throws Exception
+	{
+		for (UnpackOptions.CopyStrategy copyStrategy : UnpackOptions.CopyStrategy.values())
+		{
+			final File targetDir = temporaryFolder.newFolder(copyStrategy.name());
+			final UnpackOptions options = new UnpackOptions().setCopyStrategy(copyStrategy).setComputeDigests(true);
+
+			final UnpackResult written = jarUnpacker.copyJarContent(jar, targetDir, options);
+			final UnpackResult skipped = jarUnpacker.copyJarContent(jar, targetDir, options);
+
+			assertEquals(2, written.getEntriesWritten());
+			assertEquals(2, skipped.getEntriesSkipped());
+			for (UnpackResult result : Arrays.asList(written, skipped))
+			{
+				assertEquals(Arrays.asList("lib/libbig.so", "libsmall.so"), Arrays.asList(result.getDigests().keySet().toArray()));
+				assertEquals(sha256(big), result.getDigests().get("lib/libbig.so"));
+				assertEquals(sha256(small), result.getDigests().get("libsmall.so"));
+			}
+		}
+		assertTrue(jarUnpacker.copyJarContent(jar, temporaryFolder.newFolder("plain"), new UnpackOptions()).getDigests().isEmpty());
+	}
+
+	@Test
+	public void budgetedUnpacksWriteTheSmallEntriesFirst() throws IOException
+	{
+		final File targetDir = temporaryFolder.newFolder("natives");
+		// the big entry exceeds the whole budget, it holds all of it while being written
+		final UnpackOptions options = new UnpackOptions().setBudget(new UnpackBudget(1024, 1, 1024));
+
+		final UnpackResult result = jarUnpacker.copyJarContent(jar, targetDir, options);
+
+		assertEquals(Arrays.asList("libsmall.so", "lib/libbig.so"), result.getFiles());
+		assertArrayEquals(big, Files.readAllBytes(new File(targetDir, "lib/libbig.so").toPath()));
+		assertArrayEquals(small, Files.readAllBytes(new File(targetDir, "libsmall.so").toPath()));
+	}
+
+	@Test
+	public void messagesGoToTheLogOfTheOptions() throws IOException
+	{
+		final List<String> messages = new ArrayList<>();
+		final UnpackLog log = new UnpackLog()
+		{
+			@Override
+			public boolean isDebugEnabled()
+			{
+				return true;
+			}
+
+			@Override
+			public void debug(String message)
+			{
+				messages.add(message);
+			}
+
+			@Override
+			public void info(String message)
+			{
+				messages.add(message);
+			}
+
+			@Override
+			public void warn(String message)
+			{
+				messages.add(message);
+			}
+
+			@Override
+			public void error(String message)
+			{
+				messages.add(message);
+			}
+		};
+
+		jarUnpacker.copyJarContent(jar, temporaryFolder.newFolder("natives"), new UnpackOptions().setLog(log));
+
+		assertEquals("Copying natives from natives-linux.jar", messages.get(0));
+		assertTrue(messages.contains("Copying native - libsmall.so (natives-linux.jar)"));
+		assertEquals("Copied 2 natives from natives-linux.jar, 0 were already up to date", messages.get(messages.size() - 1));
+	}
+
+	@Test
+	public void listEntriesOnlyListsTheFilesToUnpack() throws IOException
+	{
+		assertEquals(Arrays.asList("lib/libbig.so", "libsmall.so"), jarUnpacker.listEntries(jar, new UnpackOptions()));
+	}
+
+	@Test
+	public void filteredEntriesAreNeitherUnpackedNorListed() throws IOException
+	{
+		final File targetDir = temporaryFolder.newFolder("natives");
+		final UnpackOptions options = new UnpackOptions().setEntryFilter(
+				EntryFilter.of(Arrays.asList("**/*.so"), Arrays.asList("lib/**")));
+
+		final UnpackResult result = jarUnpacker.copyJarContent(jar, targetDir, options);
+
+		assertEquals(Arrays.asList("libsmall.so"), result.getFiles());
+		assertEquals(Arrays.asList("libsmall.so"), sortedNames(targetDir));
+		assertEquals(Arrays.asList("libsmall.so"), jarUnpacker.listEntries(jar, options));
+	}
+
+	@Test
+	public void entryFiltersCombineTheirRules()
+	{
+		final EntryFilter filter = EntryFilter.of(Arrays.asList("**/*.so", "**/*.dll"), null)
+				.and(null, Arrays.asList("**/*debug*"));
+
+		assertTrue(filter.accepts("linux/libfoo.so"));
+		assertTrue(filter.accepts("foo.dll"));
+		assertFalse(filter.accepts("foo.pdb"));
+		assertFalse(filter.accepts("linux/libfoo-debug.so"));
+		assertTrue(EntryFilter.ALL.accepts("anything"));
+		assertEquals(EntryFilter.ALL, EntryFilter.of(null, Collections.<String>emptyList()));
+	}
+
+	private static List<String> sortedNames(File dir)
+	{
+		final List<String> names = Arrays.asList(dir.list());
+		Collections.sort(names);
+		return names;
+	}
+
+	private static String sha256(byte[] content) throws NoSuchAlgorithmException
+	{
+		return ArtifactFingerprint.toHex(MessageDigest.getInstance("SHA-256").digest(content));
+	}
+
+	private static JarEntry stored(String name, byte[] content)
+	{
+		final JarEntry entry = new JarEntry(name);
+		final CRC32 crc = new CRC32();
+		crc.update(content);
+		entry.setMethod(ZipEntry.STORED);
+		entry.setSize(content.length);
+		entry.setCompressedSize(content.length);
+		entry.setCrc(crc.getValue());
+		return entry;
+	}
+}
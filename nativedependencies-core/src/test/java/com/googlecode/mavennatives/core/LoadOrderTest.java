@@ -0,0 +1,63 @@
+package com.googlecode.mavennatives.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class LoadOrderTest
+{
+	@Test
+	public void dependenciesComeFirst()
+	{
+		final LoadOrder order = LoadOrder.of(Arrays.asList(
+				elf("libavcodec.so", "libavcodec.so.58", "libavutil.so.56", "libswresample.so.3", "libc.so.6"),
+				elf("libswresample.so", "libswresample.so.3", "libavutil.so.56"),
+				elf("libavutil.so", "libavutil.so.56", "libm.so.6"),
+				elf("libjniavcodec.so", "libjniavcodec.so", "libavcodec.so.58")));
+
+		assertEquals(Arrays.asList("libavutil.so", "libswresample.so", "libavcodec.so", "libjniavcodec.so"), paths(order.getLibraries()));
+		assertTrue(order.getCyclic().isEmpty());
+	}
+
+	@Test
+	public void dllImportsIgnoreCase()
+	{
+		final LoadOrder order = LoadOrder.of(Arrays.asList(
+				new NativeLibrary("avcodec-58.dll", NativeLibrary.Format.PE, "avcodec-58.dll", Arrays.asList("AVUTIL-56.DLL")),
+				new NativeLibrary("avutil-56.dll", NativeLibrary.Format.PE, "avutil-56.dll", new ArrayList<String>())));
+
+		assertEquals(Arrays.asList("avutil-56.dll", "avcodec-58.dll"), paths(order.getLibraries()));
+	}
+
+	@Test
+	public void cyclesAreAppendedInPathOrder()
+	{
+		final LoadOrder order = LoadOrder.of(Arrays.asList(
+				elf("libb.so", "libb.so", "liba.so"),
+				elf("liba.so", "liba.so", "libb.so"),
+				elf("libc.so", "libc.so")));
+
+		assertEquals(Arrays.asList("libc.so", "liba.so", "libb.so"), paths(order.getLibraries()));
+		assertEquals(Arrays.asList("liba.so", "libb.so"), paths(order.getCyclic()));
+	}
+
+	private static NativeLibrary elf(String path, String soname, String... needed)
+	{
+		return new NativeLibrary(path, NativeLibrary.Format.ELF, soname, Arrays.asList(needed));
+	}
+
+	private static List<String> paths(List<NativeLibrary> libraries)
+	{
+		final List<String> paths = new ArrayList<>();
+		for (NativeLibrary library : libraries)
+		{
+			paths.add(library.getPath());
+		}
+		return paths;
+	}
+}
@@ -0,0 +1,126 @@
+package com.googlecode.mavennatives.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class NativesArchiveTest
+{
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void filesAreIndexedAndAlignedAndTheStateIsLeftOut() throws Exception
+	{
+		final File dir = temporaryFolder.newFolder("natives");
+		new File(dir, "linux").mkdirs();
+		final byte[] large = new byte[5000];
+		Arrays.fill(large, (byte) 7);
+		Files.write(new File(dir, "linux/liba.so").toPath(), large);
+		Files.write(new File(dir, "b.dll").toPath(), "bb".getBytes());
+		Files.write(new File(dir, NativesState.FILE_NAME).toPath(), "state".getBytes());
+		final File archive = new File(temporaryFolder.getRoot(), "natives.natives");
+
+		final long size = NativesArchive.write(dir, archive, 4096);
+
+		final byte[] bytes = Files.readAllBytes(archive.toPath());
+		assertEquals(bytes.length, size);
+		assertEquals(4 * 4096, size);
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes)))
+		{
+			final byte[] magic = new byte[8];
+			in.readFully(magic);
+			assertArrayEquals(NativesArchive.MAGIC, magic);
+			assertEquals(NativesArchive.VERSION, in.readInt());
+			assertEquals(4096, in.readInt());
+			assertEquals(2, in.readInt());
+			in.readInt();
+			assertEntry(in, bytes, "b.dll", 4096, "bb".getBytes());
+			assertEntry(in, bytes, "linux/liba.so", 2 * 4096, large);
+		}
+	}
+
+	@Test
+	public void theIndexLengthCountsPathsAsWrittenByWriteUTF() throws Exception
+	{
+		final File dir = temporaryFolder.newFolder("natives");
+		// a supplementary character takes 4 bytes in UTF-8 but 6 in modified UTF-8
+		final String name = "lib\ud83d\ude00.so";
+		try
+		{
+			Files.write(new File(dir, name).toPath(), "a".getBytes());
+		}
+		catch (InvalidPathException e)
+		{
+			Assume.assumeNoException("file names are not encoded in UTF-8", e);
+		}
+		final File archive = new File(temporaryFolder.getRoot(), "natives.natives");
+
+		NativesArchive.write(dir, archive, 512);
+
+		final byte[] bytes = Files.readAllBytes(archive.toPath());
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes)))
+		{
+			in.skipBytes(20);
+			final int indexLength = in.readInt();
+			assertEquals(2 + 3 + 6 + 3 + 8 + 8 + 4 + NativesArchive.DIGEST_SIZE, indexLength);
+			assertEntry(in, bytes, name, 512, "a".getBytes());
+		}
+		assertEquals(2 + 2 + 6, NativesArchive.utfLength("\u0000\ud83d\ude00"));
+	}
+
+	@Test
+	public void archivesAreReproducible() throws IOException
+	{
+		final File dir = temporaryFolder.newFolder("natives");
+		Files.write(new File(dir, "liba.so").toPath(), "a".getBytes());
+		final File first = new File(temporaryFolder.getRoot(), "first.natives");
+		final File second = new File(temporaryFolder.getRoot(), "second.natives");
+
+		NativesArchive.write(dir, first, 512);
+		new File(dir, "liba.so").setLastModified(1000000L);
+		NativesArchive.write(dir, second, 512);
+
+		assertArrayEquals(Files.readAllBytes(first.toPath()), Files.readAllBytes(second.toPath()));
+	}
+
+	@Test
+	public void alignmentsArePowersOfTwo() throws IOException
+	{
+		try
+		{
+			NativesArchive.write(temporaryFolder.newFolder("natives"), new File(temporaryFolder.getRoot(), "natives.natives"), 3000);
+			fail();
+		}
+		catch (IOException e)
+		{
+			assertEquals("The archive alignment must be a power of two: 3000", e.getMessage());
+		}
+	}
+
+	private static void assertEntry(DataInputStream in, byte[] archive, String path, long offset, byte[] content) throws Exception
+	{
+		assertEquals(path, in.readUTF());
+		assertEquals(offset, in.readLong());
+		assertEquals(content.length, in.readLong());
+		in.readInt();
+		final byte[] digest = new byte[NativesArchive.DIGEST_SIZE];
+		in.readFully(digest);
+		assertArrayEquals(MessageDigest.getInstance("SHA-256").digest(content), digest);
+		assertArrayEquals(content, Arrays.copyOfRange(archive, (int) offset, (int) offset + content.length));
+	}
+}
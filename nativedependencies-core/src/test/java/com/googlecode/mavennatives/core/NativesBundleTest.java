@@ -0,0 +1,54 @@
+package com.googlecode.mavennatives.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.tukaani.xz.XZInputStream;
+
+public class NativesBundleTest
+{
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void bundlesAreReproducibleAndLeaveTheStateOut() throws IOException
+	{
+		final File dir = temporaryFolder.newFolder("natives");
+		new File(dir, "linux").mkdirs();
+		Files.write(new File(dir, "linux/liba.so").toPath(), "a".getBytes());
+		Files.write(new File(dir, "b.dll").toPath(), "bb".getBytes());
+		Files.write(new File(dir, NativesState.FILE_NAME).toPath(), "state".getBytes());
+		final File first = new File(temporaryFolder.getRoot(), "first.tar.xz");
+		final File second = new File(temporaryFolder.getRoot(), "second.tar.xz");
+
+		final long size = NativesBundle.write(dir, first, 6);
+		assertEquals(first.length(), size);
+		new File(dir, "b.dll").setLastModified(1000000L);
+		NativesBundle.write(dir, second, 6);
+
+		assertArrayEquals(Files.readAllBytes(first.toPath()), Files.readAllBytes(second.toPath()));
+		try (TarArchiveInputStream tar = new TarArchiveInputStream(new XZInputStream(new FileInputStream(first))))
+		{
+			TarArchiveEntry entry = tar.getNextTarEntry();
+			assertEquals("b.dll", entry.getName());
+			assertEquals(0, entry.getModTime().getTime());
+			assertArrayEquals("bb".getBytes(), IOUtils.toByteArray(tar));
+			entry = tar.getNextTarEntry();
+			assertEquals("linux/liba.so", entry.getName());
+			assertArrayEquals("a".getBytes(), IOUtils.toByteArray(tar));
+			assertNull(tar.getNextTarEntry());
+		}
+	}
+}
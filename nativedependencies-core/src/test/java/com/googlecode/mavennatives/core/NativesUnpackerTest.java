@@ -0,0 +1,178 @@
+package com.googlecode.mavennatives.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class NativesUnpackerTest
+{
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void onlyTheSelectedPlatformsAreUnpackedIntoTheirOwnDirs() throws IOException
+	{
+		final File linux = jar("lwjgl-platform-2.9.1-natives-linux.jar", "liblwjgl.so");
+		final File windows = jar("lwjgl-platform-2.9.1-natives-windows.jar", "lwjgl.dll");
+		final File targetDir = new File(temporaryFolder.getRoot(), "natives");
+
+		NativesUnpacker.into(targetDir)
+				.jarFiles(Arrays.asList(linux, windows))
+				.platforms(Collections.singletonList("linux"))
+				.separateDirs(true)
+				.unpack();
+
+		assertArrayEquals("liblwjgl.so".getBytes(), Files.readAllBytes(new File(targetDir, "linux/liblwjgl.so").toPath()));
+		assertFalse(new File(targetDir, "windows").exists());
+	}
+
+	@Test
+	public void filesOfJarsNoLongerUnpackedArePruned() throws IOException
+	{
+		final File linux = jar("a-natives-linux.jar", "liba.so");
+		final File linux64 = jar("b-natives-linux64.jar", "libb.so");
+		final File targetDir = temporaryFolder.newFolder("natives");
+
+		NativesUnpacker.into(targetDir).jarFiles(Arrays.asList(linux, linux64)).unpack();
+		assertTrue(new File(targetDir, "libb.so").isFile());
+		NativesUnpacker.into(targetDir).jarFiles(Collections.singletonList(linux)).unpack();
+
+		assertTrue(new File(targetDir, "liba.so").isFile());
+		assertFalse(new File(targetDir, "libb.so").exists());
+	}
+
+	@Test
+	public void nativesProvidedBySeveralJarsAreTakenFromTheLastKey() throws IOException
+	{
+		final File b = jar("b-natives-linux.jar", "libx.so", "b".getBytes());
+		final File a = jar("a-natives-linux.jar", "libx.so", "a".getBytes());
+		final File targetDir = temporaryFolder.newFolder("natives");
+
+		NativesUnpacker.into(targetDir).jarFiles(Arrays.asList(b, a)).threads(1).unpack();
+
+		assertArrayEquals("b".getBytes(), Files.readAllBytes(new File(targetDir, "libx.so").toPath()));
+	}
+
+	@Test
+	public void upToDateJarsSharingNativesWithChangedOnesAreUnpackedAgain() throws IOException
+	{
+		final File a = jar("a-natives-linux.jar", "libx.so", "a".getBytes());
+		final File b = jar("b-natives-linux.jar", "libx.so", "b".getBytes());
+		final File targetDir = temporaryFolder.newFolder("natives");
+		NativesUnpacker.into(targetDir).jarFiles(Arrays.asList(a, b)).threads(1).unpack();
+
+		try (JarOutputStream jos = new JarOutputStream(new FileOutputStream(a)))
+		{
+			jos.putNextEntry(new JarEntry("libx.so"));
+			jos.write("a, changed".getBytes());
+		}
+		NativesUnpacker.into(targetDir).jarFiles(Arrays.asList(a, b)).threads(1).unpack();
+
+		assertArrayEquals("b".getBytes(), Files.readAllBytes(new File(targetDir, "libx.so").toPath()));
+	}
+
+	@Test
+	public void nativesDifferingFromTheLockFileFailTheUnpack() throws IOException
+	{
+		final File linux = jar("a-natives-linux.jar", "liba.so");
+		final File targetDir = temporaryFolder.newFolder("natives");
+		final File lockFile = new File(temporaryFolder.getRoot(), "natives.lock");
+		NativesUnpacker.into(targetDir).jarFiles(Collections.singletonList(linux)).lock(LockMode.WRITE, lockFile).unpack();
+
+		final File upgraded = jar("b-natives-linux.jar", "liba.so", "upgraded".getBytes());
+		try {
+			NativesUnpacker.into(targetDir).jarFiles(Collections.singletonList(upgraded)).lock(LockMode.VERIFY, lockFile).unpack();
+			fail("a native differing from the lock file must fail the unpack");
+		} catch (NativesLockException e) {
+			assertEquals(1, e.getDifferences().size());
+		}
+	}
+
+	@Test
+	public void nativesLeftByAnInterruptedSwapAreRestored() throws IOException
+	{
+		final File linux = jar("a-natives-linux.jar", "liba.so");
+		final File targetDir = new File(temporaryFolder.getRoot(), "natives");
+		NativesUnpacker.into(targetDir).jarFiles(Collections.singletonList(linux)).swapDirectory(true).unpack();
+		Files.write(new File(targetDir, "notes.txt").toPath(), "kept".getBytes());
+		// stopped between the two renames of the swap
+		final File previous = new File(temporaryFolder.getRoot(), "natives.previous");
+		Files.move(targetDir.toPath(), previous.toPath());
+		assertTrue(new File(temporaryFolder.getRoot(), "natives.staging").mkdir());
+
+		NativesUnpacker.into(targetDir).jarFiles(Collections.singletonList(linux)).swapDirectory(true).unpack();
+
+		assertTrue(new File(targetDir, "liba.so").isFile());
+		assertArrayEquals("kept".getBytes(), Files.readAllBytes(new File(targetDir, "notes.txt").toPath()));
+		assertFalse(previous.exists());
+		assertFalse(new File(temporaryFolder.getRoot(), "natives.staging").exists());
+	}
+
+	@Test
+	public void entriesOfJarsOfSeveralPlatformsAreRoutedToTheirPlatformDirs() throws IOException
+	{
+		final File all = temporaryFolder.newFile("jni-natives-all.jar");
+		try (JarOutputStream jos = new JarOutputStream(new FileOutputStream(all)))
+		{
+			for (String entry : Arrays.asList("linux/x86_64/libjni.so", "linux/libjni.so", "windows/jni.dll", "macos/libjni.dylib", "readme.txt"))
+			{
+				jos.putNextEntry(new JarEntry(entry));
+				jos.write(entry.getBytes());
+			}
+		}
+		final File windows = jar("other-natives-windows.jar", "other.dll");
+		final File targetDir = new File(temporaryFolder.getRoot(), "natives");
+		final Map<String, String> routes = new LinkedHashMap<>();
+		routes.put("linux/", "linux");
+		routes.put("linux/x86_64/", "linux64");
+		routes.put("windows/", "windows");
+		routes.put("macos/", "osx");
+
+		NativesUnpacker.into(targetDir)
+				.jarFiles(Arrays.asList(all, windows))
+				.platforms(Arrays.asList("linux", "linux64", "all"))
+				.separateDirs(true)
+				.platformRoutes(routes)
+				.unpack();
+
+		assertArrayEquals("linux/libjni.so".getBytes(), Files.readAllBytes(new File(targetDir, "linux/libjni.so").toPath()));
+		assertArrayEquals("linux/x86_64/libjni.so".getBytes(), Files.readAllBytes(new File(targetDir, "linux64/libjni.so").toPath()));
+		assertTrue(new File(targetDir, "all/readme.txt").isFile());
+		assertFalse(new File(targetDir, "windows").exists());
+		assertFalse(new File(targetDir, "osx").exists());
+		assertFalse(new File(targetDir, "linux/x86_64").exists());
+	}
+
+	private File jar(String name, String entry) throws IOException
+	{
+		return jar(name, entry, entry.getBytes());
+	}
+
+	private File jar(String name, String entry, byte[] content) throws IOException
+	{
+		final File jar = temporaryFolder.newFile(name);
+		try (JarOutputStream jos = new JarOutputStream(new FileOutputStream(jar)))
+		{
+			jos.putNextEntry(new JarEntry(entry));
+			jos.write(content);
+		}
+		return jar;
+	}
+}
@@ -0,0 +1,91 @@
+package com.googlecode.mavennatives.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class NativesWatcherTest
+{
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void changedJarsAreUnpackedAgain() throws Exception
+	{
+		final File jar = temporaryFolder.newFile("jni-natives-linux.jar");
+		final File other = temporaryFolder.newFile("other-natives-linux.jar");
+		writeJar(jar, "libjni.so", "first".getBytes());
+		writeJar(other, "libother.so", "other".getBytes());
+		final File targetDir = new File(temporaryFolder.getRoot(), "natives");
+		final File native1 = new File(targetDir, "libjni.so");
+		final NativesWatcher watcher = new NativesWatcher(NativesUnpacker.into(targetDir).jarFiles(Arrays.asList(jar, other)), 50, UnpackLog.SYSTEM);
+		final ExecutorService executor = Executors.newSingleThreadExecutor();
+		try
+		{
+			final Future<Void> watching = executor.submit(new Callable<Void>()
+			{
+				@Override
+				public Void call() throws Exception
+				{
+					watcher.run();
+					return null;
+				}
+			});
+			assertTrue(await(native1, "first".getBytes()));
+			final long otherModified = new File(targetDir, "libother.so").lastModified();
+
+			writeJar(jar, "libjni.so", "second".getBytes());
+
+			assertTrue(await(native1, "second".getBytes()));
+			// the unchanged jar is not unpacked again
+			assertEquals(otherModified, new File(targetDir, "libother.so").lastModified());
+			watcher.close();
+			watching.get(10, TimeUnit.SECONDS);
+		}
+		finally
+		{
+			watcher.close();
+			executor.shutdownNow();
+		}
+	}
+
+	private static boolean await(File file, byte[] content) throws InterruptedException, IOException
+	{
+		for (int i = 0; i < 200; i++)
+		{
+			if (file.isFile() && Arrays.equals(content, Files.readAllBytes(file.toPath())))
+			{
+				return true;
+			}
+			Thread.sleep(50);
+		}
+		assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+		return false;
+	}
+
+	private static void writeJar(File jar, String entry, byte[] content) throws IOException
+	{
+		try (JarOutputStream jos = new JarOutputStream(new FileOutputStream(jar)))
+		{
+			jos.putNextEntry(new JarEntry(entry));
+			jos.write(content);
+		}
+	}
+}
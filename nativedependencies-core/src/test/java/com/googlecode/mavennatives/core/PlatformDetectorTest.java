@@ -0,0 +1,42 @@
+package com.googlecode.mavennatives.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class PlatformDetectorTest
+{
+	@Test
+	public void hostsAreNormalized()
+	{
+		assertEquals("linux-x86_64", PlatformDetector.host("Linux", "amd64"));
+		assertEquals("windows-x86", PlatformDetector.host("Windows 10", "x86"));
+		assertEquals("osx-aarch64", PlatformDetector.host("Mac OS X", "aarch64"));
+		assertEquals("osx-x86_64", PlatformDetector.host("Mac OS X", "x86_64"));
+		assertEquals("linux-arm", PlatformDetector.host("Linux", "armv7l"));
+	}
+
+	@Test
+	public void defaultMappingsCoverTheUsualClassifiers()
+	{
+		final PlatformDetector detector = new PlatformDetector(null);
+
+		assertTrue(detector.platformsFor("linux-x86_64").containsAll(Arrays.asList("linux", "linux-x86_64", "linux-amd64")));
+		assertTrue(detector.platformsFor("windows-x86_64").contains("windows-amd64"));
+		assertTrue(detector.platformsFor("osx-aarch64").contains("macos-arm64"));
+		assertTrue(detector.platformsFor("unknown-arch").isEmpty());
+	}
+
+	@Test
+	public void customMappingsReplaceTheDefaultOnes()
+	{
+		final PlatformDetector detector = new PlatformDetector(Collections.singletonMap("linux-x86_64", "linux, ubuntu-x64 ,"));
+
+		assertEquals(Arrays.asList("linux", "ubuntu-x64"), detector.platformsFor("linux-x86_64"));
+		assertTrue(detector.platformsFor("windows-x86").contains("windows"));
+	}
+}
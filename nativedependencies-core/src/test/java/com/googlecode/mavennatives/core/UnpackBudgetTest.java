@@ -0,0 +1,120 @@
+package com.googlecode.mavennatives.core;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+public class UnpackBudgetTest
+{
+	@Test
+	public void entriesWaitingForTheBudgetAreServedInOrder() throws Exception
+	{
+		final UnpackBudget budget = new UnpackBudget(100, 1, 50);
+		final ExecutorService executor = Executors.newFixedThreadPool(2);
+		try
+		{
+			final UnpackBudget.Grant first = budget.acquire(60);
+			// fits in the 40 bytes left while nothing waits, no large write slot needed
+			final UnpackBudget.Grant small = budget.acquire(30);
+			final Future<UnpackBudget.Grant> second = executor.submit(acquire(budget, 60));
+			assertBlocked(second);
+
+			// would fit, but queues behind the large entry waiting
+			final Future<UnpackBudget.Grant> third = executor.submit(acquire(budget, 10));
+			assertBlocked(third);
+			first.close();
+			small.close();
+
+			second.get(10, TimeUnit.SECONDS).close();
+			third.get(10, TimeUnit.SECONDS).close();
+			// larger than the whole budget: holds all of it
+			budget.acquire(1000).close();
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	@Test(timeout = 30000)
+	public void concurrentSmallEntriesDoNotStarveEntriesLargerThanTheBudget() throws Exception
+	{
+		final UnpackBudget budget = new UnpackBudget(100, 1, 1000);
+		final AtomicBoolean stop = new AtomicBoolean();
+		final ExecutorService executor = Executors.newFixedThreadPool(5);
+		try
+		{
+			for (int i = 0; i < 4; i++)
+			{
+				executor.submit(new Callable<Void>()
+				{
+					@Override
+					public Void call() throws Exception
+					{
+						while (!stop.get())
+						{
+							try (UnpackBudget.Grant grant = budget.acquire(10))
+							{
+								Thread.sleep(1);
+							}
+						}
+						return null;
+					}
+				});
+			}
+			Thread.sleep(50);
+
+			// needs the whole budget, which the small entries nearly always hold some of
+			executor.submit(acquire(budget, 500)).get(5, TimeUnit.SECONDS).close();
+		}
+		finally
+		{
+			stop.set(true);
+			executor.shutdown();
+			assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+		}
+	}
+
+	@Test
+	public void sharedBudgetsAreOnePerSettings()
+	{
+		assertSame(UnpackBudget.shared(100, 2, 10), UnpackBudget.shared(100, 2, 10));
+		assertFalse(UnpackBudget.shared(100, 2, 10) == UnpackBudget.shared(100, 3, 10));
+	}
+
+	private static Callable<UnpackBudget.Grant> acquire(final UnpackBudget budget, final long size)
+	{
+		return new Callable<UnpackBudget.Grant>()
+		{
+			@Override
+			public UnpackBudget.Grant call() throws Exception
+			{
+				return budget.acquire(size);
+			}
+		};
+	}
+
+	private static void assertBlocked(Future<?> future) throws Exception
+	{
+		try
+		{
+			future.get(200, TimeUnit.MILLISECONDS);
+			fail("the grant must wait for the budget");
+		}
+		catch (TimeoutException e)
+		{
+			// waiting
+		}
+	}
+}
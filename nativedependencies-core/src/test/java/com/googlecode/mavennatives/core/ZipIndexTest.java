@@ -0,0 +1,111 @@
+package com.googlecode.mavennatives.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Enumeration;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ZipIndexTest
+{
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void entriesMatchTheOnesOfZipFile() throws IOException
+	{
+		final byte[] content = new byte[100000];
+		new Random(7).nextBytes(content);
+		final File zip = temporaryFolder.newFile("natives.jar");
+		try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zip)))
+		{
+			zos.setComment("a comment hiding the end of the central directory");
+			zos.putNextEntry(new ZipEntry("lib/"));
+			zos.putNextEntry(new ZipEntry("lib/deflated.so"));
+			zos.write(content);
+			zos.putNextEntry(stored("lib/stored.so", content));
+			zos.write(content);
+			zos.putNextEntry(new ZipEntry("lib/empty.so"));
+		}
+
+		try (ZipIndex index = ZipIndex.open(zip); ZipFile zipFile = new ZipFile(zip))
+		{
+			final Enumeration<? extends ZipEntry> expected = zipFile.entries();
+			for (ZipIndex.Entry entry : index.entries())
+			{
+				final ZipEntry zipEntry = expected.nextElement();
+				assertEquals(zipEntry.getName(), entry.getName());
+				assertEquals(zipEntry.isDirectory(), entry.isDirectory());
+				assertEquals(zipEntry.getCrc(), entry.getCrc());
+				assertEquals(zipEntry.getSize(), entry.getSize());
+				try (InputStream is = index.getInputStream(entry); InputStream zis = zipFile.getInputStream(zipEntry))
+				{
+					assertArrayEquals(IOUtils.toByteArray(zis), IOUtils.toByteArray(is));
+				}
+			}
+			assertFalse(expected.hasMoreElements());
+			assertNull(index.get("missing.so"));
+
+			final File transferred = temporaryFolder.newFile("stored.so");
+			index.transferTo(index.get("lib/stored.so"), transferred.toPath());
+			assertArrayEquals(content, Files.readAllBytes(transferred.toPath()));
+		}
+	}
+
+	@Test
+	public void zip64ArchivesAreIndexed() throws IOException
+	{
+		// more entries than the classic end of central directory can count
+		final int count = 0x10000 + 10;
+		final File zip = temporaryFolder.newFile("many.jar");
+		try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zip)))
+		{
+			for (int i = 0; i < count; i++)
+			{
+				zos.putNextEntry(new ZipEntry("lib" + i + ".so"));
+				zos.write(i);
+			}
+		}
+
+		try (ZipIndex index = ZipIndex.open(zip))
+		{
+			assertEquals(count, index.entries().size());
+			final ZipIndex.Entry last = index.get("lib" + (count - 1) + ".so");
+			assertTrue(last != null);
+			try (InputStream is = index.getInputStream(last))
+			{
+				assertEquals((count - 1) & 0xff, is.read());
+				assertEquals(-1, is.read());
+			}
+		}
+	}
+
+	private static ZipEntry stored(String name, byte[] content)
+	{
+		final ZipEntry entry = new ZipEntry(name);
+		final CRC32 crc = new CRC32();
+		crc.update(content);
+		entry.setMethod(ZipEntry.STORED);
+		entry.setSize(content.length);
+		entry.setCompressedSize(content.length);
+		entry.setCrc(crc.getValue());
+		return entry;
+	}
+}
@@ -0,0 +1,513 @@
+package com.googlecode.mavennatives.loader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.LinkOption;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.jar.JarEntry;
+import java.util.zip.CRC32;
+
+/**
+ * Loads native libraries packaged in jars on the classpath.
+ * <p>
+ * A library is looked up as {@code natives-<platform>/<mapped name>} for every platform the running JVM can load (see
+ * nativedependencies-maven-plugin's autoDetectPlatform), then as {@code <mapped name>} at the root of the classpath,
+ * where natives jars put them. The mapped name is the one of {@link System#mapLibraryName}, e.g. libfoo.so for foo.
+ * <p>
+ * Libraries inside jars are extracted the first time they are requested into
+ * {@code <cache dir>/<cache version>/<key>/<mapped name>}, keyed by the CRC-32 and size the jar records for the entry,
+ * so nothing is inflated to find the key. Extracted files are checked against the CRC-32 and get a
+ * {@code <mapped name>.sha256} file next to them holding their SHA-256. Later JVM starts find both files, compare the
+ * size and load the library without reading or writing it again. Files are written to a temporary sibling and moved in
+ * place, so JVMs starting concurrently never load a partial library. Libraries found as plain files (e.g. when running
+ * from an IDE) are loaded where they are.
+ * <p>
+ * With an archive written by the package-natives goal (see {@link NativesArchive}), libraries are looked up in it
+ * first and copied out of it into the same layout, keyed by the SHA-256 the index of the archive tells, so no jar is
+ * opened and nothing is inflated.
+ * <p>
+ * Whatever is in the cache dir gets loaded into the JVM, so the cache dir must be private: it defaults to
+ * {@code ~/.cache/mavennatives}, is created readable by its owner only, and is refused when it belongs to another user
+ * or others can write to it. Cached files missing their .sha256 file or whose size changed are extracted again.
+ * <p>
+ * Libraries depending on each other must be loaded in dependency order, {@link #preload()} does so for the libraries
+ * nativedependencies-maven-plugin unpacked.
+ */
+public final class NativeLoader {
+
+    /**
+     * System property overriding the cache dir, which must be a dir of the current user that no one else can write to.
+     */
+    public static final String CACHE_DIR_PROPERTY = "mavennatives.cache.dir";
+
+    /**
+     * System property pointing to the load order file of nativedependencies-maven-plugin, set by its jvmArgFile.
+     */
+    public static final String NATIVES_PROPERTIES_PROPERTY = "mavennatives.natives.properties";
+
+    /**
+     * System property pointing to a natives archive the default loader looks libraries up in first.
+     */
+    public static final String ARCHIVE_PROPERTY = "mavennatives.archive";
+
+    /**
+     * Changes whenever the layout of the cache dir does, so older loaders keep using their own files.
+     */
+    static final String CACHE_VERSION = "v2";
+
+    private static final Set<PosixFilePermission> OWNER_ONLY = PosixFilePermissions.fromString("rwx------");
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+
+    private static final NativeLoader DEFAULT = new NativeLoader(NativeLoader.class.getClassLoader(), defaultCacheDir(),
+            Platforms.current(), defaultArchive());
+
+    private final ClassLoader classLoader;
+    private final File cacheDir;
+    private final List<String> platforms;
+    private final File archiveFile;
+    private NativesArchive archive;
+    private volatile boolean cacheDirChecked;
+    private final ConcurrentMap<String, File> loaded = new ConcurrentHashMap<>();
+
+    /**
+     * @param platforms the classifier suffixes to look libraries up with, e.g. linux64
+     */
+    public NativeLoader(ClassLoader classLoader, File cacheDir, List<String> platforms) {
+        this(classLoader, cacheDir, platforms, null);
+    }
+
+    /**
+     * @param archive a natives archive to look libraries up in before the classpath, opened on the first load; null for
+     *                none
+     */
+    public NativeLoader(ClassLoader classLoader, File cacheDir, List<String> platforms, File archive) {
+        this.classLoader = classLoader;
+        this.cacheDir = cacheDir;
+        this.platforms = Collections.unmodifiableList(new ArrayList<>(platforms));
+        this.archiveFile = archive;
+    }
+
+    /**
+     * Loads a library with the default loader, which uses the class loader of this class and the current platform.
+     *
+     * @param name the library name as passed to {@link System#loadLibrary}
+     * @throws UnsatisfiedLinkError when the library is not on the classpath or can not be loaded
+     */
+    public static void loadLibrary(String name) {
+        DEFAULT.load(name);
+    }
+
+    /**
+     * Loads, dependencies first, the libraries listed by the load order file {@value #NATIVES_PROPERTIES_PROPERTY}
+     * points to, so no library load fails for want of another. Does nothing when the property is not set.
+     *
+     * @return the loaded libraries
+     * @throws UnsatisfiedLinkError when the file can not be read or a library can not be loaded
+     */
+    public static List<File> preload() {
+        final String file = System.getProperty(NATIVES_PROPERTIES_PROPERTY);
+        if (file == null || file.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return DEFAULT.preload(new File(file));
+    }
+
+    /**
+     * Loads the libraries a load order file lists for the platforms of this loader: those of the most specific
+     * preload.&lt;platform&gt; entry, or of the preload entry, leaving out libraries of other operating systems.
+     *
+     * @return the loaded libraries
+     * @throws UnsatisfiedLinkError when the file can not be read or a library can not be loaded
+     */
+    public List<File> preload(File loadOrderFile) {
+        final Properties properties = new Properties();
+        try (InputStream is = Files.newInputStream(loadOrderFile.toPath())) {
+            properties.load(is);
+        } catch (IOException e) {
+            final UnsatisfiedLinkError error = new UnsatisfiedLinkError("Unable to read " + loadOrderFile + ": " + e);
+            error.initCause(e);
+            throw error;
+        }
+        final List<File> libraries = preloadOrder(properties);
+        for (File library : libraries) {
+            System.load(library.getAbsolutePath());
+        }
+        return libraries;
+    }
+
+    List<File> preloadOrder(Properties properties) {
+        String preload = null;
+        for (int i = platforms.size() - 1; i >= 0 && preload == null; i--) {
+            preload = properties.getProperty("preload." + platforms.get(i));
+        }
+        if (preload == null) {
+            preload = properties.getProperty("preload", "");
+        }
+        final File nativesDir = new File(properties.getProperty("natives.dir", "."));
+        final String suffix = System.mapLibraryName("").substring(System.mapLibraryName("").lastIndexOf('.'));
+        final List<File> libraries = new ArrayList<>();
+        for (String path : preload.split(",")) {
+            final String name = path.substring(path.lastIndexOf('/') + 1);
+            // versioned ELF libraries, e.g. libavutil.so.56
+            if (name.endsWith(suffix) || name.contains(suffix + ".")) {
+                libraries.add(new File(nativesDir, path));
+            }
+        }
+        return libraries;
+    }
+
+    /**
+     * Loads a library once, later calls for the same name return immediately.
+     *
+     * @param name the library name as passed to {@link System#loadLibrary}
+     * @throws UnsatisfiedLinkError when the library is not on the classpath or can not be loaded
+     */
+    public void load(String name) {
+        if (loaded.containsKey(name)) {
+            return;
+        }
+        synchronized (loaded) {
+            if (loaded.containsKey(name)) {
+                return;
+            }
+            final File file;
+            try {
+                file = extract(name);
+            } catch (IOException e) {
+                final UnsatisfiedLinkError error = new UnsatisfiedLinkError("Unable to extract native library " + name + ": " + e);
+                error.initCause(e);
+                throw error;
+            }
+            System.load(file.getAbsolutePath());
+            loaded.put(name, file);
+        }
+    }
+
+    /**
+     * @return the file of a library, extracted into the cache dir when it is packaged in a jar
+     * @throws UnsatisfiedLinkError when the library is not on the classpath
+     */
+    File extract(String name) throws IOException {
+        final String mappedName = System.mapLibraryName(name);
+        final NativesArchive.Entry entry = archiveFile != null ? archive().find(mappedName, platforms) : null;
+        if (entry != null) {
+            final Path target = cacheRoot().resolve(entry.getSha256()).resolve(mappedName);
+            if (!isCached(target, entry.getSize(), entry.getSha256())) {
+                Files.createDirectories(target.getParent());
+                final Path temp = createSiblingTemp(target);
+                try {
+                    try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                        archive.copy(entry, channel);
+                    }
+                    if (!entry.getSha256().equals(sha256(temp))) {
+                        throw new IOException(String.format("%s of %s does not match its SHA-256", entry, archiveFile));
+                    }
+                    moveInPlace(temp, target);
+                } finally {
+                    Files.deleteIfExists(temp);
+                }
+                writeDigest(target, entry.getSha256());
+            }
+            return target.toFile();
+        }
+        final URL url = find(mappedName);
+        if (url == null) {
+            throw new UnsatisfiedLinkError(String.format("No native library %s for platforms %s on the classpath", mappedName, platforms));
+        }
+        if ("file".equals(url.getProtocol())) {
+            try {
+                return new File(url.toURI());
+            } catch (URISyntaxException e) {
+                throw new IOException("Invalid library URL " + url, e);
+            }
+        }
+        final URLConnection connection = url.openConnection();
+        final JarEntry jarEntry = connection instanceof JarURLConnection ? ((JarURLConnection) connection).getJarEntry() : null;
+        final String key;
+        final long size;
+        final long crc;
+        if (jarEntry != null && jarEntry.getCrc() != -1 && jarEntry.getSize() >= 0) {
+            key = String.format("%08x-%x", jarEntry.getCrc(), jarEntry.getSize());
+            size = jarEntry.getSize();
+            crc = jarEntry.getCrc();
+        } else {
+            // no metadata to key on, e.g. a resource of a custom class loader
+            try (InputStream is = connection.getInputStream()) {
+                key = digest(is, null, null);
+            }
+            size = -1;
+            crc = -1;
+        }
+        final Path target = cacheRoot().resolve(key).resolve(mappedName);
+        if (!isCached(target, size, null)) {
+            Files.createDirectories(target.getParent());
+            try (InputStream is = url.openStream()) {
+                write(is, target, crc, crc == -1 ? key : null);
+            }
+        }
+        return target.toFile();
+    }
+
+    /**
+     * @return the versioned dir of the cache dir, once the cache dir is known to be private
+     */
+    private Path cacheRoot() throws IOException {
+        if (!cacheDirChecked) {
+            synchronized (this) {
+                if (!cacheDirChecked) {
+                    checkPrivate(cacheDir.toPath());
+                    cacheDirChecked = true;
+                }
+            }
+        }
+        return cacheDir.toPath().resolve(CACHE_VERSION);
+    }
+
+    /**
+     * Creates the dir readable by its owner only when it does not exist, then checks that it is a dir of the current
+     * user that no one else can write to, as far as the file system tells owners and permissions.
+     *
+     * @throws IOException when the dir belongs to another user, is writable by others or is no dir
+     */
+    static void checkPrivate(Path dir) throws IOException {
+        final boolean posix = dir.getFileSystem().supportedFileAttributeViews().contains("posix");
+        boolean created = false;
+        if (!Files.exists(dir, LinkOption.NOFOLLOW_LINKS)) {
+            if (dir.getParent() != null) {
+                Files.createDirectories(dir.getParent());
+            }
+            try {
+                if (posix) {
+                    Files.createDirectory(dir, PosixFilePermissions.asFileAttribute(OWNER_ONLY));
+                } else {
+                    Files.createDirectory(dir);
+                }
+                created = true;
+            } catch (FileAlreadyExistsException e) {
+                // created concurrently, checked below
+            }
+        }
+        if (!posix) {
+            if (!Files.isDirectory(dir, LinkOption.NOFOLLOW_LINKS)) {
+                throw new IOException("Cache dir " + dir + " is no directory");
+            }
+            return;
+        }
+        final PosixFileAttributes attributes = Files.readAttributes(dir, PosixFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        if (!attributes.isDirectory()) {
+            throw new IOException("Cache dir " + dir + " is no directory");
+        }
+        if (!created) {
+            // user.name need not name a user, e.g. in containers running under an arbitrary UID
+            final UserPrincipal user = currentUser();
+            if (!attributes.owner().equals(user)) {
+                throw new IOException(String.format("Cache dir %s belongs to %s, not to %s", dir, attributes.owner().getName(), user.getName()));
+            }
+        }
+        if (attributes.permissions().contains(PosixFilePermission.GROUP_WRITE)
+                || attributes.permissions().contains(PosixFilePermission.OTHERS_WRITE)) {
+            throw new IOException(String.format("Cache dir %s is writable by others (%s)", dir,
+                    PosixFilePermissions.toString(attributes.permissions())));
+        }
+    }
+
+    /**
+     * @return the owner of a file the process creates
+     */
+    private static UserPrincipal currentUser() throws IOException {
+        final Path probe = Files.createTempFile("mavennatives", ".owner");
+        try {
+            return Files.getOwner(probe, LinkOption.NOFOLLOW_LINKS);
+        } finally {
+            Files.delete(probe);
+        }
+    }
+
+    /**
+     * Tells whether a library was fully extracted by an earlier load, without reading it.
+     *
+     * @param size   the size the library must have, -1 when unknown
+     * @param sha256 the SHA-256 its .sha256 file must hold, null for any
+     */
+    private static boolean isCached(Path file, long size, String sha256) throws IOException {
+        final Path digestFile = digestFile(file);
+        if (!Files.isRegularFile(digestFile, LinkOption.NOFOLLOW_LINKS) || !Files.isRegularFile(file, LinkOption.NOFOLLOW_LINKS)) {
+            return false;
+        }
+        if (size >= 0 && Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).size() != size) {
+            return false;
+        }
+        return sha256 == null || sha256.equals(new String(Files.readAllBytes(digestFile), StandardCharsets.US_ASCII).trim());
+    }
+
+    private static Path digestFile(Path file) {
+        return file.resolveSibling(file.getFileName() + ".sha256");
+    }
+
+    /**
+     * Writes the .sha256 file of an extracted library, which marks it as complete.
+     */
+    private static void writeDigest(Path file, String sha256) throws IOException {
+        final Path target = digestFile(file);
+        final Path temp = createSiblingTemp(target);
+        try {
+            Files.write(temp, (sha256 + "\n").getBytes(StandardCharsets.US_ASCII));
+            moveInPlace(temp, target);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private synchronized NativesArchive archive() throws IOException {
+        if (archive == null) {
+            archive = NativesArchive.open(archiveFile);
+        }
+        return archive;
+    }
+
+    private URL find(String mappedName) {
+        for (int i = platforms.size() - 1; i >= 0; i--) {
+            final URL url = classLoader.getResource("natives-" + platforms.get(i) + "/" + mappedName);
+            if (url != null) {
+                return url;
+            }
+        }
+        return classLoader.getResource(mappedName);
+    }
+
+    private static String sha256(Path file) throws IOException {
+        try (InputStream is = Files.newInputStream(file)) {
+            return digest(is, null, null);
+        }
+    }
+
+    /**
+     * Reads the stream to its end, writing what it reads to channel and updating crc unless null.
+     *
+     * @return the SHA-256 of the content, in hex
+     */
+    private static String digest(InputStream is, FileChannel channel, CRC32 crc) throws IOException {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported by this JVM", e);
+        }
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = fill(is, buffer)) > 0) {
+            digest.update(buffer, 0, read);
+            if (crc != null) {
+                crc.update(buffer, 0, read);
+            }
+            if (channel != null) {
+                final ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, read);
+                while (chunk.hasRemaining()) {
+                    channel.write(chunk);
+                }
+            }
+        }
+        final StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b & 0xff));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Writes through a temporary sibling moved over the target, so other JVMs never see a partial library, then writes
+     * its .sha256 file.
+     *
+     * @param crc    the CRC-32 the content must have, -1 to check sha256 instead
+     * @param sha256 the SHA-256 the content must have when crc is -1
+     * @throws IOException when the content written does not have the given CRC-32 or SHA-256
+     */
+    private static void write(InputStream is, Path target, long crc, String sha256) throws IOException {
+        final Path temp = createSiblingTemp(target);
+        final String written;
+        try {
+            final CRC32 writtenCrc = new CRC32();
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                written = digest(is, channel, writtenCrc);
+            }
+            if (crc != -1 ? writtenCrc.getValue() != crc : !sha256.equals(written)) {
+                throw new IOException(String.format("%s changed while being extracted", target.getFileName()));
+            }
+            moveInPlace(temp, target);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        writeDigest(target, written);
+    }
+
+    private static void moveInPlace(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static Path createSiblingTemp(Path target) throws IOException {
+        while (true) {
+            final Path temp = target.resolveSibling(
+                    "." + target.getFileName() + "." + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+            try {
+                return Files.createFile(temp);
+            } catch (FileAlreadyExistsException e) {
+                // try another name
+            }
+        }
+    }
+
+    private static int fill(InputStream is, byte[] buffer) throws IOException {
+        int total = 0;
+        int read;
+        while (total < buffer.length && (read = is.read(buffer, total, buffer.length - total)) != -1) {
+            total += read;
+        }
+        return total;
+    }
+
+    private static File defaultArchive() {
+        final String archive = System.getProperty(ARCHIVE_PROPERTY);
+        return archive != null && !archive.isEmpty() ? new File(archive) : null;
+    }
+
+    private static File defaultCacheDir() {
+        final String dir = System.getProperty(CACHE_DIR_PROPERTY);
+        if (dir != null && !dir.isEmpty()) {
+            return new File(dir);
+        }
+        return new File(new File(System.getProperty("user.home"), ".cache"), "mavennatives");
+    }
+}
@@ -0,0 +1,252 @@
+package com.googlecode.mavennatives.loader;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the natives archives written by the package-natives goal of nativedependencies-maven-plugin: one file holding
+ * the natives uncompressed, every one at an aligned offset, behind an index of their paths, sizes and SHA-256.
+ * <p>
+ * Opening an archive only reads its index. Libraries can then be mapped straight from the archive, copied out of it
+ * by the kernel, or all extracted with a single sequential read. Instances are thread safe.
+ */
+public final class NativesArchive implements Closeable {
+
+    private static final byte[] MAGIC = "MVNNATIV".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 24;
+
+    /**
+     * A file of the archive.
+     */
+    public static final class Entry {
+        private final String path;
+        private final long offset;
+        private final long size;
+        private final boolean executable;
+        private final String sha256;
+
+        Entry(String path, long offset, long size, boolean executable, String sha256) {
+            this.path = path;
+            this.offset = offset;
+            this.size = size;
+            this.executable = executable;
+            this.sha256 = sha256;
+        }
+
+        /**
+         * @return the path relative to the natives dir, '/' separated
+         */
+        public String getPath() {
+            return path;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public boolean isExecutable() {
+            return executable;
+        }
+
+        /**
+         * @return the SHA-256 of the content, in hex
+         */
+        public String getSha256() {
+            return sha256;
+        }
+
+        @Override
+        public String toString() {
+            return path;
+        }
+    }
+
+    private final File file;
+    private final FileChannel channel;
+    private final int alignment;
+    private final Map<String, Entry> entries;
+
+    private NativesArchive(File file, FileChannel channel, int alignment, Map<String, Entry> entries) {
+        this.file = file;
+        this.channel = channel;
+        this.alignment = alignment;
+        this.entries = entries;
+    }
+
+    /**
+     * @throws IOException when the file can not be read or is no natives archive
+     */
+    public static NativesArchive open(File file) throws IOException {
+        final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(channel, header, 0);
+            header.flip();
+            final byte[] magic = new byte[MAGIC.length];
+            if (header.limit() == HEADER_SIZE) {
+                header.get(magic);
+            }
+            if (!Arrays.equals(MAGIC, magic)) {
+                throw new IOException(file + " is no natives archive");
+            }
+            final int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException(String.format("%s has version %d, only version %d is supported", file, version, VERSION));
+            }
+            final int alignment = header.getInt();
+            final int count = header.getInt();
+            final ByteBuffer index = ByteBuffer.allocate(header.getInt());
+            readFully(channel, index, HEADER_SIZE);
+            final DataInputStream in = new DataInputStream(new ByteArrayInputStream(index.array()));
+            final Map<String, Entry> entries = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                final String path = in.readUTF();
+                final long offset = in.readLong();
+                final long size = in.readLong();
+                final boolean executable = (in.readInt() & 0100) != 0;
+                final byte[] digest = new byte[32];
+                in.readFully(digest);
+                if (offset + size > channel.size()) {
+                    throw new IOException(String.format("%s is truncated, %s ends at %d", file, path, offset + size));
+                }
+                entries.put(path, new Entry(path, offset, size, executable, hex(digest)));
+            }
+            return new NativesArchive(file, channel, alignment, Collections.unmodifiableMap(entries));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the alignment of the entries in the archive, in bytes
+     */
+    public int getAlignment() {
+        return alignment;
+    }
+
+    /**
+     * @return the entries, in path order
+     */
+    public List<Entry> getEntries() {
+        return new ArrayList<>(entries.values());
+    }
+
+    /**
+     * @return the entry with the given path, null when the archive has none
+     */
+    public Entry getEntry(String path) {
+        return entries.get(path);
+    }
+
+    /**
+     * Looks a library up as {@code <platform>/<mapped name>} for every platform, most specific last, then as
+     * {@code <mapped name>}, i.e. as unpacked with and without separateDirs.
+     *
+     * @return the entry of the library, null when the archive has none
+     */
+    public Entry find(String mappedName, List<String> platforms) {
+        for (int i = platforms.size() - 1; i >= 0; i--) {
+            final Entry entry = entries.get(platforms.get(i) + "/" + mappedName);
+            if (entry != null) {
+                return entry;
+            }
+        }
+        return entries.get(mappedName);
+    }
+
+    /**
+     * @return the content of the entry, mapped read only
+     */
+    public MappedByteBuffer map(Entry entry) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, entry.getOffset(), entry.getSize());
+    }
+
+    /**
+     * Copies the content of an entry at the current position of target, through the kernel where it can.
+     */
+    public void copy(Entry entry, FileChannel target) throws IOException {
+        long position = entry.getOffset();
+        final long end = entry.getOffset() + entry.getSize();
+        while (position < end) {
+            final long transferred = channel.transferTo(position, end - position, target);
+            if (transferred <= 0) {
+                throw new IOException(String.format("Unable to copy %s out of %s", entry, file));
+            }
+            position += transferred;
+        }
+    }
+
+    /**
+     * Extracts every entry into dir, reading the archive once from start to end.
+     *
+     * @return the extracted files, in path order
+     */
+    public List<File> extractAll(File dir) throws IOException {
+        final List<File> files = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            final Path target = dir.toPath().resolve(entry.getPath()).normalize();
+            if (!target.startsWith(dir.toPath().normalize())) {
+                throw new IOException(String.format("%s of %s is outside of %s", entry, file, dir));
+            }
+            Files.createDirectories(target.getParent());
+            try (FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                copy(entry, out);
+            }
+            if (entry.isExecutable()) {
+                target.toFile().setExecutable(true);
+            }
+            files.add(target.toFile());
+        }
+        return files;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    @Override
+    public String toString() {
+        return file.toString();
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            final int read = channel.read(buffer, position + buffer.position());
+            if (read == -1) {
+                return;
+            }
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        final StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b & 0xff));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,95 @@
+package com.googlecode.mavennatives.loader;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Maps the machine running the JVM to the natives classifier suffixes (the part after "natives-") it can load, using
+ * the same host keys and defaults as the platform detection of nativedependencies-maven-plugin.
+ */
+final class Platforms {
+
+    private static final Map<String, List<String>> MAPPINGS = new HashMap<>();
+
+    static {
+        MAPPINGS.put("linux-x86_64", Arrays.asList("linux", "linux-x86_64", "linux-amd64", "linux64"));
+        MAPPINGS.put("linux-x86", Arrays.asList("linux", "linux-x86", "linux-i586", "linux32"));
+        MAPPINGS.put("linux-aarch64", Arrays.asList("linux-aarch64", "linux-arm64"));
+        MAPPINGS.put("linux-arm", Arrays.asList("linux-arm", "linux-arm32", "linux-armv6hf"));
+        MAPPINGS.put("linux-ppc64le", Arrays.asList("linux-ppc64le"));
+        MAPPINGS.put("linux-s390x", Arrays.asList("linux-s390x"));
+        MAPPINGS.put("windows-x86_64", Arrays.asList("windows", "windows-x86_64", "windows-amd64", "windows64"));
+        MAPPINGS.put("windows-x86", Arrays.asList("windows", "windows-x86", "windows-i586", "windows32"));
+        MAPPINGS.put("windows-aarch64", Arrays.asList("windows-aarch64", "windows-arm64"));
+        MAPPINGS.put("osx-x86_64", Arrays.asList("osx", "macos", "macosx", "osx-x86_64", "macos-x86_64", "macosx-universal"));
+        MAPPINGS.put("osx-aarch64", Arrays.asList("osx-aarch64", "osx-arm64", "macos-arm64", "macosx-universal"));
+        MAPPINGS.put("freebsd-x86_64", Arrays.asList("freebsd", "freebsd-x86_64", "freebsd-amd64"));
+        MAPPINGS.put("sunos-x86_64", Arrays.asList("solaris", "solaris-x86_64", "solaris-amd64"));
+    }
+
+    private Platforms() {
+    }
+
+    /**
+     * @return the classifier suffixes loadable by this JVM, most specific last; empty for unknown hosts
+     */
+    static List<String> current() {
+        final List<String> platforms = MAPPINGS.get(host(System.getProperty("os.name"), System.getProperty("os.arch")));
+        return platforms != null ? platforms : Collections.<String>emptyList();
+    }
+
+    static String host(String osName, String osArch) {
+        return normalizeOs(osName) + "-" + normalizeArch(osArch);
+    }
+
+    private static String normalizeOs(String osName) {
+        final String os = osName.toLowerCase(Locale.ENGLISH);
+        if (os.startsWith("linux")) {
+            return "linux";
+        }
+        if (os.startsWith("windows")) {
+            return "windows";
+        }
+        if (os.startsWith("mac") || os.startsWith("darwin")) {
+            return "osx";
+        }
+        if (os.startsWith("freebsd")) {
+            return "freebsd";
+        }
+        if (os.startsWith("sunos") || os.startsWith("solaris")) {
+            return "sunos";
+        }
+        return os.replaceAll("[^a-z0-9]+", "");
+    }
+
+    private static String normalizeArch(String osArch) {
+        final String arch = osArch.toLowerCase(Locale.ENGLISH);
+        switch (arch) {
+            case "amd64":
+            case "x86_64":
+            case "x86-64":
+            case "em64t":
+                return "x86_64";
+            case "x86":
+            case "i386":
+            case "i486":
+            case "i586":
+            case "i686":
+                return "x86";
+            case "aarch64":
+            case "arm64":
+                return "aarch64";
+            case "arm":
+            case "arm32":
+            case "armv7l":
+            case "armhf":
+                return "arm";
+            default:
+                return arch.replaceAll("[^a-z0-9_]+", "");
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.googlecode.mavennatives.loader;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class NativeLoaderTest
+{
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private final byte[] linux64 = "linux64 native".getBytes();
+	private final byte[] root = "root native".getBytes();
+	private File cacheDir;
+	private URLClassLoader classLoader;
+
+	@Before
+	public void setUp() throws IOException
+	{
+		final File jar = temporaryFolder.newFile("app.jar");
+		try (JarOutputStream jos = new JarOutputStream(new FileOutputStream(jar)))
+		{
+			jos.putNextEntry(new JarEntry("natives-linux64/" + System.mapLibraryName("foo")));
+			jos.write(linux64);
+			jos.putNextEntry(new JarEntry(System.mapLibraryName("foo")));
+			jos.write(root);
+			jos.putNextEntry(new JarEntry(System.mapLibraryName("bar")));
+			jos.write(root);
+		}
+		cacheDir = temporaryFolder.newFolder("cache");
+		classLoader = new URLClassLoader(new URL[] { jar.toURI().toURL() }, null);
+	}
+
+	@Test
+	public void librariesOfTheCurrentPlatformAreExtractedIntoTheCache() throws IOException
+	{
+		final File file = new NativeLoader(classLoader, cacheDir, Arrays.asList("linux", "linux64")).extract("foo");
+
+		assertTrue(file.getPath().startsWith(new File(cacheDir, NativeLoader.CACHE_VERSION).getPath()));
+		assertEquals(System.mapLibraryName("foo"), file.getName());
+		assertArrayEquals(linux64, Files.readAllBytes(file.toPath()));
+	}
+
+	@Test
+	public void librariesAtTheRootAreUsedWhenNoPlatformProvidesThem() throws IOException
+	{
+		final File file = new NativeLoader(classLoader, cacheDir, Arrays.asList("windows")).extract("foo");
+
+		assertArrayEquals(root, Files.readAllBytes(file.toPath()));
+	}
+
+	@Test
+	public void laterLoadersReuseTheExtractedFile() throws IOException
+	{
+		final File first = new NativeLoader(classLoader, cacheDir, Arrays.asList("linux64")).extract("foo");
+		assertTrue(first.setLastModified(1000000L));
+
+		final File second = new NativeLoader(classLoader, cacheDir, Arrays.asList("linux64")).extract("foo");
+
+		assertEquals(first, second);
+		assertEquals(1000000L, second.lastModified());
+		// same content, different entry names: one extracted file per content
+		assertEquals(new NativeLoader(classLoader, cacheDir, Arrays.asList("linux64")).extract("bar").getParentFile(),
+				new NativeLoader(classLoader, cacheDir, Arrays.asList("windows")).extract("foo").getParentFile());
+	}
+
+	@Test
+	public void extractedFilesAreKeyedByTheirJarEntry() throws Exception
+	{
+		final File file = new NativeLoader(classLoader, cacheDir, Arrays.asList("linux64")).extract("foo");
+
+		final CRC32 crc = new CRC32();
+		crc.update(linux64);
+		assertEquals(String.format("%08x-%x", crc.getValue(), linux64.length), file.getParentFile().getName());
+		assertEquals(hex(MessageDigest.getInstance("SHA-256").digest(linux64)) + "\n",
+				new String(Files.readAllBytes(new File(file.getPath() + ".sha256").toPath()), StandardCharsets.US_ASCII));
+	}
+
+	@Test
+	public void tamperedCachedFilesAreExtractedAgain() throws IOException
+	{
+		final File first = new NativeLoader(classLoader, cacheDir, Arrays.asList("linux64")).extract("foo");
+		Files.write(first.toPath(), "planted".getBytes());
+
+		final File second = new NativeLoader(classLoader, cacheDir, Arrays.asList("linux64")).extract("foo");
+
+		assertEquals(first, second);
+		assertArrayEquals(linux64, Files.readAllBytes(second.toPath()));
+	}
+
+	@Test
+	public void cachedFilesWithoutDigestAreExtractedAgain() throws IOException
+	{
+		final File first = new NativeLoader(classLoader, cacheDir, Arrays.asList("linux64")).extract("foo");
+		// same size, as left by an extraction that did not finish
+		Files.write(first.toPath(), new byte[linux64.length]);
+		Files.delete(new File(first.getPath() + ".sha256").toPath());
+
+		final File second = new NativeLoader(classLoader, cacheDir, Arrays.asList("linux64")).extract("foo");
+
+		assertArrayEquals(linux64, Files.readAllBytes(second.toPath()));
+		assertTrue(new File(second.getPath() + ".sha256").isFile());
+	}
+
+	@Test
+	public void missingCacheDirsAreCreatedForTheirOwnerOnly() throws IOException
+	{
+		Assume.assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+		final File privateDir = new File(temporaryFolder.getRoot(), "private/cache");
+
+		new NativeLoader(classLoader, privateDir, Arrays.asList("linux64")).extract("foo");
+
+		assertEquals("rwx------", PosixFilePermissions.toString(Files.getPosixFilePermissions(privateDir.toPath())));
+	}
+
+	@Test
+	public void cacheDirsWritableByOthersAreRefused() throws IOException
+	{
+		Assume.assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+		Files.setPosixFilePermissions(cacheDir.toPath(), PosixFilePermissions.fromString("rwxrwxrwx"));
+
+		try
+		{
+			new NativeLoader(classLoader, cacheDir, Arrays.asList("linux64")).extract("foo");
+			fail("shared cache dirs must not be used");
+		}
+		catch (IOException e)
+		{
+			assertTrue(e.getMessage().contains("writable by others"));
+		}
+		assertEquals(0, cacheDir.list().length);
+	}
+
+	@Test
+	public void missingLibrariesCanNotBeLinked() throws IOException
+	{
+		try
+		{
+			new NativeLoader(classLoader, cacheDir, Arrays.asList("linux64")).extract("missing");
+			fail("missing libraries must not be found");
+		}
+		catch (UnsatisfiedLinkError e)
+		{
+			assertTrue(e.getMessage().contains(System.mapLibraryName("missing")));
+		}
+	}
+
+	@Test
+	public void thePreloadOrderOfTheMostSpecificPlatformIsUsed()
+	{
+		final String lib = System.mapLibraryName("avutil");
+		final Properties properties = new Properties();
+		properties.setProperty("natives.dir", "/natives");
+		properties.setProperty("preload", "other" + lib);
+		properties.setProperty("preload.linux", "linux/" + lib);
+		properties.setProperty("preload.linux64", "linux64/" + lib + ",linux64/readme.txt,linux64/" + System.mapLibraryName("avcodec"));
+
+		final List<File> order = new NativeLoader(classLoader, cacheDir, Arrays.asList("linux", "linux64")).preloadOrder(properties);
+
+		assertEquals(Arrays.asList(new File("/natives", "linux64/" + lib), new File("/natives", "linux64/" + System.mapLibraryName("avcodec"))), order);
+		assertEquals(Arrays.asList(new File("/natives", "other" + lib)),
+				new NativeLoader(classLoader, cacheDir, Arrays.asList("windows")).preloadOrder(properties));
+	}
+
+	@Test
+	public void archivedLibrariesAreCopiedOutOfTheArchive() throws Exception
+	{
+		final byte[] archived = "archived linux64 native".getBytes();
+		final File archive = writeArchive(temporaryFolder.newFile("app.natives"), 512,
+				System.mapLibraryName("bar"), root, "linux64/" + System.mapLibraryName("foo"), archived);
+
+		final NativeLoader loader = new NativeLoader(classLoader, cacheDir, Arrays.asList("linux", "linux64"), archive);
+		final File file = loader.extract("foo");
+
+		assertArrayEquals(archived, Files.readAllBytes(file.toPath()));
+		assertEquals(hex(MessageDigest.getInstance("SHA-256").digest(archived)), file.getParentFile().getName());
+		try (NativesArchive natives = NativesArchive.open(archive))
+		{
+			final List<File> files = natives.extractAll(temporaryFolder.newFolder("extracted"));
+			assertEquals(2, files.size());
+			assertArrayEquals(root, Files.readAllBytes(files.get(0).toPath()));
+			assertArrayEquals(archived, Files.readAllBytes(files.get(1).toPath()));
+			assertEquals(0, natives.getEntries().get(1).getOffset() % natives.getAlignment());
+		}
+	}
+
+	/**
+	 * Writes an archive the way the package-natives goal does, paths given in path order.
+	 */
+	private static File writeArchive(File file, int alignment, Object... pathsAndContents) throws Exception
+	{
+		final int count = pathsAndContents.length / 2;
+		int indexLength = 0;
+		for (int i = 0; i < count; i++)
+		{
+			indexLength += 2 + ((String) pathsAndContents[2 * i]).length() + 8 + 8 + 4 + 32;
+		}
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(bytes);
+		out.write("MVNNATIV".getBytes(StandardCharsets.US_ASCII));
+		out.writeInt(1);
+		out.writeInt(alignment);
+		out.writeInt(count);
+		out.writeInt(indexLength);
+		long offset = align(24 + indexLength, alignment);
+		for (int i = 0; i < count; i++)
+		{
+			final byte[] content = (byte[]) pathsAndContents[2 * i + 1];
+			out.writeUTF((String) pathsAndContents[2 * i]);
+			out.writeLong(offset);
+			out.writeLong(content.length);
+			out.writeInt(0644);
+			out.write(MessageDigest.getInstance("SHA-256").digest(content));
+			offset = align(offset + content.length, alignment);
+		}
+		for (int i = 0; i < count; i++)
+		{
+			out.write(new byte[(int) (align(bytes.size(), alignment) - bytes.size())]);
+			out.write((byte[]) pathsAndContents[2 * i + 1]);
+		}
+		out.write(new byte[(int) (align(bytes.size(), alignment) - bytes.size())]);
+		Files.write(file.toPath(), bytes.toByteArray());
+		return file;
+	}
+
+	private static long align(long offset, int alignment)
+	{
+		return (offset + alignment - 1) & -alignment;
+	}
+
+	private static String hex(byte[] bytes)
+	{
+		final StringBuilder hex = new StringBuilder();
+		for (byte b : bytes)
+		{
+			hex.append(String.format("%02x", b & 0xff));
+		}
+		return hex.toString();
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+import java.util.jar.JarEntry
+import java.util.jar.JarOutputStream
+import java.util.jar.Manifest
+import java.util.zip.CRC32
+import java.util.zip.ZipEntry
+
+// Generates the natives fixtures into the local repository of the integration tests: natives-fixture-00 to -11,
+// each with a natives-linux, natives-windows and natives-osx jar of nested, stored and deflated entries, and the
+// natives-fixtures pom depending on all of them. Version 1.1 of natives-fixtures upgrades natives-fixture-00, whose
+// 1.1 jars change one entry, add one and remove one.
+
+String groupId = "org.colapietro.maven.plugins.it.fixtures"
+List<String> platforms = [ "linux", "windows", "osx" ]
+Map<String, String> extensions = [ linux: "so", windows: "dll", osx: "dylib" ]
+int artifacts = 12
+File groupDir = new File( localRepositoryPath, groupId.replace( '.', '/' ) )
+
+def bytes = { String seed, int size ->
+  byte[] content = new byte[size]
+  new Random( seed.hashCode() ).nextBytes( content )
+  return content
+}
+
+def writePom = { String artifactId, String version, String packaging, List<String> dependencies ->
+  File pom = new File( groupDir, "${artifactId}/${version}/${artifactId}-${version}.pom" )
+  pom.parentFile.mkdirs()
+  pom.text = """<?xml version="1.0" encoding="UTF-8"?>
+<project xmlns="http://maven.apache.org/POM/4.0.0">
+  <modelVersion>4.0.0</modelVersion>
+  <groupId>${groupId}</groupId>
+  <artifactId>${artifactId}</artifactId>
+  <version>${version}</version>
+  <packaging>${packaging}</packaging>
+  <dependencies>${dependencies.join( '' )}
+  </dependencies>
+</project>
+"""
+}
+
+def writeJar = { File jar, Map<String, byte[]> entries ->
+  jar.parentFile.mkdirs()
+  Manifest manifest = new Manifest()
+  manifest.mainAttributes.putValue( "Manifest-Version", "1.0" )
+  JarOutputStream jos = new JarOutputStream( new FileOutputStream( jar ), manifest )
+  Set<String> dirs = new TreeSet<String>()
+  entries.keySet().each { name ->
+    for ( int slash = name.indexOf( '/' ); slash > 0; slash = name.indexOf( '/', slash + 1 ) ) {
+      dirs << name.substring( 0, slash + 1 )
+    }
+  }
+  dirs.each { dir -> jos.putNextEntry( new JarEntry( dir ) ); jos.closeEntry() }
+  int index = 0
+  entries.each { name, content ->
+    JarEntry entry = new JarEntry( name )
+    // every other entry is stored, the others deflated
+    if ( index++ % 2 == 0 ) {
+      CRC32 crc = new CRC32()
+      crc.update( content )
+      entry.method = ZipEntry.STORED
+      entry.size = content.length
+      entry.compressedSize = content.length
+      entry.crc = crc.value
+    }
+    jos.putNextEntry( entry )
+    jos.write( content )
+    jos.closeEntry()
+  }
+  jos.close()
+}
+
+def fixtureEntries = { int artifact, String platform, boolean upgraded ->
+  String name = String.format( "fixture%02d", artifact )
+  String ext = extensions[ platform ]
+  Map<String, byte[]> entries = new LinkedHashMap<String, byte[]>()
+  entries[ "lib/${name}/lib${name}.${ext}".toString() ] = bytes( "${name}-${platform}-main", 48 * 1024 + artifact * 517 )
+  entries[ "lib/${name}/plugins/a/libplugin.${ext}".toString() ] =
+      bytes( "${name}-${platform}-plugin" + ( upgraded ? "-1.1" : "" ), 8 * 1024 + artifact )
+  entries[ "lib/${name}/plugins/b/c/libdeep.${ext}".toString() ] = bytes( "${name}-${platform}-deep", 3 * 1024 )
+  if ( !upgraded ) {
+    entries[ "lib/${name}/data/table.bin".toString() ] = new byte[ 64 * 1024 ]
+  } else {
+    entries[ "lib/${name}/plugins/new/libnew.${ext}".toString() ] = bytes( "${name}-${platform}-new", 2 * 1024 )
+  }
+  entries[ "lib/${name}/empty.txt".toString() ] = new byte[ 0 ]
+  return entries
+}
+
+Map<String, List<String>> dependencies = [ "1.0": [], "1.1": [] ]
+for ( int artifact = 0; artifact < artifacts; artifact++ ) {
+  String artifactId = String.format( "natives-fixture-%02d", artifact )
+  List<String> versions = artifact == 0 ? [ "1.0", "1.1" ] : [ "1.0" ]
+  versions.each { version ->
+    writePom( artifactId, version, "jar", [] )
+    platforms.each { platform ->
+      writeJar( new File( groupDir, "${artifactId}/${version}/${artifactId}-${version}-natives-${platform}.jar" ),
+                fixtureEntries( artifact, platform, version == "1.1" ) )
+    }
+  }
+  [ "1.0", "1.1" ].each { fixturesVersion ->
+    String version = versions.contains( fixturesVersion ) ? fixturesVersion : "1.0"
+    platforms.each { platform ->
+      dependencies[ fixturesVersion ] << """
+    <dependency>
+      <groupId>${groupId}</groupId>
+      <artifactId>${artifactId}</artifactId>
+      <version>${version}</version>
+      <classifier>natives-${platform}</classifier>
+    </dependency>""".toString()
+    }
+  }
+}
+dependencies.each { version, deps -> writePom( "natives-fixtures", version, "pom", deps ) }
+
+return true
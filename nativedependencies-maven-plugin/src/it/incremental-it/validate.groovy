@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+import groovy.json.JsonSlurper
+import java.security.MessageDigest
+import java.util.jar.JarFile
+
+def sha256( InputStream input )
+{
+  MessageDigest digest = MessageDigest.getInstance( "SHA-256" )
+  byte[] buffer = new byte[8192]
+  for ( int read = input.read( buffer ); read != -1; read = input.read( buffer ) )
+  {
+    digest.update( buffer, 0, read )
+  }
+  input.close()
+  return digest.digest().encodeHex().toString()
+}
+
+// platform/entry path to the SHA-256 of the entry, for every file of the natives jars of natives-fixtures
+def expectedFiles( File groupDir, String fixturesVersion )
+{
+  Map<String, String> files = new TreeMap<String, String>()
+  new XmlSlurper().parse( new File( groupDir, "natives-fixtures/${fixturesVersion}/natives-fixtures-${fixturesVersion}.pom" ) )
+      .dependencies.dependency.each { dependency ->
+    String artifactId = dependency.artifactId.text()
+    String version = dependency.version.text()
+    String classifier = dependency.classifier.text()
+    JarFile jar = new JarFile( new File( groupDir, "${artifactId}/${version}/${artifactId}-${version}-${classifier}.jar" ) )
+    jar.entries().findAll { !it.directory && !it.name.startsWith( "META-INF/" ) }.each { entry ->
+      files[ classifier.substring( "natives-".length() ) + "/" + entry.name ] = sha256( jar.getInputStream( entry ) )
+    }
+    jar.close()
+  }
+  return files
+}
+
+def actualFiles( File dir )
+{
+  Map<String, String> files = new TreeMap<String, String>()
+  dir.eachFileRecurse( groovy.io.FileType.FILES ) { file ->
+    String path = dir.toURI().relativize( file.toURI() ).path
+    if ( file.name != ".nativedependencies.state" )
+    {
+      files[ path ] = sha256( new FileInputStream( file ) )
+    }
+  }
+  return files
+}
+
+def metrics( File target, String name )
+{
+  File file = new File( target, name )
+  assert file.isFile() : file.absolutePath + " is missing."
+  return new JsonSlurper().parseText( file.text )
+}
+
+//noinspection GroovyAssignabilityCheck
+File target = new File( basedir, "target" )
+File groupDir = new File( localRepositoryPath, "org/colapietro/maven/plugins/it/fixtures" )
+
+Map<String, String> cold = expectedFiles( groupDir, "1.0" )
+Map<String, String> upgraded = expectedFiles( groupDir, "1.1" )
+int artifacts = 12 * 3
+int upgradedArtifacts = 3
+// entries of the upgraded jars, and those among them whose content changed or that are new
+int upgradedEntries = upgraded.keySet().count { it.contains( "/lib/fixture00/" ) }
+int changedEntries = upgraded.count { path, digest -> cold[ path ] != digest }
+assert cold.size() == artifacts * 5
+assert upgradedEntries == upgradedArtifacts * 5
+assert changedEntries == upgradedArtifacts * 2
+
+[ "metrics", "metrics-cached" ].each { name ->
+  def coldRun = metrics( target, "${name}-cold.json" )
+  assert coldRun.artifactsUnpacked == artifacts
+  assert coldRun.entriesWritten == cold.size()
+  assert coldRun.entriesSkipped == 0
+
+  // only the upgraded artifact is unpacked again
+  def incrementalRun = metrics( target, "${name}-incremental.json" )
+  assert incrementalRun.artifactsUnpacked == upgradedArtifacts
+  assert incrementalRun.artifactsUpToDate == artifacts - upgradedArtifacts
+  incrementalRun.artifacts.findAll { it.status == "unpacked" }.each { assert it.key.contains( ":natives-fixture-00:" ) }
+
+  // nothing is unpacked, written or read when nothing changed
+  def unchangedRun = metrics( target, "${name}-unchanged.json" )
+  assert unchangedRun.artifactsUnpacked == 0
+  assert unchangedRun.artifactsUpToDate == artifacts
+  assert unchangedRun.entriesWritten == 0
+  assert unchangedRun.bytesWritten == 0
+  assert unchangedRun.bytesRead == 0
+}
+// identical files are left untouched, files of the cache are all linked again as the upgraded jars are cached anew
+assert metrics( target, "metrics-incremental.json" ).entriesWritten == changedEntries
+assert metrics( target, "metrics-cached-incremental.json" ).entriesWritten == upgradedEntries
+
+// the natives dirs hold the files of the upgraded fixtures exactly, the removed entries were pruned
+[ "natives", "natives-cached" ].each { name ->
+  File natives = new File( target, name )
+  assert natives.isDirectory() : natives.absolutePath + " is missing."
+  assert actualFiles( natives ) == upgraded
+}
+assert !new File( target, "natives/linux/lib/fixture00/data/table.bin" ).exists()
+assert new File( target, "natives/linux/lib/fixture00/plugins/new/libnew.so" ).isFile()
+
+return true
@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+def assertExistsDirectory( file )
+{
+  if ( !file.exists() || ! file.isDirectory() )
+  {
+      println( file.getAbsolutePath() + " file is missing or is not a directory." )
+      return false
+  }
+  return true
+}
+
+def assertExistsFile( file )
+{
+  if ( !file.exists() || file.isDirectory() )
+  {
+      println( file.getAbsolutePath() + " file is missing or a directory." )
+      return false
+  }
+  return true
+}
+
+//noinspection GroovyAssignabilityCheck
+File target = new File( basedir, "target" )
+assert assertExistsDirectory( target )
+
+File archive = new File( target, "nativedependencies-maven-plugin-package-natives-it-0.1.0-SNAPSHOT.natives" )
+assert assertExistsFile( archive )
+
+byte[] bytes = archive.bytes
+assert new String( bytes, 0, 8, "US-ASCII" ) == "MVNNATIV"
+assert bytes.length % 4096 == 0
+
+DataInputStream index = new DataInputStream( new ByteArrayInputStream( bytes, 24, bytes.length - 24 ) )
+List<String> paths = []
+int count = java.nio.ByteBuffer.wrap( bytes, 16, 4 ).getInt()
+count.times {
+  paths << index.readUTF()
+  long offset = index.readLong()
+  assert offset % 4096 == 0
+  index.skipBytes( 8 + 4 + 32 )
+}
+assert paths.contains( "linux/liblwjgl.so" )
+assert paths.contains( "windows/lwjgl.dll" )
+
+return true
@@ -17,24 +17,44 @@ package com.googlecode.mavennatives.nativedependencies;
  */
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import com.googlecode.mavennatives.core.JarUnpackable;
+import com.googlecode.mavennatives.core.LockMode;
+import com.googlecode.mavennatives.core.NativesJar;
+import com.googlecode.mavennatives.core.NativesLockException;
+import com.googlecode.mavennatives.core.NativesUnpacker;
+import com.googlecode.mavennatives.core.PlatformDetector;
+import com.googlecode.mavennatives.core.UnpackBudget;
+import com.googlecode.mavennatives.core.UnpackCoordinator;
+import com.googlecode.mavennatives.core.UnpackLog;
+import com.googlecode.mavennatives.core.UnpackOptions;
+
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugin.logging.Log;
-import org.apache.maven.plugin.logging.SystemStreamLog;
 import org.apache.maven.plugins.annotations.*;
 import org.apache.maven.project.MavenProject;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.repository.RemoteRepository;
 import org.sonatype.plexus.build.incremental.BuildContext;
 
 /**
  * Unpacks native dependencies
+ * <p>
+ * Maven only collects the dependency graph for this goal. The files of the whole test classpath are then resolved, as
+ * for goals requiring dependency resolution, or those of the natives artifacts alone with resolveNativesOnly, see
+ * {@link NativesResolver}.
  */
-@Mojo(name = "copy", requiresProject = true, requiresDependencyResolution = ResolutionScope.TEST, defaultPhase = LifecyclePhase.PACKAGE)
-final class CopyNativesMojo extends AbstractMojo {
+@Mojo(name = "copy", requiresProject = true, requiresDependencyCollection = ResolutionScope.TEST, defaultPhase = LifecyclePhase.PACKAGE)
+class CopyNativesMojo extends AbstractMojo {
 
     @Parameter(defaultValue = "${project}", readonly = true, required = true)
     private MavenProject project;
@@ -48,6 +68,252 @@ final class CopyNativesMojo extends AbstractMojo {
     @Parameter
     private List<String> platforms;
 
+    /**
+     * Only copy the natives of the machine running the build, as mapped from os.name and os.arch by platformMappings.
+     * Platforms listed in platforms are copied as well.
+     */
+    @Parameter(defaultValue = "false")
+    private boolean autoDetectPlatform;
+
+    /**
+     * Replaces the classifier suffixes auto detection selects for a host. Keys are "os-arch" hosts (e.g.
+     * linux-x86_64, windows-x86, osx-aarch64), values comma separated suffixes (e.g. linux,linux64).
+     */
+    @Parameter
+    private Map<String, String> platformMappings;
+
+    /**
+     * Routes the entries of natives jars holding several platforms (e.g. a natives-all jar with linux/, windows/ and
+     * macos/ dirs) to their platforms, so every jar is unpacked in a single pass whatever the number of platforms.
+     * Entries starting with the prefix of a route belong to its platform and are unpacked without that prefix, into
+     * the dir of the platform with separateDirs; entries of platforms that are not selected are skipped. The longest
+     * matching prefix wins, entries matching none belong to the platform of their jar. Once routes are set, jars are no
+     * longer skipped for their own platform alone.
+     */
+    @Parameter
+    private List<PlatformRoute> platformRoutes;
+
+    /**
+     * Skip natives artifacts that did not change since the previous run. The size, modification time and hash of every
+     * unpacked artifact, together with the files it produced, are recorded in a state file inside nativesTargetDir.
+     */
+    @Parameter(defaultValue = "true")
+    private boolean incremental;
+
+    /**
+     * Delete the files unpacked by previous runs that no current natives artifact provides anymore, e.g. after a
+     * natives dependency was upgraded, removed or its platform deselected. Only files recorded in the state file inside
+     * nativesTargetDir are ever deleted.
+     */
+    @Parameter(defaultValue = "true")
+    private boolean pruneStale;
+
+    /**
+     * Number of natives artifacts unpacked concurrently. 0 uses the number of available processors, 1 unpacks on the
+     * build thread.
+     */
+    @Parameter(defaultValue = "0")
+    private int threads;
+
+    /**
+     * How entries are written: CHANNEL (through a FileChannel with a buffer of bufferSize bytes) or STREAM (through a
+     * FileOutputStream with a small buffer).
+     */
+    @Parameter(defaultValue = "CHANNEL")
+    private UnpackOptions.CopyStrategy copyStrategy;
+
+    /**
+     * Size in bytes of the buffer used by the CHANNEL copy strategy.
+     */
+    @Parameter(defaultValue = "262144")
+    private int bufferSize;
+
+    /**
+     * Leave existing files untouched when they already hold the content of their jar entry, so their modification time
+     * does not change and nothing has to reload them.
+     */
+    @Parameter(defaultValue = "true")
+    private boolean skipIdentical;
+
+    /**
+     * Write every entry to a temporary file and move it over its target, so an interrupted build never leaves a
+     * truncated native behind. Builds sharing nativesTargetDir (e.g. parallel reactor modules) are also serialized
+     * through a lock file next to it.
+     */
+    @Parameter(defaultValue = "true")
+    private boolean atomicWrites;
+
+    /**
+     * Unpack into a staging dir next to nativesTargetDir and swap it in once everything is unpacked, so nativesTargetDir
+     * never shows a partially updated set of natives. The swap is two renames: nativesTargetDir is missing for the
+     * moment between them, and a build stopped in that moment leaves the natives in nativesTargetDir.previous, which
+     * the next build moves back.
+     */
+    @Parameter(defaultValue = "false")
+    private boolean swapDirectory;
+
+    /**
+     * Bytes of entry content unpacked at once, across all the threads and modules of the build, so that huge natives
+     * unpacked in parallel do not exhaust memory or thrash the page cache. Entries larger than the budget are unpacked
+     * alone. 0 for no cap.
+     */
+    @Parameter(defaultValue = "0")
+    private long unpackBudget;
+
+    /**
+     * Number of entries of at least largeEntrySize bytes unpacked at once when unpackBudget is set. The entries of a
+     * jar are unpacked small ones first. Entries waiting for the budget are served in order, so small entries arriving
+     * once a large one waits queue behind it.
+     */
+    @Parameter(defaultValue = "1")
+    private int largeWrites;
+
+    @Parameter(defaultValue = "67108864")
+    private long largeEntrySize;
+
+    /**
+     * Unpack every natives jar once per machine into cacheDir, keyed by the jar's SHA-1, and fill nativesTargetDir with
+     * hard links to the cached files (or copies where links are not supported).
+     */
+    @Parameter(defaultValue = "false")
+    private boolean useCache;
+
+    @Parameter(defaultValue = "${user.home}/.m2/natives-cache")
+    private File cacheDir;
+
+    /**
+     * In builds of several modules, unpack every natives jar once into reactorCacheDir and fill the nativesTargetDir of
+     * every module with hard links to it. Modules built concurrently wait for an unpack in progress rather than
+     * repeating it. Has no effect when useCache is set, as the machine-wide cache is shared the same way.
+     * <p>
+     * The natives of every module then share their files with reactorCacheDir and with each other, so a native modified
+     * in place changes for every module. Nothing prunes reactorCacheDir: it grows with every version unpacked until it
+     * is deleted, e.g. by cleaning the project it is in.
+     */
+    @Parameter(defaultValue = "false")
+    private boolean reactorDeduplication;
+
+    /**
+     * Dir the natives are unpacked into with reactorDeduplication. The default depends on the dir Maven is run from,
+     * so builds run with -f or from a module get a dir of their own; set it (e.g. to a dir of the root project) to
+     * share one dir between all of them.
+     */
+    @Parameter(defaultValue = "${session.executionRootDirectory}/target/natives-reactor")
+    private File reactorCacheDir;
+
+    @Parameter(defaultValue = "${reactorProjects}", readonly = true)
+    private List<MavenProject> reactorProjects;
+
+    /**
+     * Resolve the files of the natives artifacts alone instead of those of the whole test classpath, so the other jars
+     * of the classpath are neither downloaded nor checked, nor their resolution failures reported.
+     */
+    @Parameter(defaultValue = "false")
+    private boolean resolveNativesOnly;
+
+    /**
+     * Widest scope of the natives artifacts to unpack: compile (compile, provided and system dependencies), runtime
+     * (compile and runtime dependencies) or test (all of them).
+     */
+    @Parameter(defaultValue = "test")
+    private String nativesScope;
+
+    /**
+     * groupId:artifactId of the dependencies whose natives to unpack, * matching any groupId or artifactId; all natives
+     * artifacts when empty. Selected dependencies without natives-* artifacts of their own groupId:artifactId in the
+     * dependency graph get them derived from their coordinates: a natives-&lt;platform&gt; classifier of the same
+     * artifact for every platform selected by platforms and autoDetectPlatform, skipped where the repository has
+     * none.
+     */
+    @Parameter
+    private List<String> nativeArtifacts;
+
+    @Parameter(defaultValue = "${repositorySystemSession}", readonly = true)
+    private RepositorySystemSession repositorySession;
+
+    @Parameter(defaultValue = "${project.remoteProjectRepositories}", readonly = true)
+    private List<RemoteRepository> remoteRepositories;
+
+    /**
+     * JSON report of the run: phase timings plus the entries, bytes and inflate, write and check times of every
+     * natives artifact. Not written when empty.
+     */
+    @Parameter(defaultValue = "${project.build.directory}/nativedependencies-metrics.json")
+    private File metricsFile;
+
+    /**
+     * Ant style patterns (e.g. **&#47;*.so) of the jar entries to unpack, all entries when empty.
+     */
+    @Parameter
+    private List<String> includes;
+
+    /**
+     * Ant style patterns of the jar entries not to unpack, e.g. **&#47;*.pdb or **&#47;*.debug.
+     */
+    @Parameter
+    private List<String> excludes;
+
+    /**
+     * Further includes and excludes for the natives of a single artifact, identified by its groupId:artifactId. They
+     * narrow down the entries selected by includes and excludes.
+     */
+    @Parameter
+    private List<NativesFilter> artifactFilters;
+
+    /**
+     * What to do with the SHA-256 of the unpacked natives: NONE, WRITE (record them in lockFile) or VERIFY (fail the
+     * build when a native is missing from lockFile, differs from it or lockFile lists a native that was not unpacked).
+     * Digests are computed while the entries are written, or checked when skipIdentical finds them unchanged, so no
+     * file is read for them alone. Artifacts are never skipped as up to date while a lock mode is set.
+     */
+    @Parameter(defaultValue = "NONE")
+    private LockMode lockMode;
+
+    /**
+     * The lock file, listing the SHA-256 of every native relative to nativesTargetDir in sha256sum format.
+     */
+    @Parameter(defaultValue = "${basedir}/natives.lock")
+    private File lockFile;
+
+    /**
+     * Strip symbol tables, debug info and other sections not needed at run time from the unpacked ELF natives (Linux,
+     * Android and BSD libraries), without any external toolchain. Stripped libraries are cached in cacheDir/stripped
+     * under the SHA-256 of their unstripped content and linked into nativesTargetDir, where skipIdentical keeps them
+     * without unpacking them again. The lock file records the natives as unpacked, before they are stripped.
+     */
+    @Parameter(defaultValue = "false")
+    private boolean strip;
+
+    /**
+     * JVM argument file to write once the natives are in place, e.g. ${project.build.directory}/natives.args, for
+     * launching with java @natives.args (Java 9 and later). It sets java.library.path to the dirs holding the unpacked
+     * libraries and mavennatives.natives.properties to loadOrderFile. Not written when unset.
+     */
+    @Parameter
+    private File jvmArgFile;
+
+    /**
+     * Properties file to write once the natives are in place, e.g. ${project.build.directory}/natives.properties. It
+     * lists the natives dir (natives.dir), the library path (java.library.path) and the unpacked libraries in the order
+     * they have to be loaded, dependencies first, as read from their ELF, PE and Mach-O dynamic dependency tables
+     * (preload, or preload.&lt;platform&gt; with separateDirs). Not written when unset.
+     */
+    @Parameter
+    private File loadOrderFile;
+
+    /**
+     * tar.xz bundle of nativesTargetDir to write once the natives are in place, e.g.
+     * ${project.build.directory}/natives.tar.xz. Not written when unset.
+     */
+    @Parameter
+    private File nativesBundle;
+
+    /**
+     * xz preset of nativesBundle, from 0 (fastest) to 9 (smallest).
+     */
+    @Parameter(defaultValue = "6")
+    private int bundlePreset;
+
     /**
      * @component
      */
@@ -60,56 +326,30 @@ final class CopyNativesMojo extends AbstractMojo {
     @Component
     private BuildContext buildContext;
 
-    private static final Log LOG = new SystemStreamLog();
+    /**
+     * @component
+     */
+    @Component
+    private RepositorySystem repositorySystem;
 
+    /**
+     * @component
+     */
+    @Component
+    private UnpackCoordinator unpackCoordinator;
 
     /**
-     * Type erasure in <code>final Set<Artifact> artifacts = project.getArtifacts();</code> is the reasons for @SuppressWarnings("unchecked")
-     *
      * @throws MojoExecutionException
      * @throws MojoFailureException
      */
     @Override
     public void execute() throws MojoExecutionException, MojoFailureException {
         try {
-            getLog().info("Saving natives in " + nativesTargetDir);
-            if (separateDirs) {
-                getLog().info("Storing artifacts in separate dirs according to classifier");
-            }
-            final boolean platformsActive = platforms != null && (!platforms.isEmpty());
-            if (platformsActive) {
-                getLog().info(String.format("Only copying the following platforms: %s", platforms));
-            } else {
-                getLog().info("Copying all platforms.");
-            }
-            @SuppressWarnings("unchecked")
-            final Set<Artifact> artifacts = project.getArtifacts();
-            final boolean wereNativesTargetDirectoriesMade = nativesTargetDir.mkdirs();
-            if (!wereNativesTargetDirectoriesMade) {
-                getLog().info("Unable to create directories(may already have existed): " + nativesTargetDir);
-            }
-            for (Artifact artifact : artifacts) {
-                String classifier = artifact.getClassifier();
-                if (classifier != null && classifier.startsWith("natives-")) {
-                    String platform = classifier.substring("natives-".length());
-                    if (platformsActive && (!platforms.contains(platform))) {
-                        getLog().info(String.format("Skipping other platform: G:%s - A:%s - C:%s", artifact.getGroupId(), artifact.getArtifactId(), artifact.getClassifier()));
-                        continue;
-                    }
-                    getLog().info(String.format("G:%s - A:%s - C:%s", artifact.getGroupId(), artifact.getArtifactId(), artifact.getClassifier()));
-                    File artifactDir = nativesTargetDir;
-                    if (separateDirs) {
-                        artifactDir = new File(nativesTargetDir, platform);
-                        final boolean wereArtifactDirectoriesMade = artifactDir.mkdirs();
-                        if (!wereArtifactDirectoriesMade) {
-                            getLog().info("Unable to create directories(may already have existed): " + nativesTargetDir);
-                        }
-                    }
-                    jarUnpacker.copyJarContent(artifact.getFile(), artifactDir);
-                }
-
-            }
-            buildContext.refresh(nativesTargetDir);
+            unpack();
+        } catch (MojoExecutionException e) {
+            throw e;
+        } catch (NativesLockException e) {
+            throw new MojoFailureException(e.getMessage(), e);
         } catch (IOException e) {
             try (final Writer sw = new StringWriter(); final Writer pw = new PrintWriter(sw)) {
                 e.printStackTrace((PrintWriter) pw);
@@ -131,6 +371,174 @@ final class CopyNativesMojo extends AbstractMojo {
         }
     }
 
+    void unpack() throws IOException, MojoExecutionException {
+        nativesUnpacker().unpack();
+        buildContext.refresh(nativesTargetDir);
+    }
+
+    MavenProject getProject() {
+        return project;
+    }
+
+    /**
+     * @return an unpacker configured by the parameters of this mojo
+     */
+    NativesUnpacker nativesUnpacker() throws MojoExecutionException {
+        final File cache = useCache ? cacheDir : deduplicateReactor() ? reactorCacheDir : null;
+        final NativesUnpacker unpacker = NativesUnpacker.into(nativesTargetDir)
+                .jars(nativesJars())
+                .platforms(platforms)
+                .autoDetectPlatform(autoDetectPlatform)
+                .platformMappings(platformMappings)
+                .separateDirs(separateDirs)
+                .platformRoutes(routes())
+                .includes(includes)
+                .excludes(excludes)
+                .threads(threads)
+                .incremental(incremental)
+                .pruneStale(pruneStale)
+                .copyStrategy(copyStrategy)
+                .bufferSize(bufferSize)
+                .skipIdentical(skipIdentical)
+                .atomicWrites(atomicWrites)
+                .swapDirectory(swapDirectory)
+                .budget(unpackBudget > 0 ? UnpackBudget.shared(unpackBudget, largeWrites, largeEntrySize) : null)
+                .cache(cache)
+                .lock(lockMode, lockFile)
+                .strip(strip ? new File(cacheDir, "stripped") : null)
+                .launchFiles(jvmArgFile, loadOrderFile)
+                .bundle(nativesBundle, bundlePreset)
+                .metricsFile(metricsFile)
+                .jarUnpacker(jarUnpacker)
+                .changeHint(new BuildContextChangeHint(buildContext))
+                .log(new MavenUnpackLog(getLog()));
+        if (unpackCoordinator != null) {
+            unpacker.coordinator(unpackCoordinator);
+        }
+        return unpacker;
+    }
+
+    /**
+     * Type erasure in <code>final Set<Artifact> artifacts = project.getArtifacts();</code> is the reasons for @SuppressWarnings("unchecked")
+     */
+    private List<NativesJar> nativesJars() throws MojoExecutionException {
+        @SuppressWarnings("unchecked")
+        final Set<Artifact> artifacts = project.getArtifacts();
+        final NativesResolver resolver = new NativesResolver(repositorySystem, repositorySession, remoteRepositories, getLog());
+        if (!resolveNativesOnly) {
+            resolver.resolveAll(artifacts);
+        }
+        final List<Artifact> natives = resolver.resolve(artifacts, nativesScope, nativeArtifacts, derivedPlatforms());
+        final List<NativesJar> jars = new ArrayList<>();
+        for (Artifact artifact : natives) {
+            NativesJar jar = new NativesJar(stateKey(artifact), artifact.getVersion(), artifact.getFile(),
+                    artifact.getClassifier().substring("natives-".length()));
+            if (artifactFilters != null) {
+                final String id = artifact.getGroupId() + ":" + artifact.getArtifactId();
+                for (NativesFilter artifactFilter : artifactFilters) {
+                    if (id.equals(artifactFilter.getArtifact())) {
+                        jar = jar.filter(artifactFilter.getIncludes(), artifactFilter.getExcludes());
+                    }
+                }
+            }
+            jars.add(jar);
+        }
+        return jars;
+    }
+
+    /**
+     * @return the prefixes of the platform routes mapped to their platforms, in declaration order
+     */
+    private Map<String, String> routes() throws MojoExecutionException {
+        final Map<String, String> routes = new LinkedHashMap<>();
+        if (platformRoutes != null) {
+            for (PlatformRoute route : platformRoutes) {
+                if (route.getPrefix() == null || route.getPrefix().isEmpty() || route.getPlatform() == null || route.getPlatform().isEmpty()) {
+                    throw new MojoExecutionException("Every platformRoute needs a prefix and a platform");
+                }
+                routes.put(route.getPrefix(), route.getPlatform());
+            }
+        }
+        return routes;
+    }
+
+    /**
+     * @return the platforms to derive natives for
+     */
+    private List<String> derivedPlatforms() {
+        final List<String> derived = new ArrayList<>();
+        if (platforms != null) {
+            derived.addAll(platforms);
+        }
+        if (autoDetectPlatform) {
+            for (String platform : new PlatformDetector(platformMappings).platformsFor(PlatformDetector.currentHost())) {
+                if (!derived.contains(platform)) {
+                    derived.add(platform);
+                }
+            }
+        }
+        return derived;
+    }
+
+    private boolean deduplicateReactor() {
+        return reactorDeduplication && reactorProjects != null && reactorProjects.size() > 1;
+    }
+
+    private static String stateKey(Artifact artifact) {
+        return String.format("%s:%s:%s:%s", artifact.getGroupId(), artifact.getArtifactId(), artifact.getType(), artifact.getClassifier());
+    }
+
+    /**
+     * Skips the content check of the jars m2e reports unchanged.
+     */
+    private static final class BuildContextChangeHint implements NativesUnpacker.ChangeHint {
+
+        private final BuildContext buildContext;
+
+        BuildContextChangeHint(BuildContext buildContext) {
+            this.buildContext = buildContext;
+        }
+
+        @Override
+        public boolean isUnchanged(File jar) {
+            return buildContext.isIncremental() && !buildContext.hasDelta(jar);
+        }
+    }
+
+    static final class MavenUnpackLog implements UnpackLog {
+
+        private final Log log;
+
+        MavenUnpackLog(Log log) {
+            this.log = log;
+        }
+
+        @Override
+        public boolean isDebugEnabled() {
+            return log.isDebugEnabled();
+        }
+
+        @Override
+        public void debug(String message) {
+            log.debug(message);
+        }
+
+        @Override
+        public void info(String message) {
+            log.info(message);
+        }
+
+        @Override
+        public void warn(String message) {
+            log.warn(message);
+        }
+
+        @Override
+        public void error(String message) {
+            log.error(message);
+        }
+    }
+
     public void setMavenProject(MavenProject mavenProject) {
         this.project = mavenProject;
     }
@@ -139,6 +547,10 @@ final class CopyNativesMojo extends AbstractMojo {
         this.nativesTargetDir = nativesTargetDir2;
     }
 
+    public void setSeparateDirs(boolean separateDirs) {
+        this.separateDirs = separateDirs;
+    }
+
     public void setJarUnpacker(JarUnpackable jarUnpacker) {
         this.jarUnpacker = jarUnpacker;
     }
@@ -147,6 +559,154 @@ final class CopyNativesMojo extends AbstractMojo {
         this.buildContext = buildContext;
     }
 
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    public void setPruneStale(boolean pruneStale) {
+        this.pruneStale = pruneStale;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public void setCopyStrategy(UnpackOptions.CopyStrategy copyStrategy) {
+        this.copyStrategy = copyStrategy;
+    }
+
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public void setSkipIdentical(boolean skipIdentical) {
+        this.skipIdentical = skipIdentical;
+    }
+
+    public void setAtomicWrites(boolean atomicWrites) {
+        this.atomicWrites = atomicWrites;
+    }
+
+    public void setSwapDirectory(boolean swapDirectory) {
+        this.swapDirectory = swapDirectory;
+    }
+
+    public void setUseCache(boolean useCache) {
+        this.useCache = useCache;
+    }
+
+    public void setCacheDir(File cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    public void setReactorDeduplication(boolean reactorDeduplication) {
+        this.reactorDeduplication = reactorDeduplication;
+    }
+
+    public void setReactorCacheDir(File reactorCacheDir) {
+        this.reactorCacheDir = reactorCacheDir;
+    }
+
+    public void setResolveNativesOnly(boolean resolveNativesOnly) {
+        this.resolveNativesOnly = resolveNativesOnly;
+    }
+
+    public void setNativesScope(String nativesScope) {
+        this.nativesScope = nativesScope;
+    }
+
+    public void setNativeArtifacts(List<String> nativeArtifacts) {
+        this.nativeArtifacts = nativeArtifacts;
+    }
+
+    public void setRepositorySystem(RepositorySystem repositorySystem) {
+        this.repositorySystem = repositorySystem;
+    }
+
+    public void setRepositorySession(RepositorySystemSession repositorySession) {
+        this.repositorySession = repositorySession;
+    }
+
+    public void setRemoteRepositories(List<RemoteRepository> remoteRepositories) {
+        this.remoteRepositories = remoteRepositories;
+    }
+
+    public void setReactorProjects(List<MavenProject> reactorProjects) {
+        this.reactorProjects = reactorProjects;
+    }
+
+    public void setUnpackCoordinator(UnpackCoordinator unpackCoordinator) {
+        this.unpackCoordinator = unpackCoordinator;
+    }
+
+    public void setMetricsFile(File metricsFile) {
+        this.metricsFile = metricsFile;
+    }
+
+    public void setStrip(boolean strip) {
+        this.strip = strip;
+    }
+
+    public void setJvmArgFile(File jvmArgFile) {
+        this.jvmArgFile = jvmArgFile;
+    }
+
+    public void setLoadOrderFile(File loadOrderFile) {
+        this.loadOrderFile = loadOrderFile;
+    }
+
+    public void setNativesBundle(File nativesBundle) {
+        this.nativesBundle = nativesBundle;
+    }
+
+    public void setBundlePreset(int bundlePreset) {
+        this.bundlePreset = bundlePreset;
+    }
+
+    public void setLockMode(LockMode lockMode) {
+        this.lockMode = lockMode;
+    }
+
+    public void setLockFile(File lockFile) {
+        this.lockFile = lockFile;
+    }
+
+    public void setAutoDetectPlatform(boolean autoDetectPlatform) {
+        this.autoDetectPlatform = autoDetectPlatform;
+    }
+
+    public void setPlatformMappings(Map<String, String> platformMappings) {
+        this.platformMappings = platformMappings;
+    }
+
+    public void setPlatformRoutes(List<PlatformRoute> platformRoutes) {
+        this.platformRoutes = platformRoutes;
+    }
+
+    public void setUnpackBudget(long unpackBudget) {
+        this.unpackBudget = unpackBudget;
+    }
+
+    public void setLargeWrites(int largeWrites) {
+        this.largeWrites = largeWrites;
+    }
+
+    public void setLargeEntrySize(long largeEntrySize) {
+        this.largeEntrySize = largeEntrySize;
+    }
+
+    public void setIncludes(List<String> includes) {
+        this.includes = includes;
+    }
+
+    public void setExcludes(List<String> excludes) {
+        this.excludes = excludes;
+    }
+
+    public void setArtifactFilters(List<NativesFilter> artifactFilters) {
+        this.artifactFilters = artifactFilters;
+    }
+
     public List<String> getPlatforms() {
         return platforms;
     }
@@ -0,0 +1,42 @@
+package com.googlecode.mavennatives.nativedependencies;
+
+import java.util.List;
+
+/**
+ * Include and exclude patterns applied to the entries of the natives jars of one groupId:artifactId.
+ */
+public class NativesFilter {
+
+    /**
+     * The groupId:artifactId the patterns apply to.
+     */
+    private String artifact;
+
+    private List<String> includes;
+
+    private List<String> excludes;
+
+    public String getArtifact() {
+        return artifact;
+    }
+
+    public void setArtifact(String artifact) {
+        this.artifact = artifact;
+    }
+
+    public List<String> getIncludes() {
+        return includes;
+    }
+
+    public void setIncludes(List<String> includes) {
+        this.includes = includes;
+    }
+
+    public List<String> getExcludes() {
+        return excludes;
+    }
+
+    public void setExcludes(List<String> excludes) {
+        this.excludes = excludes;
+    }
+}
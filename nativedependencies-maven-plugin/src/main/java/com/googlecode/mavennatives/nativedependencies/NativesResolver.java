@@ -0,0 +1,197 @@
+package com.googlecode.mavennatives.nativedependencies;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.artifact.DefaultArtifact;
+import org.apache.maven.artifact.handler.DefaultArtifactHandler;
+import org.apache.maven.artifact.versioning.VersionRange;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.repository.RemoteRepository;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
+import org.eclipse.aether.resolution.ArtifactResult;
+
+/**
+ * Resolves the files of a dependency graph that was only collected: those of every artifact, as Maven does for mojos
+ * requiring dependency resolution, or those of the natives artifacts alone, so no other jar of the test classpath is
+ * downloaded or checked. All the files are requested at once.
+ * <p>
+ * Natives artifacts are those with a natives-* classifier, limited to a scope and to groupId:artifactId selectors when
+ * given. Selected artifacts without any natives artifact of their own groupId:artifactId in the graph get their
+ * natives derived from their coordinates: the same artifact with a natives-&lt;platform&gt; classifier for every
+ * selected platform. Derived natives that do not exist are skipped.
+ */
+final class NativesResolver {
+
+    private static final String NATIVES = "natives-";
+
+    private final RepositorySystem repositorySystem;
+    private final RepositorySystemSession session;
+    private final List<RemoteRepository> repositories;
+    private final Log log;
+
+    NativesResolver(RepositorySystem repositorySystem, RepositorySystemSession session, List<RemoteRepository> repositories, Log log) {
+        this.repositorySystem = repositorySystem;
+        this.session = session;
+        this.repositories = repositories;
+        this.log = log;
+    }
+
+    /**
+     * Resolves the files of every artifact that has none yet.
+     *
+     * @throws MojoExecutionException when an artifact can not be resolved
+     */
+    void resolveAll(Collection<Artifact> artifacts) throws MojoExecutionException {
+        final List<Artifact> unresolved = new ArrayList<>();
+        for (Artifact artifact : artifacts) {
+            if (artifact.getFile() == null) {
+                unresolved.add(artifact);
+            }
+        }
+        if (unresolved.isEmpty()) {
+            return;
+        }
+        final List<ArtifactResult> results = resolveFiles(unresolved);
+        for (int i = 0; i < unresolved.size(); i++) {
+            final ArtifactResult result = results.get(i);
+            if (!result.isResolved()) {
+                throw new MojoExecutionException(String.format("Unable to resolve %s: %s", unresolved.get(i), result.getExceptions()));
+            }
+            unresolved.get(i).setFile(result.getArtifact().getFile());
+        }
+        log.info(String.format("Resolved %d dependencies", unresolved.size()));
+    }
+
+    /**
+     * @param scope     the widest scope of the natives, compile, runtime or test, or provided or system for those only
+     * @param selectors groupId:artifactId of the artifacts whose natives to resolve, * matching any id; null or empty
+     *                  for every artifact
+     * @param platforms the platforms to derive natives for
+     * @return the natives artifacts, with their files
+     * @throws MojoExecutionException when a natives artifact of the graph can not be resolved
+     */
+    List<Artifact> resolve(Collection<Artifact> artifacts, String scope, List<String> selectors, List<String> platforms)
+            throws MojoExecutionException {
+        final Set<String> withNatives = new HashSet<>();
+        for (Artifact artifact : artifacts) {
+            if (isNatives(artifact)) {
+                withNatives.add(artifact.getGroupId() + ":" + artifact.getArtifactId());
+            }
+        }
+        final List<Artifact> natives = new ArrayList<>();
+        final Map<Artifact, Boolean> unresolved = new LinkedHashMap<>();
+        for (Artifact artifact : artifacts) {
+            if (!inScope(artifact.getScope(), scope) || !selected(artifact, selectors)) {
+                continue;
+            }
+            if (isNatives(artifact)) {
+                if (artifact.getFile() != null) {
+                    natives.add(artifact);
+                } else {
+                    unresolved.put(artifact, Boolean.TRUE);
+                }
+            } else if (selectors != null && !selectors.isEmpty()
+                    && !withNatives.contains(artifact.getGroupId() + ":" + artifact.getArtifactId())) {
+                if (platforms.isEmpty()) {
+                    log.warn(String.format("Set platforms or autoDetectPlatform to derive the natives of %s", artifact));
+                }
+                for (String platform : platforms) {
+                    unresolved.put(derived(artifact, platform), Boolean.FALSE);
+                }
+            }
+        }
+        if (unresolved.isEmpty()) {
+            return natives;
+        }
+        final int resolvedAlready = natives.size();
+        final List<ArtifactResult> results = resolveFiles(unresolved.keySet());
+        int i = 0;
+        for (Map.Entry<Artifact, Boolean> entry : unresolved.entrySet()) {
+            final ArtifactResult result = results.get(i++);
+            final Artifact artifact = entry.getKey();
+            if (result.isResolved()) {
+                artifact.setFile(result.getArtifact().getFile());
+                natives.add(artifact);
+            } else if (entry.getValue()) {
+                throw new MojoExecutionException(String.format("Unable to resolve %s: %s", artifact, result.getExceptions()));
+            } else {
+                log.debug("No derived natives " + artifact);
+            }
+        }
+        log.info(String.format("Resolved %d natives artifacts, %d were resolved already", natives.size() - resolvedAlready, resolvedAlready));
+        return natives;
+    }
+
+    /**
+     * @return the results of resolving the artifacts, in the same order, resolved or not
+     */
+    private List<ArtifactResult> resolveFiles(Collection<Artifact> artifacts) {
+        final List<ArtifactRequest> requests = new ArrayList<>();
+        for (Artifact artifact : artifacts) {
+            final String extension = artifact.getArtifactHandler() != null ? artifact.getArtifactHandler().getExtension() : "jar";
+            requests.add(new ArtifactRequest(new org.eclipse.aether.artifact.DefaultArtifact(artifact.getGroupId(),
+                    artifact.getArtifactId(), artifact.getClassifier(), extension, artifact.getBaseVersion()), repositories, null));
+        }
+        try {
+            return repositorySystem.resolveArtifacts(session, requests);
+        } catch (ArtifactResolutionException e) {
+            return e.getResults();
+        }
+    }
+
+    private static boolean isNatives(Artifact artifact) {
+        return artifact.getClassifier() != null && artifact.getClassifier().startsWith(NATIVES);
+    }
+
+    private static boolean selected(Artifact artifact, List<String> selectors) {
+        if (selectors == null || selectors.isEmpty()) {
+            return true;
+        }
+        for (String selector : selectors) {
+            final String[] ids = selector.trim().split(":");
+            if (ids.length == 2 && matches(ids[0], artifact.getGroupId()) && matches(ids[1], artifact.getArtifactId())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matches(String pattern, String id) {
+        return "*".equals(pattern) || pattern.equals(id);
+    }
+
+    /**
+     * Follows the scopes of a classpath: compile holds compile, provided and system dependencies, runtime compile and
+     * runtime ones, test all of them.
+     */
+    static boolean inScope(String artifactScope, String scope) {
+        final String actual = artifactScope != null ? artifactScope : Artifact.SCOPE_COMPILE;
+        if (scope == null || Artifact.SCOPE_TEST.equals(scope)) {
+            return true;
+        }
+        if (Artifact.SCOPE_COMPILE.equals(scope)) {
+            return Arrays.asList(Artifact.SCOPE_COMPILE, Artifact.SCOPE_PROVIDED, Artifact.SCOPE_SYSTEM).contains(actual);
+        }
+        if (Artifact.SCOPE_RUNTIME.equals(scope)) {
+            return Arrays.asList(Artifact.SCOPE_COMPILE, Artifact.SCOPE_RUNTIME).contains(actual);
+        }
+        return scope.equals(actual);
+    }
+
+    private static Artifact derived(Artifact artifact, String platform) {
+        return new DefaultArtifact(artifact.getGroupId(), artifact.getArtifactId(), VersionRange.createFromVersion(artifact.getVersion()),
+                artifact.getScope(), "jar", NATIVES + platform, new DefaultArtifactHandler("jar"));
+    }
+}
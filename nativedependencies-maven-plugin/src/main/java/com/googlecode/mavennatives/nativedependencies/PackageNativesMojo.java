@@ -0,0 +1,75 @@
+package com.googlecode.mavennatives.nativedependencies;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.googlecode.mavennatives.core.NativesUnpacker;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Component;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProjectHelper;
+
+/**
+ * Unpacks native dependencies like the copy goal, then packs nativesTargetDir into a single natives archive for
+ * deployment: the files are stored uncompressed at aligned offsets behind an index, so nativedependencies-loader maps
+ * or copies them straight out of the archive instead of inflating jar entries at startup. With separateDirs, the
+ * natives of every platform sit under a dir of their own inside the archive.
+ */
+@Mojo(name = "package-natives", requiresProject = true, requiresDependencyCollection = ResolutionScope.TEST, defaultPhase = LifecyclePhase.PACKAGE)
+final class PackageNativesMojo extends CopyNativesMojo {
+
+    @Parameter(defaultValue = "${project.build.directory}/${project.build.finalName}.natives")
+    private File nativesArchive;
+
+    /**
+     * Alignment in bytes of every file in nativesArchive, a power of two. 4096 matches the memory pages of most
+     * machines, 16384 or 65536 those of some ARM64 ones.
+     */
+    @Parameter(defaultValue = "4096")
+    private int archiveAlignment;
+
+    /**
+     * Attach nativesArchive to the project, as an artifact of type natives, so it is installed and deployed with it.
+     */
+    @Parameter(defaultValue = "true")
+    private boolean attachArchive;
+
+    /**
+     * @component
+     */
+    @Component
+    private MavenProjectHelper projectHelper;
+
+    @Override
+    NativesUnpacker nativesUnpacker() throws MojoExecutionException {
+        return super.nativesUnpacker().archive(nativesArchive, archiveAlignment);
+    }
+
+    @Override
+    void unpack() throws IOException, MojoExecutionException {
+        super.unpack();
+        if (attachArchive) {
+            projectHelper.attachArtifact(getProject(), "natives", nativesArchive);
+        }
+    }
+
+    public void setNativesArchive(File nativesArchive) {
+        this.nativesArchive = nativesArchive;
+    }
+
+    public void setArchiveAlignment(int archiveAlignment) {
+        this.archiveAlignment = archiveAlignment;
+    }
+
+    public void setAttachArchive(boolean attachArchive) {
+        this.attachArchive = attachArchive;
+    }
+
+    public void setProjectHelper(MavenProjectHelper projectHelper) {
+        this.projectHelper = projectHelper;
+    }
+}
@@ -0,0 +1,34 @@
+package com.googlecode.mavennatives.nativedependencies;
+
+/**
+ * Routes the entries of natives jars whose names start with a prefix, e.g. linux/ in a jar holding the natives of
+ * several platforms, to a platform.
+ */
+public class PlatformRoute {
+
+    /**
+     * The start of the entry names, left out of the unpacked paths.
+     */
+    private String prefix;
+
+    /**
+     * The platform the entries belong to, e.g. linux64.
+     */
+    private String platform;
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public void setPrefix(String prefix) {
+        this.prefix = prefix;
+    }
+
+    public String getPlatform() {
+        return platform;
+    }
+
+    public void setPlatform(String platform) {
+        this.platform = platform;
+    }
+}
@@ -0,0 +1,46 @@
+package com.googlecode.mavennatives.nativedependencies;
+
+import java.io.IOException;
+
+import com.googlecode.mavennatives.core.NativesLockException;
+import com.googlecode.mavennatives.core.NativesWatcher;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+
+/**
+ * Unpacks native dependencies like the copy goal, then keeps nativesTargetDir in sync with the natives artifacts until
+ * the build is stopped: whenever an artifact file is written again, e.g. by mvn install of a JNI module into the local
+ * repository or by its package phase in a reactor target dir, the changed entries of that artifact are unpacked.
+ */
+@Mojo(name = "watch", requiresProject = true, requiresDependencyCollection = ResolutionScope.TEST)
+final class WatchNativesMojo extends CopyNativesMojo {
+
+    /**
+     * Milliseconds natives artifacts have to stay unchanged before they are unpacked, so an artifact written in several
+     * steps, or several artifacts written by one build, are unpacked once.
+     */
+    @Parameter(defaultValue = "200")
+    private long watchDebounce;
+
+    @Override
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        try (NativesWatcher watcher = new NativesWatcher(nativesUnpacker(), watchDebounce, new MavenUnpackLog(getLog()))) {
+            getLog().info("Watching natives, press Ctrl+C to stop");
+            watcher.run();
+        } catch (NativesLockException e) {
+            throw new MojoFailureException(e.getMessage(), e);
+        } catch (IOException e) {
+            throw new MojoFailureException("IOException prevented watching natives: " + e.getLocalizedMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void setWatchDebounce(long watchDebounce) {
+        this.watchDebounce = watchDebounce;
+    }
+}
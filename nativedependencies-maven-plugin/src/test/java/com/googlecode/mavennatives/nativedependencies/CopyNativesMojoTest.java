@@ -1,11 +1,31 @@
 package com.googlecode.mavennatives.nativedependencies;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import com.googlecode.mavennatives.core.JarUnpackable;
+import com.googlecode.mavennatives.core.LockMode;
+import com.googlecode.mavennatives.core.NativesLock;
+import com.googlecode.mavennatives.core.UnpackOptions;
+import com.googlecode.mavennatives.core.UnpackResult;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
@@ -15,11 +35,23 @@ import org.apache.maven.plugin.testing.ArtifactStubFactory;
 import org.apache.maven.project.MavenProject;
 import org.jmock.Expectations;
 import org.jmock.Mockery;
+import org.hamcrest.Description;
+import org.hamcrest.TypeSafeMatcher;
+import org.jmock.api.Invocation;
 import org.jmock.integration.junit4.JMock;
+import org.jmock.lib.action.CustomAction;
+import org.jmock.lib.concurrent.Synchroniser;
 import org.jmock.lib.legacy.ClassImposteriser;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.resolution.ArtifactRequest;
+import org.eclipse.aether.resolution.ArtifactResolutionException;
+import org.eclipse.aether.resolution.ArtifactResult;
 import org.sonatype.plexus.build.incremental.DefaultBuildContext;
 
 @RunWith(JMock.class)
@@ -29,6 +61,7 @@ public class CopyNativesMojoTest
 	{
 		{
 			setImposteriser(ClassImposteriser.INSTANCE);
+			setThreadingPolicy(new Synchroniser());
 		}
 	};
 	private CopyNativesMojo mojo;
@@ -36,8 +69,12 @@ public class CopyNativesMojoTest
 	private MavenProject mavenProject;
 	private File nativesTargetDir;
 	private ArtifactStubFactory artifactFactory;
+	private RepositorySystem repositorySystem;
     private static final Log LOG = new SystemStreamLog();
 
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
 
     @Before
 	public void setUp()
@@ -51,6 +88,10 @@ public class CopyNativesMojoTest
 		mojo.setNativesTargetDir(nativesTargetDir);
 		artifactFactory = new ArtifactStubFactory();
 		mojo.setBuildContext(new DefaultBuildContext());
+		mojo.setThreads(1);
+		repositorySystem = context.mock(RepositorySystem.class);
+		mojo.setRepositorySystem(repositorySystem);
+		mojo.setRepositorySession(context.mock(RepositorySystemSession.class));
 	}
 	
 	
@@ -75,7 +116,7 @@ public class CopyNativesMojoTest
 	}
 	
 	@Test
-	public void executeWithoutNativeDependenciesOnlyCreatesTheNativesDir() throws MojoExecutionException, MojoFailureException, IOException
+	public void executeWithoutNativeDependenciesOnlyCreatesTheNativesDir() throws MojoExecutionException, MojoFailureException, IOException, ArtifactResolutionException
 	{
 		final Set<Artifact> artifacts = new HashSet<>();
 			
@@ -92,6 +133,8 @@ public class CopyNativesMojoTest
                     LOG.debug(String.valueOf(mkdirs));
                 }
 				oneOf(mavenProject).getArtifacts();will(returnValue(artifacts));
+				oneOf(repositorySystem).resolveArtifacts(with(any(RepositorySystemSession.class)), with(any(Collection.class)));
+				will(resolving(new ArrayList<String>(), classpathFiles()));
 			}
 		});
 		
@@ -99,7 +142,7 @@ public class CopyNativesMojoTest
 	}
 	
 	@Test
-	public void executeWithOneNativeDependenciesCallsTheUnpacker() throws MojoExecutionException, MojoFailureException, IOException
+	public void executeWithOneNativeDependenciesCallsTheUnpacker() throws MojoExecutionException, MojoFailureException, IOException, ArtifactResolutionException
 	{
 		final Set<Artifact> artifacts = new HashSet<>();
 			
@@ -120,7 +163,9 @@ public class CopyNativesMojoTest
                     LOG.debug(String.valueOf(mkdirs));
                 }
                 oneOf(mavenProject).getArtifacts();will(returnValue(artifacts));
-				oneOf(jarUnpacker).copyJarContent(nativeFile, nativesTargetDir);
+				oneOf(repositorySystem).resolveArtifacts(with(any(RepositorySystemSession.class)), with(any(Collection.class)));
+				will(resolving(new ArrayList<String>(), classpathFiles()));
+				oneOf(jarUnpacker).copyJarContent(with(equal(nativeFile)), with(equal(nativesTargetDir)), with(any(UnpackOptions.class)));
 			}
 		});
 		
@@ -128,7 +173,7 @@ public class CopyNativesMojoTest
 	}
 
 	@Test
-	public void executeWithPlatformsSpecifiedNativeDependenciesCallsTheUnpacker() throws MojoExecutionException, MojoFailureException, IOException
+	public void executeWithPlatformsSpecifiedNativeDependenciesCallsTheUnpacker() throws MojoExecutionException, MojoFailureException, IOException, ArtifactResolutionException
 	{
 		mojo.setPlatforms(Arrays.asList("windows", "linux"));
 		final Set<Artifact> artifacts = new HashSet<>();
@@ -159,11 +204,519 @@ public class CopyNativesMojoTest
                     LOG.debug(String.valueOf(mkdirs));
                 }
                 oneOf(mavenProject).getArtifacts();will(returnValue(artifacts));
-				oneOf(jarUnpacker).copyJarContent(nativeFile, nativesTargetDir);
-				oneOf(jarUnpacker).copyJarContent(nativeFile3, nativesTargetDir);
+				oneOf(repositorySystem).resolveArtifacts(with(any(RepositorySystemSession.class)), with(any(Collection.class)));
+				will(resolving(new ArrayList<String>(), classpathFiles()));
+				oneOf(jarUnpacker).listEntries(with(equal(nativeFile)), with(any(UnpackOptions.class)));will(returnValue(Arrays.asList("lib.dll")));
+				oneOf(jarUnpacker).listEntries(with(equal(nativeFile3)), with(any(UnpackOptions.class)));will(returnValue(Arrays.asList("lib.so")));
+				oneOf(jarUnpacker).copyJarContent(with(equal(nativeFile)), with(equal(nativesTargetDir)), with(any(UnpackOptions.class)));
+				oneOf(jarUnpacker).copyJarContent(with(equal(nativeFile3)), with(equal(nativesTargetDir)), with(any(UnpackOptions.class)));
 			}
 		});
 		
 		mojo.execute();
 	}	
+
+	@Test
+	public void executeWithPlatformRoutesUnpacksJarsOfOtherPlatformsThroughTheRoutes() throws MojoExecutionException, MojoFailureException, IOException
+	{
+		mojo.setPlatforms(Arrays.asList("linux"));
+		mojo.setSeparateDirs(true);
+		final PlatformRoute route = new PlatformRoute();
+		route.setPrefix("linux/");
+		route.setPlatform("linux");
+		mojo.setPlatformRoutes(Arrays.asList(route));
+		final Set<Artifact> artifacts = new HashSet<>();
+		Artifact nativeArtifact = artifactFactory.createArtifact("groupid2","artifactid2","2.0","compile","jar","natives-all");
+		final File nativeFile = new File("test1");
+		nativeArtifact.setFile(nativeFile);
+		artifacts.add(nativeArtifact);
+
+		context.checking(new Expectations()
+		{
+			{
+				oneOf(nativesTargetDir).mkdirs();
+				oneOf(mavenProject).getArtifacts();will(returnValue(artifacts));
+				oneOf(jarUnpacker).copyJarContent(with(equal(nativeFile)), with(equal(nativesTargetDir)), with(new TypeSafeMatcher<UnpackOptions>()
+				{
+					@Override
+					public boolean matchesSafely(UnpackOptions options)
+					{
+						return "linux/libjni.so".equals(options.targetName("linux/libjni.so")) && options.targetName("windows/jni.dll") == null;
+					}
+
+					@Override
+					public void describeTo(Description description)
+					{
+						description.appendText("options routing linux/ entries to the linux dir");
+					}
+				}));
+			}
+		});
+
+		mojo.execute();
+	}
+
+	@Test
+	public void executeIncrementalSkipsUnchangedNativeDependencies() throws Exception
+	{
+		final File targetDir = temporaryFolder.newFolder("natives");
+		mojo.setNativesTargetDir(targetDir);
+		mojo.setIncremental(true);
+
+		final File nativeFile = temporaryFolder.newFile("natives-linux.jar");
+		writeBytes(nativeFile, new byte[] { 1, 2, 3 });
+		Artifact nativeArtifact = artifactFactory.createArtifact("groupid2","artifactid2","2.0","compile","jar","natives-linux");
+		nativeArtifact.setFile(nativeFile);
+		final Set<Artifact> artifacts = new HashSet<>();
+		artifacts.add(nativeArtifact);
+
+		final UnpackResult result = new UnpackResult();
+		result.addWrittenFile("liba.so");
+		writeBytes(new File(targetDir, "liba.so"), new byte[] { 4 });
+
+		context.checking(new Expectations()
+		{
+			{
+				exactly(3).of(mavenProject).getArtifacts();will(returnValue(artifacts));
+				oneOf(jarUnpacker).copyJarContent(with(equal(nativeFile)), with(equal(targetDir)), with(any(UnpackOptions.class)));will(returnValue(result));
+			}
+		});
+
+		mojo.execute();
+		mojo.execute();
+
+		// same content, different timestamp: the hash decides
+		assertTrue(nativeFile.setLastModified(nativeFile.lastModified() - 10000));
+		mojo.execute();
+	}
+
+	@Test
+	public void executeWritesAMetricsReport() throws Exception
+	{
+		final File targetDir = temporaryFolder.newFolder("natives");
+		final File metricsFile = new File(temporaryFolder.getRoot(), "target/metrics.json");
+		mojo.setNativesTargetDir(targetDir);
+		mojo.setIncremental(true);
+		mojo.setMetricsFile(metricsFile);
+
+		final File nativeFile = temporaryFolder.newFile("natives-linux.jar");
+		writeBytes(nativeFile, new byte[] { 1, 2, 3 });
+		Artifact nativeArtifact = artifactFactory.createArtifact("groupid2","artifactid2","2.0","compile","jar","natives-linux");
+		nativeArtifact.setFile(nativeFile);
+		final Set<Artifact> artifacts = new HashSet<>();
+		artifacts.add(nativeArtifact);
+
+		final UnpackResult result = new UnpackResult();
+		result.addWrittenFile("liba.so");
+		result.addTransfer(10, 20, 0, 0);
+		writeBytes(new File(targetDir, "liba.so"), new byte[] { 4 });
+
+		context.checking(new Expectations()
+		{
+			{
+				exactly(2).of(mavenProject).getArtifacts();will(returnValue(artifacts));
+				oneOf(jarUnpacker).copyJarContent(with(equal(nativeFile)), with(equal(targetDir)), with(any(UnpackOptions.class)));will(returnValue(result));
+			}
+		});
+
+		mojo.execute();
+		final String first = new String(Files.readAllBytes(metricsFile.toPath()), StandardCharsets.UTF_8);
+		assertTrue(first.contains("\"artifactsUnpacked\": 1,"));
+		assertTrue(first.contains("\"key\": \"groupid2:artifactid2:jar:natives-linux\""));
+		assertTrue(first.contains("\"bytesWritten\": 20,"));
+
+		mojo.execute();
+		final String second = new String(Files.readAllBytes(metricsFile.toPath()), StandardCharsets.UTF_8);
+		assertTrue(second.contains("\"artifactsUpToDate\": 1,"));
+		assertTrue(second.contains("\"status\": \"up-to-date\""));
+	}
+
+	@Test
+	public void executeIncrementalUnpacksAgainWhenAFileIsMissing() throws Exception
+	{
+		final File targetDir = temporaryFolder.newFolder("natives");
+		mojo.setNativesTargetDir(targetDir);
+		mojo.setIncremental(true);
+
+		final File nativeFile = temporaryFolder.newFile("natives-linux.jar");
+		writeBytes(nativeFile, new byte[] { 1, 2, 3 });
+		Artifact nativeArtifact = artifactFactory.createArtifact("groupid2","artifactid2","2.0","compile","jar","natives-linux");
+		nativeArtifact.setFile(nativeFile);
+		final Set<Artifact> artifacts = new HashSet<>();
+		artifacts.add(nativeArtifact);
+
+		final UnpackResult result = new UnpackResult();
+		result.addWrittenFile("liba.so");
+
+		context.checking(new Expectations()
+		{
+			{
+				exactly(2).of(mavenProject).getArtifacts();will(returnValue(artifacts));
+				exactly(2).of(jarUnpacker).copyJarContent(with(equal(nativeFile)), with(equal(targetDir)), with(any(UnpackOptions.class)));will(returnValue(result));
+			}
+		});
+
+		mojo.execute();
+		mojo.execute();
+	}
+
+	@Test
+	public void executeWithPruneStaleDeletesFilesNoArtifactProvidesAnymore() throws Exception
+	{
+		final File targetDir = temporaryFolder.newFolder("natives");
+		mojo.setNativesTargetDir(targetDir);
+		mojo.setPruneStale(true);
+
+		final File nativeFile = temporaryFolder.newFile("natives-linux.jar");
+		final File nativeFile2 = temporaryFolder.newFile("natives-linux-2.jar");
+		final Artifact nativeArtifact = artifactFactory.createArtifact("groupid2","artifactid2","2.0","compile","jar","natives-linux");
+		nativeArtifact.setFile(nativeFile);
+		final Artifact droppedArtifact = artifactFactory.createArtifact("groupid3","artifactid3","1.0","compile","jar","natives-linux");
+		droppedArtifact.setFile(nativeFile2);
+		final Set<Artifact> artifacts = new HashSet<>(Arrays.asList(nativeArtifact, droppedArtifact));
+		final Set<Artifact> upgradedArtifacts = new HashSet<>(Arrays.asList(nativeArtifact));
+
+		final UnpackResult result = new UnpackResult();
+		result.addWrittenFile("liba.so");
+		result.addWrittenFile("liba-1.0.so");
+		final UnpackResult upgradedResult = new UnpackResult();
+		upgradedResult.addWrittenFile("liba.so");
+		final UnpackResult droppedResult = new UnpackResult();
+		droppedResult.addWrittenFile("sub/libb.so");
+		for (String file : Arrays.asList("liba.so", "liba-1.0.so", "sub/libb.so", "unknown.so"))
+		{
+			new File(targetDir, file).getParentFile().mkdirs();
+			writeBytes(new File(targetDir, file), new byte[] { 1 });
+		}
+
+		context.checking(new Expectations()
+		{
+			{
+				oneOf(mavenProject).getArtifacts();will(returnValue(artifacts));
+				oneOf(mavenProject).getArtifacts();will(returnValue(upgradedArtifacts));
+				oneOf(jarUnpacker).listEntries(with(equal(nativeFile)), with(any(UnpackOptions.class)));will(returnValue(Arrays.asList("liba.so", "liba-1.0.so")));
+				oneOf(jarUnpacker).listEntries(with(equal(nativeFile2)), with(any(UnpackOptions.class)));will(returnValue(Arrays.asList("sub/libb.so")));
+				oneOf(jarUnpacker).copyJarContent(with(equal(nativeFile)), with(equal(targetDir)), with(any(UnpackOptions.class)));will(returnValue(result));
+				oneOf(jarUnpacker).copyJarContent(with(equal(nativeFile2)), with(equal(targetDir)), with(any(UnpackOptions.class)));will(returnValue(droppedResult));
+				oneOf(jarUnpacker).copyJarContent(with(equal(nativeFile)), with(equal(targetDir)), with(any(UnpackOptions.class)));will(returnValue(upgradedResult));
+			}
+		});
+
+		mojo.execute();
+		mojo.execute();
+
+		assertTrue(new File(targetDir, "liba.so").isFile());
+		assertTrue(new File(targetDir, "unknown.so").isFile());
+		assertFalse(new File(targetDir, "liba-1.0.so").exists());
+		assertFalse(new File(targetDir, "sub").exists());
+	}
+
+	@Test
+	public void executeWithSwapDirectoryUnpacksIntoAStagingDirAndSwapsIt() throws Exception
+	{
+		final File targetDir = temporaryFolder.newFolder("natives");
+		writeBytes(new File(targetDir, "old.so"), new byte[] { 1 });
+		final File stagingDir = new File(temporaryFolder.getRoot(), "natives.staging");
+		mojo.setNativesTargetDir(targetDir);
+		mojo.setSwapDirectory(true);
+
+		final Set<Artifact> artifacts = new HashSet<>();
+		Artifact nativeArtifact = artifactFactory.createArtifact("groupid2","artifactid2","2.0","compile","jar","natives-linux");
+		final File nativeFile = new File("test1");
+		nativeArtifact.setFile(nativeFile);
+		artifacts.add(nativeArtifact);
+
+		context.checking(new Expectations()
+		{
+			{
+				oneOf(mavenProject).getArtifacts();will(returnValue(artifacts));
+				oneOf(jarUnpacker).copyJarContent(with(equal(nativeFile)), with(equal(stagingDir)), with(any(UnpackOptions.class)));
+			}
+		});
+
+		mojo.execute();
+
+		assertTrue(new File(targetDir, "old.so").isFile());
+		assertFalse(stagingDir.exists());
+		assertFalse(new File(temporaryFolder.getRoot(), "natives.previous").exists());
+	}
+
+	@Test
+	public void executeWithALockModeWritesAndVerifiesTheDigestsOfTheNatives() throws Exception
+	{
+		final File targetDir = temporaryFolder.newFolder("natives");
+		final File lockFile = new File(temporaryFolder.getRoot(), "natives.lock");
+		mojo.setNativesTargetDir(targetDir);
+		mojo.setSeparateDirs(true);
+		mojo.setIncremental(true);
+		mojo.setLockFile(lockFile);
+
+		final File nativeFile = temporaryFolder.newFile("natives-linux.jar");
+		Artifact nativeArtifact = artifactFactory.createArtifact("groupid2","artifactid2","2.0","compile","jar","natives-linux");
+		nativeArtifact.setFile(nativeFile);
+		final Set<Artifact> artifacts = new HashSet<>();
+		artifacts.add(nativeArtifact);
+
+		final UnpackResult result = new UnpackResult();
+		result.addWrittenFile("liba.so");
+		result.addDigest("liba.so", "0a1b");
+		final UnpackResult tamperedResult = new UnpackResult();
+		tamperedResult.addSkippedFile("liba.so");
+		tamperedResult.addDigest("liba.so", "ffff");
+
+		context.checking(new Expectations()
+		{
+			{
+				exactly(3).of(mavenProject).getArtifacts();will(returnValue(artifacts));
+				exactly(2).of(jarUnpacker).copyJarContent(with(equal(nativeFile)), with(equal(new File(targetDir, "linux"))), with(any(UnpackOptions.class)));will(returnValue(result));
+				oneOf(jarUnpacker).copyJarContent(with(equal(nativeFile)), with(equal(new File(targetDir, "linux"))), with(any(UnpackOptions.class)));will(returnValue(tamperedResult));
+			}
+		});
+
+		mojo.setLockMode(LockMode.WRITE);
+		mojo.execute();
+		final Map<String, String> locked = NativesLock.read(lockFile);
+		assertEquals(1, locked.size());
+		assertEquals("0a1b", locked.get("linux/liba.so"));
+
+		// the lock mode unpacks up to date artifacts again, so their digests are checked as well
+		mojo.setLockMode(LockMode.VERIFY);
+		mojo.execute();
+		try {
+			mojo.execute();
+			fail("a native differing from the lock file must fail the build");
+		} catch (MojoFailureException e) {
+			assertTrue(e.getMessage().contains("1 natives do not match"));
+		}
+	}
+
+	@Test
+	public void executeResolvesOnlyTheSelectedNativesOfTheCollectedGraph() throws Exception
+	{
+		mojo.setResolveNativesOnly(true);
+		mojo.setNativesScope("runtime");
+		mojo.setNativeArtifacts(Arrays.asList("groupid2:*", "groupid3:artifactid3"));
+		mojo.setPlatforms(Arrays.asList("linux"));
+
+		// collected only: no artifact has a file yet
+		final Set<Artifact> artifacts = new HashSet<>();
+		artifacts.add(artifactFactory.createArtifact("groupid1","artifactid1","1.0","compile","jar","natives-linux"));
+		artifacts.add(artifactFactory.createArtifact("groupid2","artifactid2","2.0","compile","jar",null));
+		artifacts.add(artifactFactory.createArtifact("groupid2","artifactid2","2.0","compile","jar","natives-linux"));
+		artifacts.add(artifactFactory.createArtifact("groupid2","artifactid4","2.0","test","jar","natives-linux"));
+		artifacts.add(artifactFactory.createArtifact("groupid3","artifactid3","3.0","compile","jar",null));
+		final File nativeFile = new File("groupid2-natives-linux.jar");
+		final File derivedFile = new File("groupid3-natives-linux.jar");
+		final List<String> requested = new ArrayList<>();
+
+		context.checking(new Expectations()
+		{
+			{
+				oneOf(nativesTargetDir).mkdirs();
+				oneOf(mavenProject).getArtifacts();will(returnValue(artifacts));
+				oneOf(repositorySystem).resolveArtifacts(with(any(RepositorySystemSession.class)), with(any(Collection.class)));
+				will(resolving(requested, files("groupid2", nativeFile, "groupid3", derivedFile)));
+				oneOf(jarUnpacker).listEntries(with(equal(nativeFile)), with(any(UnpackOptions.class)));will(returnValue(Arrays.asList("liba.so")));
+				oneOf(jarUnpacker).listEntries(with(equal(derivedFile)), with(any(UnpackOptions.class)));will(returnValue(Arrays.asList("libb.so")));
+				oneOf(jarUnpacker).copyJarContent(with(equal(nativeFile)), with(equal(nativesTargetDir)), with(any(UnpackOptions.class)));
+				oneOf(jarUnpacker).copyJarContent(with(equal(derivedFile)), with(equal(nativesTargetDir)), with(any(UnpackOptions.class)));
+			}
+		});
+
+		mojo.execute();
+
+		Collections.sort(requested);
+		assertEquals(Arrays.asList("groupid2:artifactid2:jar:natives-linux:2.0", "groupid3:artifactid3:jar:natives-linux:3.0"), requested);
+	}
+
+	@Test
+	public void executeResolvesTheWholeCollectedTestClasspathByDefault() throws Exception
+	{
+		// collected only: no artifact has a file yet
+		final Set<Artifact> artifacts = new HashSet<>();
+		artifacts.add(artifactFactory.createArtifact("groupid1","artifactid1","1.0","test","jar",null));
+		artifacts.add(artifactFactory.createArtifact("groupid2","artifactid2","2.0","compile","jar","natives-linux"));
+		final File nativeFile = new File("groupid2-natives-linux.jar");
+		final List<String> requested = new ArrayList<>();
+
+		context.checking(new Expectations()
+		{
+			{
+				oneOf(nativesTargetDir).mkdirs();
+				oneOf(mavenProject).getArtifacts();will(returnValue(artifacts));
+				oneOf(repositorySystem).resolveArtifacts(with(any(RepositorySystemSession.class)), with(any(Collection.class)));
+				will(resolving(requested, files("groupid1", new File("groupid1.jar"), "groupid2", nativeFile)));
+				oneOf(jarUnpacker).copyJarContent(with(equal(nativeFile)), with(equal(nativesTargetDir)), with(any(UnpackOptions.class)));
+			}
+		});
+
+		mojo.execute();
+
+		Collections.sort(requested);
+		assertEquals(Arrays.asList("groupid1:artifactid1:jar:1.0", "groupid2:artifactid2:jar:natives-linux:2.0"), requested);
+	}
+
+	@Test
+	public void executeFailsWhenADependencyOfTheTestClasspathCanNotBeResolved() throws Exception
+	{
+		final Set<Artifact> artifacts = new HashSet<>();
+		artifacts.add(artifactFactory.createArtifact("groupid1","artifactid1","1.0","test","jar",null));
+		Artifact nativeArtifact = artifactFactory.createArtifact("groupid2","artifactid2","2.0","compile","jar","natives-linux");
+		nativeArtifact.setFile(new File("test1"));
+		artifacts.add(nativeArtifact);
+
+		context.checking(new Expectations()
+		{
+			{
+				allowing(nativesTargetDir).mkdirs();
+				oneOf(mavenProject).getArtifacts();will(returnValue(artifacts));
+				oneOf(repositorySystem).resolveArtifacts(with(any(RepositorySystemSession.class)), with(any(Collection.class)));
+				will(resolving(new ArrayList<String>(), files()));
+			}
+		});
+
+		try
+		{
+			mojo.execute();
+			fail("unresolvable dependencies must fail the build");
+		}
+		catch (MojoExecutionException e)
+		{
+			assertTrue(e.getMessage().contains("groupid1:artifactid1"));
+		}
+	}
+
+	/**
+	 * Resolves every requested artifact to the file of its groupId, leaving those of other groupIds unresolved.
+	 */
+	private static CustomAction resolving(final List<String> requested, final Map<String, File> files)
+	{
+		return new CustomAction("resolve")
+		{
+			@Override
+			public Object invoke(Invocation invocation)
+			{
+				final List<ArtifactResult> results = new ArrayList<>();
+				for (Object request : (Collection<?>) invocation.getParameter(1))
+				{
+					final org.eclipse.aether.artifact.Artifact artifact = ((ArtifactRequest) request).getArtifact();
+					requested.add(artifact.toString());
+					final ArtifactResult result = new ArtifactResult((ArtifactRequest) request);
+					if (files.containsKey(artifact.getGroupId()))
+					{
+						result.setArtifact(artifact.setFile(files.get(artifact.getGroupId())));
+					}
+					results.add(result);
+				}
+				return results;
+			}
+		};
+	}
+
+	private static Map<String, File> files(Object... groupIdsAndFiles)
+	{
+		final Map<String, File> files = new HashMap<>();
+		for (int i = 0; i < groupIdsAndFiles.length; i += 2)
+		{
+			files.put((String) groupIdsAndFiles[i], (File) groupIdsAndFiles[i + 1]);
+		}
+		return files;
+	}
+
+	/**
+	 * The files of the jars the tests put next to their natives on the classpath.
+	 */
+	private static Map<String, File> classpathFiles()
+	{
+		return files("groupid1", new File("groupid1.jar"), "groupid2", new File("groupid2.jar"), "groupid3", new File("groupid3.jar"));
+	}
+
+	private static void writeBytes(File file, byte[] bytes) throws IOException
+	{
+		try (FileOutputStream fos = new FileOutputStream(file))
+		{
+			fos.write(bytes);
+		}
+	}
+
+	@Test
+	public void executeInParallelCallsTheUnpackerForEveryNativeDependency() throws MojoExecutionException, MojoFailureException, IOException
+	{
+		mojo.setThreads(4);
+		final Set<Artifact> artifacts = new HashSet<>();
+
+		Artifact nativeArtifact = artifactFactory.createArtifact("groupid2","artifactid2","2.0","compile","jar","natives-windows");
+		final File nativeFile = new File("test1");
+		nativeArtifact.setFile(nativeFile);
+		artifacts.add(nativeArtifact);
+
+		Artifact nativeArtifact2 = artifactFactory.createArtifact("groupid2","artifactid2","2.0","compile","jar","natives-linux");
+		final File nativeFile2 = new File("test2");
+		nativeArtifact2.setFile(nativeFile2);
+		artifacts.add(nativeArtifact2);
+
+		Artifact nativeArtifact3 = artifactFactory.createArtifact("groupid3","artifactid3","3.0","compile","jar","natives-linux");
+		final File nativeFile3 = new File("test3");
+		nativeArtifact3.setFile(nativeFile3);
+		artifacts.add(nativeArtifact3);
+
+		context.checking(new Expectations()
+		{
+			{
+				final boolean mkdirs = oneOf(nativesTargetDir).mkdirs();
+				if(!mkdirs) {
+					LOG.debug(String.valueOf(mkdirs));
+				}
+				oneOf(mavenProject).getArtifacts();will(returnValue(artifacts));
+				// the windows and first linux artifacts conflict, they end up unpacked by the same thread
+				oneOf(jarUnpacker).listEntries(with(equal(nativeFile)), with(any(UnpackOptions.class)));will(returnValue(Arrays.asList("lib.dll", "shared.txt")));
+				oneOf(jarUnpacker).listEntries(with(equal(nativeFile2)), with(any(UnpackOptions.class)));will(returnValue(Arrays.asList("lib.so", "shared.txt")));
+				oneOf(jarUnpacker).listEntries(with(equal(nativeFile3)), with(any(UnpackOptions.class)));will(returnValue(Arrays.asList("other.so")));
+				oneOf(jarUnpacker).copyJarContent(with(equal(nativeFile)), with(equal(nativesTargetDir)), with(any(UnpackOptions.class)));
+				oneOf(jarUnpacker).copyJarContent(with(equal(nativeFile2)), with(equal(nativesTargetDir)), with(any(UnpackOptions.class)));
+				oneOf(jarUnpacker).copyJarContent(with(equal(nativeFile3)), with(equal(nativesTargetDir)), with(any(UnpackOptions.class)));
+			}
+		});
+
+		mojo.execute();
+	}
+
+	@Test
+	public void executeInParallelFailsWhenOneArtifactFails() throws IOException
+	{
+		mojo.setThreads(2);
+		final Set<Artifact> artifacts = new HashSet<>();
+
+		Artifact nativeArtifact = artifactFactory.createArtifact("groupid2","artifactid2","2.0","compile","jar","natives-windows");
+		final File nativeFile = new File("test1");
+		nativeArtifact.setFile(nativeFile);
+		artifacts.add(nativeArtifact);
+
+		Artifact nativeArtifact2 = artifactFactory.createArtifact("groupid2","artifactid2","2.0","compile","jar","natives-linux");
+		final File nativeFile2 = new File("test2");
+		nativeArtifact2.setFile(nativeFile2);
+		artifacts.add(nativeArtifact2);
+
+		context.checking(new Expectations()
+		{
+			{
+				final boolean mkdirs = oneOf(nativesTargetDir).mkdirs();
+				if(!mkdirs) {
+					LOG.debug(String.valueOf(mkdirs));
+				}
+				oneOf(mavenProject).getArtifacts();will(returnValue(artifacts));
+				oneOf(jarUnpacker).listEntries(with(equal(nativeFile)), with(any(UnpackOptions.class)));will(returnValue(Arrays.asList("lib.dll")));
+				oneOf(jarUnpacker).listEntries(with(equal(nativeFile2)), with(any(UnpackOptions.class)));will(returnValue(Arrays.asList("lib.so")));
+				oneOf(jarUnpacker).copyJarContent(with(equal(nativeFile)), with(equal(nativesTargetDir)), with(any(UnpackOptions.class)));will(throwException(new IOException("broken jar")));
+				allowing(jarUnpacker).copyJarContent(with(equal(nativeFile2)), with(equal(nativesTargetDir)), with(any(UnpackOptions.class)));
+			}
+		});
+
+		try {
+			mojo.execute();
+			fail("the failure of one artifact must fail the build");
+		} catch (MojoExecutionException | MojoFailureException e) {
+			assertTrue(e.getMessage().contains("broken jar"));
+		}
+	}
 }